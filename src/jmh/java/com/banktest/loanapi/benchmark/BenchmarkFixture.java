@@ -0,0 +1,99 @@
+package com.banktest.loanapi.benchmark;
+
+import com.banktest.loanapi.CreditModuleApplication;
+import com.banktest.loanapi.model.Money;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+// Boots the application against a private embedded H2 and seeds it with set-based inserts
+final class BenchmarkFixture implements AutoCloseable {
+
+    static final int INSTALLMENTS_PER_LOAN = 12;
+    static final int LOANS_PER_CUSTOMER = 10;
+    static final Money INSTALLMENT_AMOUNT = Money.of(100);
+
+    private final ConfigurableApplicationContext context;
+    private final JdbcTemplate jdbcTemplate;
+
+    private long[] loanIds;
+    private long customerCount;
+
+    private BenchmarkFixture(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    static BenchmarkFixture start(String... properties) {
+        // Everything goes in as command-line arguments: builder properties are only defaults and lose to application.properties
+        Stream<String> defaults = Stream.of(
+                "server.port=0",
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN",
+                "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        String[] args = Stream.concat(defaults, Arrays.stream(properties))
+                .map(property -> "--" + property)
+                .toArray(String[]::new);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CreditModuleApplication.class).run(args);
+        return new BenchmarkFixture(context);
+    }
+
+    int port() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    void seed(int installments) {
+        long loanCount = Math.max(1, installments / INSTALLMENTS_PER_LOAN);
+        customerCount = Math.max(1, loanCount / LOANS_PER_CUSTOMER);
+        LocalDate firstDueDate = LocalDate.now().plusMonths(1).withDayOfMonth(1);
+        Money loanAmount = INSTALLMENT_AMOUNT.times(INSTALLMENTS_PER_LOAN);
+
+        // Money columns hold minor units
+        jdbcTemplate.update("INSERT INTO customer (name, surname, credit_limit, used_credit_limit) "
+                + "SELECT 'Bench', 'Customer', CAST(? AS BIGINT), 0 FROM SYSTEM_RANGE(1, ?)",
+                Money.of(1_000_000_000_000L).minorUnits(), customerCount);
+        jdbcTemplate.update("INSERT INTO loan (id, customer_id, loan_amount, number_of_installments, create_date, is_paid, "
+                + "paid_installment_count, outstanding_amount) "
+                + "SELECT NEXT VALUE FOR loan_seq, MOD(X - 1, ?) + 1, CAST(? AS BIGINT), CAST(? AS INTEGER), CURRENT_DATE, FALSE, "
+                + "0, CAST(? AS BIGINT) FROM SYSTEM_RANGE(1, ?)",
+                customerCount, loanAmount.minorUnits(), INSTALLMENTS_PER_LOAN, loanAmount.minorUnits(), loanCount);
+        jdbcTemplate.update("INSERT INTO loan_installment (id, loan_id, amount, paid_amount, due_date, payment_date, is_paid) "
+                + "SELECT NEXT VALUE FOR loan_installment_seq, l.id, CAST(? AS BIGINT), 0, DATEADD(MONTH, r.X, CAST(? AS DATE)), NULL, FALSE "
+                + "FROM loan l CROSS JOIN SYSTEM_RANGE(0, ?) r",
+                INSTALLMENT_AMOUNT.minorUnits(), firstDueDate, INSTALLMENTS_PER_LOAN - 1);
+
+        // Ids come from the pooled sequences, so they are not contiguous
+        loanIds = jdbcTemplate.queryForList("SELECT id FROM loan ORDER BY id", Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Undo whatever the payment benchmark paid so every iteration starts from the same book
+    void resetPayments() {
+        jdbcTemplate.update("UPDATE loan_installment SET is_paid = FALSE, paid_amount = 0, payment_date = NULL "
+                + "WHERE is_paid = TRUE");
+        jdbcTemplate.update("UPDATE loan SET is_paid = FALSE, paid_installment_count = 0, outstanding_amount = loan_amount "
+                + "WHERE paid_installment_count > 0");
+    }
+
+    long loanId(long sequence) {
+        return loanIds[(int) (sequence % loanIds.length)];
+    }
+
+    long customerCount() {
+        return customerCount;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,71 @@
+package com.banktest.loanapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A client polling installment schedules over HTTP, with or without the ETag of the version it already has. Nothing is
+// paid while it runs, so every conditional request is answered 304.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConditionalGetBenchmark {
+
+    @Param({"false", "true"})
+    public boolean conditional;
+
+    private BenchmarkFixture fixture;
+    private HttpClient http;
+    private String baseUrl;
+    private String token;
+
+    private final AtomicLong loanCursor = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = BenchmarkFixture.start("rate-limit.enabled=false");
+        fixture.seed(120_000);
+        http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUrl = "http://localhost:" + fixture.port();
+        token = LoadTest.obtainToken(baseUrl);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public int pollInstallments() throws Exception {
+        long loanId = fixture.loanId(loanCursor.getAndIncrement());
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/loans/" + loanId + "/installments"))
+                .header("Authorization", "Bearer " + token)
+                .GET();
+        if (conditional) {
+            // Seeded loans are all at version 0
+            request.header("If-None-Match", "\"" + loanId + ".0\"");
+        }
+        HttpResponse<byte[]> response = http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        return response.statusCode() + response.body().length;
+    }
+}
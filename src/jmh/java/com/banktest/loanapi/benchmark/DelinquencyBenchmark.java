@@ -0,0 +1,56 @@
+package com.banktest.loanapi.benchmark;
+
+import com.banktest.loanapi.dto.DelinquencyRunResultDTO;
+import com.banktest.loanapi.service.DelinquencyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// One full delinquency run over a book whose installments are all overdue; each invocation is a new date,
+// so nothing is skipped as already done
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class DelinquencyBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int installments;
+
+    private BenchmarkFixture fixture;
+    private DelinquencyService delinquencyService;
+    private LocalDate asOf;
+
+    @Setup
+    public void setUp() {
+        fixture = BenchmarkFixture.start();
+        fixture.seed(installments);
+        delinquencyService = fixture.bean(DelinquencyService.class);
+        asOf = LocalDate.now().plusYears(2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public DelinquencyRunResultDTO run() {
+        asOf = asOf.plusDays(1);
+        return delinquencyService.run(asOf);
+    }
+}
@@ -0,0 +1,150 @@
+package com.banktest.loanapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Closed-loop HTTP load against the real server, once per thread model: every client sends its next
+// request as soon as the previous one answers. Arguments are key=value pairs, for example
+// clients=1000 seconds=30 warmup=10 installments=120000 modes=platform,virtual
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "");
+        }
+        int clients = Integer.parseInt(options.getOrDefault("clients", "1000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int installments = Integer.parseInt(options.getOrDefault("installments", "120000"));
+
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%-8s %8s %12s %10s %10s %10s %8s", "mode", "clients", "requests/s", "p50 ms", "p99 ms", "max ms", "errors"));
+        for (String mode : options.getOrDefault("modes", "platform,virtual").split(",")) {
+            boolean virtual = mode.equals("virtual");
+            // Every client shares one token, so the per-user rate limit would measure itself instead of the server
+            try (BenchmarkFixture fixture = BenchmarkFixture.start("spring.threads.virtual.enabled=" + virtual,
+                    "rate-limit.enabled=false")) {
+                fixture.seed(installments);
+                String baseUrl = "http://localhost:" + fixture.port();
+                String token = obtainToken(baseUrl);
+
+                run(baseUrl, token, fixture.customerCount(), clients, warmup);
+                Result result = run(baseUrl, token, fixture.customerCount(), clients, seconds);
+                report.add(String.format("%-8s %8d %12.0f %10.1f %10.1f %10.1f %8d", mode, clients,
+                        result.requests() / (double) seconds, result.percentile(0.50), result.percentile(0.99),
+                        result.percentile(1.0), result.errors));
+            }
+        }
+        report.forEach(System.out::println);
+    }
+
+    static String obtainToken(String baseUrl) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        String credentials = "{\"email\":\"load@example.com\",\"password\":\"password\"}";
+        client.send(post(baseUrl + "/auth/signup",
+                "{\"email\":\"load@example.com\",\"password\":\"password\",\"fullName\":\"Load Test\"}"),
+                HttpResponse.BodyHandlers.discarding());
+        HttpResponse<String> login = client.send(post(baseUrl + "/auth/login", credentials), HttpResponse.BodyHandlers.ofString());
+        return new ObjectMapper().readTree(login.body()).get("token").asText();
+    }
+
+    private static HttpRequest post(String url, String json) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    // Each client is a virtual thread, so the load generator itself never runs out of threads
+    private static Result run(String baseUrl, String token, long customerCount, int clients, int seconds) throws Exception {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                executor.submit(() -> {
+                    long[] samples = new long[1024];
+                    int count = 0;
+                    start.await();
+                    for (long i = client; System.nanoTime() < deadline; i += clients) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(
+                                        baseUrl + "/api/loans?customerId=" + (i % customerCount + 1) + "&size=20"))
+                                .header("Authorization", "Bearer " + token)
+                                .timeout(Duration.ofSeconds(60))
+                                .GET()
+                                .build();
+                        long begin = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                                continue;
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - begin;
+                    }
+                    latencies[client] = samples;
+                    counts[client] = count;
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+
+        // Merge every client's samples for the percentiles
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        return new Result(all, errors.get());
+    }
+
+    private record Result(long[] sortedLatencies, long errors) {
+
+        long requests() {
+            return sortedLatencies.length;
+        }
+
+        double percentile(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
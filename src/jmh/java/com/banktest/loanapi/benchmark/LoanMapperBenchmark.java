@@ -0,0 +1,110 @@
+package com.banktest.loanapi.benchmark;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.mapper.LoanInstallmentMapper;
+import com.banktest.loanapi.mapper.LoanInstallmentMapperImpl;
+import com.banktest.loanapi.mapper.LoanMapper;
+import com.banktest.loanapi.mapper.LoanMapperImpl;
+import com.banktest.loanapi.model.Loan;
+import com.banktest.loanapi.model.LoanInstallment;
+import com.banktest.loanapi.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoanMapperBenchmark {
+
+    @Param({"6", "24"})
+    public int installmentsPerLoan;
+
+    // The generated mappers use field injection, so wire them through a minimal context
+    private AnnotationConfigApplicationContext context;
+    private LoanMapper loanMapper;
+    private LoanInstallmentMapper loanInstallmentMapper;
+
+    private Loan loan;
+    private LoanDTO loanDTO;
+    private LoanInstallment installment;
+    private LoanInstallmentDTO installmentDTO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(LoanMapperImpl.class, LoanInstallmentMapperImpl.class);
+        loanMapper = context.getBean(LoanMapper.class);
+        loanInstallmentMapper = context.getBean(LoanInstallmentMapper.class);
+
+        loan = new Loan();
+        loan.setId(1L);
+        loan.setCustomerId(1L);
+        loan.setLoanAmount(Money.of(1200));
+        loan.setNumberOfInstallments(installmentsPerLoan);
+        loan.setCreateDate(LocalDate.now());
+        loan.setIsPaid(false);
+
+        List<LoanInstallment> installments = new ArrayList<>();
+        LocalDate dueDate = LocalDate.now().plusMonths(1).withDayOfMonth(1);
+        for (int i = 0; i < installmentsPerLoan; i++) {
+            LoanInstallment loanInstallment = new LoanInstallment();
+            loanInstallment.setId((long) i + 1);
+            loanInstallment.setLoanId(1L);
+            loanInstallment.setAmount(Money.ofMinor(Money.of(1200).minorUnits() / installmentsPerLoan));
+            loanInstallment.setPaidAmount(Money.ZERO);
+            loanInstallment.setDueDate(dueDate.plusMonths(i));
+            loanInstallment.setIsPaid(false);
+            installments.add(loanInstallment);
+        }
+        loan.setInstallments(installments);
+
+        installment = installments.get(0);
+        loanDTO = loanMapper.toLoanDTO(loan);
+        installmentDTO = loanInstallmentMapper.toLoanInstallmentDTO(installment);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public LoanDTO toLoanDTO() {
+        return loanMapper.toLoanDTO(loan);
+    }
+
+    @Benchmark
+    public Loan toLoan() {
+        return loanMapper.toLoan(loanDTO);
+    }
+
+    @Benchmark
+    public LoanInstallmentDTO toLoanInstallmentDTO() {
+        return loanInstallmentMapper.toLoanInstallmentDTO(installment);
+    }
+
+    @Benchmark
+    public LoanInstallment toLoanInstallment() {
+        return loanInstallmentMapper.toLoanInstallment(installmentDTO);
+    }
+}
@@ -0,0 +1,70 @@
+package com.banktest.loanapi.benchmark;
+
+import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.dto.LoanPageDTO;
+import com.banktest.loanapi.dto.LoanSearchCriteria;
+import com.banktest.loanapi.service.LoanReadModel;
+import com.banktest.loanapi.service.LoanService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The loan read paths served by the database or by the in-memory read model
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoanReadModelBenchmark {
+
+    @Param({"false", "true"})
+    public boolean readModel;
+
+    private BenchmarkFixture fixture;
+    private LoanService loanService;
+
+    private final AtomicLong loanCursor = new AtomicLong();
+    private final AtomicLong customerCursor = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start("read-model.enabled=" + readModel);
+        fixture.seed(1_000_000);
+        // The fixture seeds behind the application's back, so the model is loaded again afterwards
+        if (readModel) {
+            fixture.bean(LoanReadModel.class).load();
+        }
+        loanService = fixture.bean(LoanService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public LoanPageDTO listLoans() {
+        long customerId = customerCursor.getAndIncrement() % fixture.customerCount() + 1;
+        return loanService.listLoans(customerId, new LoanSearchCriteria(), null, LoanService.DEFAULT_PAGE_SIZE, false);
+    }
+
+    @Benchmark
+    public List<LoanInstallmentDTO> listInstallments() {
+        return loanService.listInstallments(fixture.loanId(loanCursor.getAndIncrement()));
+    }
+}
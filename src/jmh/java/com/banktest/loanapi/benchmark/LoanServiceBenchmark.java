@@ -0,0 +1,94 @@
+package com.banktest.loanapi.benchmark;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.dto.LoanPageDTO;
+import com.banktest.loanapi.dto.LoanSearchCriteria;
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.service.LoanService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoanServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int installments;
+
+    private BenchmarkFixture fixture;
+    private LoanService loanService;
+    // Controllers run with open-in-view, so the read paths are measured inside a session too
+    private TransactionTemplate readOnlyTransaction;
+
+    private final AtomicLong loanCursor = new AtomicLong();
+    private final AtomicLong customerCursor = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.start();
+        fixture.seed(installments);
+        loanService = fixture.bean(LoanService.class);
+        readOnlyTransaction = new TransactionTemplate(fixture.bean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPayments() {
+        fixture.resetPayments();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public LoanDTO createLoan() {
+        return loanService.createLoan(1L, Money.of(1000), 0.2, 12);
+    }
+
+    @Benchmark
+    public PaymentResultResponseDTO payInstallments() {
+        return loanService.payInstallments(nextLoanId(), BenchmarkFixture.INSTALLMENT_AMOUNT);
+    }
+
+    @Benchmark
+    public LoanPageDTO listLoans() {
+        long customerId = customerCursor.getAndIncrement() % fixture.customerCount() + 1;
+        return readOnlyTransaction.execute(status ->
+                loanService.listLoans(customerId, new LoanSearchCriteria(), null, LoanService.DEFAULT_PAGE_SIZE, false));
+    }
+
+    @Benchmark
+    public List<LoanInstallmentDTO> listInstallments() {
+        long loanId = nextLoanId();
+        return readOnlyTransaction.execute(status -> loanService.listInstallments(loanId));
+    }
+
+    private long nextLoanId() {
+        return fixture.loanId(loanCursor.getAndIncrement());
+    }
+}
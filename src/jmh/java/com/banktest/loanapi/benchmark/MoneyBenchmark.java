@@ -0,0 +1,137 @@
+package com.banktest.loanapi.benchmark;
+
+import com.banktest.loanapi.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// The schedule and settlement loops of createLoan and the payment engine, once with the boxed Double
+// amounts the entities used to carry and once with Money; run with the GC profiler to compare
+// gc.alloc.rate.norm
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MoneyBenchmark {
+
+    @Param({"12", "24"})
+    public int installments;
+
+    // Stand-ins for the installment amount columns
+    private Double[] doubleSchedule;
+    private Money[] moneySchedule;
+
+    private Double doubleLoanAmount;
+    private Money moneyLoanAmount;
+    private long[] daysToDueDate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        doubleSchedule = new Double[installments];
+        moneySchedule = new Money[installments];
+        doubleLoanAmount = 1000.0;
+        moneyLoanAmount = Money.of(1000);
+
+        // A mix of early and late payments so both the discount and the penalty branch run
+        daysToDueDate = new long[installments];
+        for (int i = 0; i < installments; i++) {
+            daysToDueDate[i] = (i * 30L) - 45;
+        }
+        buildDoubleSchedule();
+        buildMoneySchedule();
+        // The stored amounts are read back from separate rows, as they would be from the database
+        for (int i = 0; i < installments; i++) {
+            doubleSchedule[i] = Double.valueOf(doubleSchedule[i].doubleValue());
+        }
+    }
+
+    @Benchmark
+    public Double[] buildDoubleSchedule() {
+        Double totalLoanAmount = doubleLoanAmount * (1 + 0.2);
+        Double installmentAmount = totalLoanAmount / installments;
+        for (int i = 0; i < installments; i++) {
+            doubleSchedule[i] = installmentAmount;
+        }
+        return doubleSchedule;
+    }
+
+    @Benchmark
+    public Money[] buildMoneySchedule() {
+        Money totalLoanAmount = moneyLoanAmount.times(1 + 0.2);
+        long baseAmount = totalLoanAmount.minorUnits() / installments;
+        Money installmentAmount = Money.ofMinor(baseAmount);
+        Money lastInstallmentAmount = Money.ofMinor(totalLoanAmount.minorUnits() - baseAmount * (installments - 1));
+        for (int i = 0; i < installments; i++) {
+            moneySchedule[i] = i == installments - 1 ? lastInstallmentAmount : installmentAmount;
+        }
+        return moneySchedule;
+    }
+
+    @Benchmark
+    public Double settleWithDouble(Blackhole blackhole) {
+        Double paymentAmount = doubleLoanAmount * 2;
+        Double totalAmountSpent = 0.0;
+        Double adjustedTotal = 0.0;
+        for (int i = 0; i < installments; i++) {
+            Double amount = doubleSchedule[i];
+            if (paymentAmount >= amount) {
+                Double installmentAmount = amount;
+                long daysDifference = daysToDueDate[i];
+                if (daysDifference > 0) {
+                    Double discount = installmentAmount * 0.001 * daysDifference;
+                    installmentAmount -= discount;
+                } else if (daysDifference < 0) {
+                    Double penalty = installmentAmount * 0.001 * Math.abs(daysDifference);
+                    installmentAmount += penalty;
+                }
+                adjustedTotal += installmentAmount;
+                paymentAmount -= amount;
+                totalAmountSpent += amount;
+            } else {
+                break;
+            }
+        }
+        blackhole.consume(adjustedTotal);
+        return totalAmountSpent;
+    }
+
+    @Benchmark
+    public Money settleWithMoney(Blackhole blackhole) {
+        long remainingAmount = moneyLoanAmount.minorUnits() * 2;
+        long totalAmountSpent = 0;
+        long adjustedTotal = 0;
+        for (int i = 0; i < installments; i++) {
+            long installmentAmount = moneySchedule[i].minorUnits();
+            if (remainingAmount >= installmentAmount) {
+                long adjustedAmount = installmentAmount;
+                long daysDifference = daysToDueDate[i];
+                if (daysDifference > 0) {
+                    adjustedAmount -= Money.fraction(installmentAmount, daysDifference, 1000);
+                } else if (daysDifference < 0) {
+                    adjustedAmount += Money.fraction(installmentAmount, -daysDifference, 1000);
+                }
+                adjustedTotal += adjustedAmount;
+                remainingAmount -= installmentAmount;
+                totalAmountSpent += installmentAmount;
+            } else {
+                break;
+            }
+        }
+        blackhole.consume(adjustedTotal);
+        return Money.ofMinor(totalAmountSpent);
+    }
+}
@@ -0,0 +1,69 @@
+package com.banktest.loanapi.benchmark;
+
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.service.LoanService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Payment throughput with many concurrent callers, each paying straight into the database or through the journal
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+public class PaymentJournalBenchmark {
+
+    @Param({"false", "true"})
+    public boolean journal;
+
+    private BenchmarkFixture fixture;
+    private LoanService loanService;
+
+    private final AtomicLong loanCursor = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path directory = Files.createTempDirectory("payment-journal-bench-");
+        fixture = BenchmarkFixture.start(
+                "payment-journal.enabled=" + journal,
+                "payment-journal.directory=" + directory,
+                "spring.datasource.hikari.maximum-pool-size=64");
+        fixture.seed(1_000_000);
+        loanService = fixture.bean(LoanService.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPayments() {
+        fixture.resetPayments();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public PaymentResultResponseDTO payInstallments() {
+        return loanService.payInstallments(fixture.loanId(loanCursor.getAndIncrement()), BenchmarkFixture.INSTALLMENT_AMOUNT);
+    }
+}
@@ -0,0 +1,64 @@
+package com.banktest.loanapi.benchmark;
+
+import com.banktest.loanapi.security.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cost of one rate limit check with 64 threads: all on one user (every check contends on the same bucket),
+// or each thread on its own user among many
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+public class RateLimiterBenchmark {
+
+    @Param({"1", "100000"})
+    public int users;
+
+    private RateLimiter limiter;
+
+    private final AtomicLong threadSequence = new AtomicLong();
+
+    @State(Scope.Thread)
+    public static class Caller {
+
+        long user;
+
+        long sequence;
+    }
+
+    @Setup
+    public void setUp() {
+        // A budget no caller exhausts, so every check takes the compare-and-set path
+        limiter = new RateLimiter(1e12, Integer.MAX_VALUE);
+    }
+
+    @Setup
+    public void assign(Caller caller) {
+        caller.user = threadSequence.getAndIncrement() % users;
+    }
+
+    @Benchmark
+    public long tryAcquire(Caller caller) {
+        if (users > 1) {
+            caller.user = (caller.user + 64) % users;
+        }
+        return limiter.tryAcquire(caller.user, System.nanoTime());
+    }
+}
@@ -0,0 +1,40 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.dto.CustomerPortfolioDTO;
+import com.banktest.loanapi.dto.CustomerPortfolioRebuildResultDTO;
+import com.banktest.loanapi.security.AuthenticatedUser;
+import com.banktest.loanapi.service.CustomerPortfolioService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class CustomerPortfolioController {
+
+    private final CustomerPortfolioService customerPortfolioService;
+
+    // One primary key lookup instead of listing every loan and its installments
+    @GetMapping("/customers/{customerId}/portfolio")
+    public ResponseEntity<CustomerPortfolioDTO> getPortfolio(@PathVariable Long customerId,
+                                                             @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        if (!currentUser.canAccessCustomer(customerId)) {
+            throw new AccessDeniedException("You are not authorized to perform this action");
+        }
+        return ResponseEntity.ok(customerPortfolioService.getPortfolio(customerId));
+    }
+
+    @PostMapping("/admin/customer-portfolios/rebuild")
+    public ResponseEntity<CustomerPortfolioRebuildResultDTO> rebuild() {
+        return ResponseEntity.ok(customerPortfolioService.rebuild(LocalDate.now()));
+    }
+}
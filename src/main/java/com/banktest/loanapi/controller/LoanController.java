@@ -1,106 +1,188 @@
 package com.banktest.loanapi.controller;
 
-import com.banktest.loanapi.config.JwtTokenUtil;
+import com.banktest.loanapi.dto.LoanBatchResultDTO;
 import com.banktest.loanapi.dto.LoanDTO;
 import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.dto.LoanPageDTO;
+import com.banktest.loanapi.dto.LoanQuoteDTO;
+import com.banktest.loanapi.dto.LoanRequestDTO;
+import com.banktest.loanapi.dto.LoanSearchCriteria;
+import com.banktest.loanapi.dto.LoanVersion;
+import com.banktest.loanapi.dto.PaymentCandidateDTO;
+import com.banktest.loanapi.dto.PaymentQuoteDTO;
 import com.banktest.loanapi.dto.PaymentResultResponseDTO;
-import com.banktest.loanapi.model.Loan;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.security.AuthenticatedUser;
+import com.banktest.loanapi.service.LoanBatchService;
 import com.banktest.loanapi.service.LoanService;
-import jakarta.servlet.http.HttpServletRequest;
+import com.banktest.loanapi.service.PaymentAcceptedException;
+import com.banktest.loanapi.service.PaymentIdempotencyService;
+import com.banktest.loanapi.service.PaymentQuoteService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Objects;
 
 @RestController
 @RequestMapping("/api/loans")
 @RequiredArgsConstructor
 public class LoanController {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
     private final LoanService loanService;
 
+    private final LoanBatchService loanBatchService;
 
-    private final JwtTokenUtil jwtTokenUtil;
+    private final PaymentIdempotencyService paymentIdempotencyService;
 
+    private final PaymentQuoteService paymentQuoteService;
 
 
-    private Integer getCurrentUserId(HttpServletRequest request) {
-        String token = jwtTokenUtil.resolveToken(request);
-        return jwtTokenUtil.getUserIdFromToken(token);
+    // Check if the current user is an ADMIN or the customer themselves
+    private void checkAccess(AuthenticatedUser currentUser, Long customerId) {
+        if (!currentUser.canAccessCustomer(customerId)) {
+            throw new AccessDeniedException("You are not authorized to perform this action");
+        }
     }
 
     @PostMapping
     public ResponseEntity<LoanDTO> createLoan(@RequestParam Long customerId,
-                                              @RequestParam Double loanAmount,
+                                              @RequestParam Money loanAmount,
                                               @RequestParam Double interestRate,
                                               @RequestParam Integer numberOfInstallments,
-                                              HttpServletRequest request
+                                              @AuthenticationPrincipal AuthenticatedUser currentUser
     ) {
-        Integer currentUserId = getCurrentUserId(request);
-        if (!jwtTokenUtil.isAdmin(request) && !currentUserId.equals(customerId)) {
-            throw new AccessDeniedException("You are not authorized to perform this action");
-        }
+        checkAccess(currentUser, customerId);
 
         LoanDTO loanDTO = loanService.createLoan(customerId, loanAmount, interestRate, numberOfInstallments);
         return ResponseEntity.ok(loanDTO);
     }
+    @PostMapping("/batch")
+    public ResponseEntity<LoanBatchResultDTO> createLoans(@RequestBody List<LoanRequestDTO> requests,
+                                                          @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        // Every loan in the batch must be one the caller could have created on its own
+        requests.stream()
+                .filter(Objects::nonNull)
+                .map(LoanRequestDTO::getCustomerId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(customerId -> checkAccess(currentUser, customerId));
+
+        LoanBatchResultDTO result = loanBatchService.createLoans(requests);
+        return ResponseEntity.ok(result);
+    }
+
     @GetMapping
-    public ResponseEntity<List<LoanDTO>> listLoans(
+    public ResponseEntity<LoanPageDTO> listLoans(
             @RequestParam Long customerId,
-            @RequestParam(required = false) Integer numberOfInstallments,
-            @RequestParam(required = false) Boolean isPaid,
-            HttpServletRequest request) {
+            LoanSearchCriteria criteria,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + LoanService.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(defaultValue = "false") boolean summary,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
-        // Check if the current user is an ADMIN or the customer themselves
-        Integer currentUserId = getCurrentUserId(request);
-        if (!jwtTokenUtil.isAdmin(request) && !currentUserId.equals(customerId)) {
-            throw new AccessDeniedException("You are not authorized to perform this action");
-        }
+        checkAccess(currentUser, customerId);
 
-        List<LoanDTO> loans = loanService.listLoans(customerId, numberOfInstallments, isPaid);
-        return ResponseEntity.ok(loans);
+        LoanPageDTO page = loanService.listLoans(customerId, criteria, cursor, size, summary);
+        return ResponseEntity.ok(page);
+    }
+
+    // The loan's current version is its ETag; a client that already has it gets 304 without the loan being read
+    private static String eTag(Long loanId, LoanVersion version) {
+        return "\"" + loanId + "." + version.version() + "\"";
+    }
+
+    @GetMapping("/{loanId}")
+    public ResponseEntity<LoanDTO> getLoan(
+            @PathVariable Long loanId,
+            WebRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+
+        LoanVersion version = loanService.getLoanVersion(loanId);
+        checkAccess(currentUser, version.customerId());
+
+        String eTag = eTag(loanId, version);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        // Read after the version, so a payment landing in between can only make the ETag older than the body
+        return ResponseEntity.ok().eTag(eTag).body(loanService.getLoan(loanId));
     }
 
     @GetMapping("/{loanId}/installments")
     public ResponseEntity<List<LoanInstallmentDTO>> listInstallments(
             @PathVariable Long loanId,
-            HttpServletRequest request) {
+            WebRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
-        // Fetch the loan to check the customer ID
-        Loan loan = loanService.getLoanById(loanId);
-        Long customerId = loan.getCustomerId();
+        // One lookup gives the loan's owner to check the customer ID and the version to check the ETag
+        LoanVersion version = loanService.getLoanVersion(loanId);
+        checkAccess(currentUser, version.customerId());
 
-        // Check if the current user is an ADMIN or the customer themselves
-        Integer currentUserId = getCurrentUserId(request);
-        if (!jwtTokenUtil.isAdmin(request) && !currentUserId.equals(customerId)) {
-            throw new AccessDeniedException("You are not authorized to perform this action");
+        String eTag = eTag(loanId, version);
+        if (request.checkNotModified(eTag)) {
+            return null;
         }
-
+        // Read after the version, so a payment landing in between can only make the ETag older than the body
         List<LoanInstallmentDTO> installments = loanService.listInstallments(loanId);
-        return ResponseEntity.ok(installments);
+        return ResponseEntity.ok().eTag(eTag).body(installments);
     }
 
-    @PostMapping("/{loanId}/pay")
-    public ResponseEntity<PaymentResultResponseDTO> payInstallments(
+    // What paying everything reachable on the date would cost, installment by installment; nothing is written
+    @GetMapping("/{loanId}/quote")
+    public ResponseEntity<LoanQuoteDTO> quote(
             @PathVariable Long loanId,
-            @RequestParam Double paymentAmount,
-            HttpServletRequest request) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
-        // Fetch the loan to check the customer ID
-        Loan loan = loanService.getLoanById(loanId);
-        Long customerId = loan.getCustomerId();
+        checkAccess(currentUser, loanService.getLoanCustomerId(loanId));
+        return ResponseEntity.ok(paymentQuoteService.quote(loanId, date != null ? date : LocalDate.now()));
+    }
 
-        // Check if the current user is an ADMIN or the customer themselves
-        Integer currentUserId = getCurrentUserId(request);
-        if (!jwtTokenUtil.isAdmin(request) && !currentUserId.equals(customerId)) {
-            throw new AccessDeniedException("You are not authorized to perform this action");
+    // The outcome of each candidate payment, as if it were the only one made; nothing is written
+    @PostMapping("/{loanId}/quotes")
+    public ResponseEntity<List<PaymentQuoteDTO>> quotePayments(
+            @PathVariable Long loanId,
+            @RequestBody List<PaymentCandidateDTO> candidates,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+
+        checkAccess(currentUser, loanService.getLoanCustomerId(loanId));
+        return ResponseEntity.ok(paymentQuoteService.quote(loanId, candidates, LocalDate.now()));
+    }
+
+    @PostMapping("/{loanId}/pay")
+    public ResponseEntity<PaymentResultResponseDTO> payInstallments(
+            @PathVariable Long loanId,
+            @RequestParam Money paymentAmount,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+
+        try {
+            if (idempotencyKey == null) {
+                return ResponseEntity.ok(pay(loanId, paymentAmount, currentUser));
+            }
+            // A retry is answered from the store before the loan is even read
+            PaymentResultResponseDTO result = paymentIdempotencyService.pay(currentUser.userId(), idempotencyKey,
+                    loanId, paymentAmount, () -> pay(loanId, paymentAmount, currentUser));
+            return ResponseEntity.ok(result);
+        } catch (PaymentAcceptedException e) {
+            // Journaled but not applied yet; a retry with the same key gets the result once it is
+            return ResponseEntity.accepted().build();
         }
+    }
 
-        PaymentResultResponseDTO result = loanService.payInstallments(loanId, paymentAmount);
-        return ResponseEntity.ok(result);
+    private PaymentResultResponseDTO pay(Long loanId, Money paymentAmount, AuthenticatedUser currentUser) {
+        // Look up the loan's owner to check the customer ID
+        checkAccess(currentUser, loanService.getLoanCustomerId(loanId));
+
+        return loanService.payInstallments(loanId, paymentAmount);
     }
 }
-
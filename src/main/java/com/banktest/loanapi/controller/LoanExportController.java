@@ -0,0 +1,29 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.service.LoanExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("/api/admin/exports")
+@RequiredArgsConstructor
+public class LoanExportController {
+
+    private final LoanExportService loanExportService;
+
+    @GetMapping(value = "/loans", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportLoans() {
+        // Rows go out as they are read from the database, on the async request thread
+        StreamingResponseBody body = loanExportService::exportNdjson;
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"loans.ndjson\"")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
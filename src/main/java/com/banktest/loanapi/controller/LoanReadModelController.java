@@ -0,0 +1,28 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.dto.ReadModelVerificationDTO;
+import com.banktest.loanapi.service.LoanReadModel;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("/api/admin/read-model")
+@RequiredArgsConstructor
+public class LoanReadModelController {
+
+    private final LoanReadModel loanReadModel;
+
+    // Reads every loan and installment, so it is meant for operators rather than routine polling
+    @GetMapping("/verification")
+    public ResponseEntity<ReadModelVerificationDTO> verify() {
+        if (!loanReadModel.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan read model is disabled");
+        }
+        return ResponseEntity.ok(loanReadModel.verify());
+    }
+}
@@ -0,0 +1,54 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.dto.PaymentFileResultDTO;
+import com.banktest.loanapi.service.PaymentFileService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+@RestController
+@RequestMapping("/api/admin/payment-files")
+@RequiredArgsConstructor
+public class PaymentFileController {
+
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final PaymentFileService paymentFileService;
+
+    @PostMapping(consumes = TEXT_CSV_VALUE, produces = TEXT_CSV_VALUE)
+    public void ingest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path input = Files.createTempFile("payments-", ".csv");
+        Path results = Files.createTempFile("payment-results-", ".csv");
+        try {
+            // Spool the upload to disk, so the file is mapped rather than held in memory
+            try (InputStream body = request.getInputStream()) {
+                Files.copy(body, input, StandardCopyOption.REPLACE_EXISTING);
+            }
+            PaymentFileResultDTO summary = paymentFileService.ingest(input, results);
+
+            // The result file is the body, one line per input row; the totals travel in headers
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(TEXT_CSV_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"payment-results.csv\"");
+            response.setHeader("X-Payment-Rows", String.valueOf(summary.getRows()));
+            response.setHeader("X-Payment-Succeeded", String.valueOf(summary.getSucceeded()));
+            response.setHeader("X-Payment-Failed", String.valueOf(summary.getFailed()));
+            response.setContentLengthLong(Files.size(results));
+            Files.copy(results, response.getOutputStream());
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(results);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.dto.PaymentJournalVerificationDTO;
+import com.banktest.loanapi.service.PaymentJournalService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/admin/payment-journal")
+@RequiredArgsConstructor
+public class PaymentJournalController {
+
+    private final PaymentJournalService paymentJournalService;
+
+    // Reads the whole journal, so it is meant for operators rather than routine polling
+    @GetMapping("/verification")
+    public ResponseEntity<PaymentJournalVerificationDTO> verify() throws IOException {
+        if (!paymentJournalService.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Payment journal is disabled");
+        }
+        return ResponseEntity.ok(paymentJournalService.verify());
+    }
+}
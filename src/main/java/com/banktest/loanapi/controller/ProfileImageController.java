@@ -0,0 +1,109 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.dto.ProfileImageMetadata;
+import com.banktest.loanapi.security.AuthenticatedUser;
+import com.banktest.loanapi.service.ProfileImageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/users/me/profile-image")
+@RequiredArgsConstructor
+public class ProfileImageController {
+
+    private final ProfileImageService profileImageService;
+
+    @Value("${profile-image.max-size}")
+    private DataSize maxSize;
+
+    @PutMapping
+    public ResponseEntity<Void> upload(HttpServletRequest request,
+                                       @AuthenticationPrincipal AuthenticatedUser currentUser) throws IOException {
+        // The length must be known up front so the body can be streamed straight into the database
+        long size = request.getContentLengthLong();
+        if (size < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).build();
+        }
+        if (size > maxSize.toBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        // The stored type is served back as is, so only concrete image types are taken. SVG can carry script.
+        MediaType contentType;
+        try {
+            contentType = MediaType.parseMediaType(request.getContentType());
+        } catch (InvalidMediaTypeException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        }
+        if (!"image".equals(contentType.getType()) || contentType.isWildcardSubtype()
+                || "svg+xml".equals(contentType.getSubtype())) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        }
+
+        profileImageService.store(currentUser.userId().intValue(), contentType.toString(), request.getInputStream(), size);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping
+    public void download(@RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+                         @AuthenticationPrincipal AuthenticatedUser currentUser,
+                         HttpServletResponse response) throws IOException {
+        Integer userId = currentUser.userId().intValue();
+        ProfileImageMetadata metadata = profileImageService.findMetadata(userId).orElse(null);
+        if (metadata == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        long size = metadata.size();
+
+        // Whole image unless a single satisfiable byte range was asked for
+        long start = 0;
+        long end = size - 1;
+        boolean partial = false;
+        if (rangeHeader != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                if (ranges.size() != 1 || size == 0) {
+                    throw new IllegalArgumentException("Only a single byte range is supported");
+                }
+                start = ranges.get(0).getRangeStart(size);
+                end = ranges.get(0).getRangeEnd(size);
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+            partial = true;
+        }
+        long length = end - start + 1;
+
+        // Headers go out before the body, which is copied from the blob straight into the servlet stream
+        response.setStatus(partial ? HttpStatus.PARTIAL_CONTENT.value() : HttpStatus.OK.value());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(metadata.contentType());
+        response.setContentLengthLong(length);
+        if (partial) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+        profileImageService.copyTo(userId, start, length, response.getOutputStream());
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> delete(@AuthenticationPrincipal AuthenticatedUser currentUser) {
+        profileImageService.delete(currentUser.userId().intValue());
+        return ResponseEntity.noContent().build();
+    }
+}
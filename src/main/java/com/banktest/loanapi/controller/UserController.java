@@ -0,0 +1,37 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.dto.ChangePasswordDto;
+import com.banktest.loanapi.security.AuthenticatedUser;
+import com.banktest.loanapi.service.AuthenticationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+// Both changes evict the user from the user details cache, so the next login sees them
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class UserController {
+
+    private final AuthenticationService authenticationService;
+
+    @PutMapping("/users/me/password")
+    public ResponseEntity<Void> changePassword(@RequestBody ChangePasswordDto changePasswordDto,
+                                               @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        authenticationService.changePassword(currentUser.email(), changePasswordDto);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Tokens carry the roles, so a change takes effect with the user's next login
+    @PutMapping("/admin/users/{email}/roles")
+    public ResponseEntity<List<String>> updateRoles(@PathVariable String email, @RequestBody List<String> roles) {
+        return ResponseEntity.ok(authenticationService.updateRoles(email, roles).getRoles());
+    }
+}
@@ -0,0 +1,10 @@
+package com.banktest.loanapi.dto;
+
+import lombok.Data;
+
+@Data
+public class ChangePasswordDto {
+    private String currentPassword;
+
+    private String newPassword;
+}
@@ -1,5 +1,6 @@
 package com.banktest.loanapi.dto;
 
+import com.banktest.loanapi.model.Money;
 import lombok.Data;
 
 @Data
@@ -7,6 +8,6 @@ public class CustomerDTO {
     private Long id;
     private String name;
     private String surname;
-    private Double creditLimit;
-    private Double usedCreditLimit;
+    private Money creditLimit;
+    private Money usedCreditLimit;
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.banktest.loanapi.dto;
+
+import com.banktest.loanapi.model.Money;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class CustomerPortfolioDTO {
+    private Long customerId;
+    private Money outstandingAmount;
+    private Integer openLoanCount;
+    private LocalDate nextDueDate;
+    private Money overdueAmount;
+    private LocalDate overdueAsOf;
+}
@@ -0,0 +1,11 @@
+package com.banktest.loanapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CustomerPortfolioRebuildResultDTO {
+    private long customers;
+    private int chunks;
+}
@@ -0,0 +1,16 @@
+package com.banktest.loanapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class DelinquencyRunResultDTO {
+    private LocalDate asOf;
+    // Where an interrupted run for the same date left off, 0 for a fresh run
+    private long resumedAfterId;
+    private int chunks;
+    private long installmentsUpdated;
+}
@@ -0,0 +1,6 @@
+package com.banktest.loanapi.dto;
+
+import com.banktest.loanapi.model.DelinquencyBucket;
+
+public record DelinquencyUpdate(long installmentId, long accruedPenaltyMinorUnits, DelinquencyBucket bucket) {
+}
@@ -0,0 +1,19 @@
+package com.banktest.loanapi.dto;
+
+import com.banktest.loanapi.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class InstallmentQuoteDTO {
+    private Long installmentId;
+    private LocalDate dueDate;
+    private Money amount;
+    private Money discount;
+    private Money penalty;
+    // The amount after the discount or penalty
+    private Money adjustedAmount;
+}
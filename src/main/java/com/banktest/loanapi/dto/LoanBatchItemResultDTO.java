@@ -0,0 +1,15 @@
+package com.banktest.loanapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class LoanBatchItemResultDTO {
+    // Position of the request in the submitted list
+    private int index;
+    private Long customerId;
+    private Long loanId;
+    private boolean created;
+    private String error;
+}
@@ -0,0 +1,14 @@
+package com.banktest.loanapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class LoanBatchResultDTO {
+    private int created;
+    private int failed;
+    private List<LoanBatchItemResultDTO> results;
+}
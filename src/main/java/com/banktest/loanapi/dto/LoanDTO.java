@@ -1,17 +1,40 @@
 package com.banktest.loanapi.dto;
 
+import com.banktest.loanapi.model.Money;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
 import java.util.List;
 
 @Data
+@NoArgsConstructor
 public class LoanDTO {
     private Long id;
     private Long customerId;
-    private Double loanAmount;
+    private Money loanAmount;
     private Integer numberOfInstallments;
     private LocalDate createDate;
     private Boolean isPaid;
+    private Integer paidInstallmentCount;
+    private Money outstandingAmount;
+    private Long version;
+    // Left out of summary listings
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<LoanInstallmentDTO> installments;
+
+    // Used by projection queries, which never select the installments
+    public LoanDTO(Long id, Long customerId, Money loanAmount, Integer numberOfInstallments, LocalDate createDate,
+                   Boolean isPaid, Integer paidInstallmentCount, Money outstandingAmount, Long version) {
+        this.id = id;
+        this.customerId = customerId;
+        this.loanAmount = loanAmount;
+        this.numberOfInstallments = numberOfInstallments;
+        this.createDate = createDate;
+        this.isPaid = isPaid;
+        this.paidInstallmentCount = paidInstallmentCount;
+        this.outstandingAmount = outstandingAmount;
+        this.version = version;
+    }
 }
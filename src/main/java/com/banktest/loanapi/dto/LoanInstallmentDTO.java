@@ -1,15 +1,20 @@
 package com.banktest.loanapi.dto;
 
+import com.banktest.loanapi.model.Money;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class LoanInstallmentDTO {
     private Long id;
     private Long loanId;
-    private Double amount;
-    private Double paidAmount;
+    private Money amount;
+    private Money paidAmount;
     private LocalDate dueDate;
     private LocalDate paymentDate;
     private Boolean isPaid;
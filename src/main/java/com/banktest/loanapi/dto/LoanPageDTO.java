@@ -0,0 +1,14 @@
+package com.banktest.loanapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class LoanPageDTO {
+    private List<LoanDTO> content;
+    // Opaque position after the last loan of this page; null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,23 @@
+package com.banktest.loanapi.dto;
+
+import com.banktest.loanapi.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class LoanQuoteDTO {
+    private Long loanId;
+    private LocalDate date;
+    // What a payment on the date spends to settle every installment it can reach
+    private Money payoffAmount;
+    private Money adjustedPayoffAmount;
+    // Every unpaid installment, reachable on the date or not
+    private Money outstandingAmount;
+    // Whether the payoff leaves nothing unpaid
+    private boolean isLoanPaid;
+    private List<InstallmentQuoteDTO> installments;
+}
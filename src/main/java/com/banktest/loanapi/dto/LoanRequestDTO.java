@@ -0,0 +1,16 @@
+package com.banktest.loanapi.dto;
+
+import com.banktest.loanapi.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanRequestDTO {
+    private Long customerId;
+    private Money loanAmount;
+    private Double interestRate;
+    private Integer numberOfInstallments;
+}
@@ -0,0 +1,19 @@
+package com.banktest.loanapi.dto;
+
+import com.banktest.loanapi.model.Money;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+@Data
+public class LoanSearchCriteria {
+    private Integer numberOfInstallments;
+    private Boolean isPaid;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate createdFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate createdTo;
+    private Money minAmount;
+    private Money maxAmount;
+}
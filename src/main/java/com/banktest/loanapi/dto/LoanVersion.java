@@ -0,0 +1,4 @@
+package com.banktest.loanapi.dto;
+
+public record LoanVersion(Long customerId, Long version) {
+}
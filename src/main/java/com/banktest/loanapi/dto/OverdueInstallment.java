@@ -0,0 +1,8 @@
+package com.banktest.loanapi.dto;
+
+import com.banktest.loanapi.model.Money;
+
+import java.time.LocalDate;
+
+public record OverdueInstallment(Long id, Money amount, LocalDate dueDate) {
+}
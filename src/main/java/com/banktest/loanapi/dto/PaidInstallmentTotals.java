@@ -0,0 +1,10 @@
+package com.banktest.loanapi.dto;
+
+// Paid installments of one loan, as counted in the loan_installment table
+public interface PaidInstallmentTotals {
+    Long getLoanId();
+
+    Long getPaidCount();
+
+    Long getPaidAmount();
+}
@@ -0,0 +1,15 @@
+package com.banktest.loanapi.dto;
+
+import com.banktest.loanapi.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PaymentFileResultDTO {
+    private int rows;
+    private int succeeded;
+    private int failed;
+    private long installmentsPaid;
+    private Money totalAmountSpent;
+}
@@ -0,0 +1,23 @@
+package com.banktest.loanapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class PaymentJournalVerificationDTO {
+    private long records;
+    private long payments;
+    private long appliedPayments;
+    private long rejectedPayments;
+    // Journaled but not yet applied to the database
+    private long pendingPayments;
+    // Applied according to the checkpoint, but the outcome record was lost in a crash
+    private long paymentsWithoutOutcome;
+    private long loansChecked;
+    // Loans whose paid installments in the database differ from the journal's applied outcomes
+    private List<Long> mismatchedLoanIds;
+    private boolean consistent;
+}
@@ -0,0 +1,19 @@
+package com.banktest.loanapi.dto;
+
+import com.banktest.loanapi.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class PaymentQuoteDTO {
+    private Money amount;
+    private LocalDate date;
+    private int installmentsPaid;
+    private Money totalAmountSpent;
+    private boolean isLoanPaid;
+    private Money discount;
+    private Money penalty;
+}
@@ -1,6 +1,6 @@
 package com.banktest.loanapi.dto;
 
-
+import com.banktest.loanapi.model.Money;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -8,6 +8,6 @@ import lombok.Data;
 @AllArgsConstructor
 public class PaymentResultResponseDTO {
     private int installmentsPaid;
-    private double totalAmountSpent;
+    private Money totalAmountSpent;
     private boolean isLoanPaid;
 }
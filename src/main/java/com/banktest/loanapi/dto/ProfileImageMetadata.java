@@ -0,0 +1,4 @@
+package com.banktest.loanapi.dto;
+
+public record ProfileImageMetadata(String contentType, Long size) {
+}
@@ -0,0 +1,20 @@
+package com.banktest.loanapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ReadModelVerificationDTO {
+    private long loansChecked;
+    private long installmentsChecked;
+    // In the tables but not in memory
+    private long missingLoans;
+    // In memory but not in the tables
+    private long extraLoans;
+    // Loans whose columns or installments differ, at most the first hundred
+    private List<Long> mismatchedLoanIds;
+    private boolean consistent;
+}
@@ -1,11 +1,14 @@
 package com.banktest.loanapi.mapper;
 
 import com.banktest.loanapi.dto.CustomerDTO;
+import com.banktest.loanapi.dto.CustomerPortfolioDTO;
 import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.CustomerPortfolio;
 import org.mapstruct.Mapper;
 
 @Mapper(componentModel = "spring")
 public interface CustomerMapper {
     CustomerDTO toCustomerDTO(Customer customer);
     Customer toCustomer(CustomerDTO customerDTO);
+    CustomerPortfolioDTO toCustomerPortfolioDTO(CustomerPortfolio portfolio);
 }
@@ -3,9 +3,15 @@ package com.banktest.loanapi.mapper;
 import com.banktest.loanapi.dto.LoanInstallmentDTO;
 import com.banktest.loanapi.model.LoanInstallment;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 @Mapper(componentModel = "spring")
 public interface LoanInstallmentMapper {
     LoanInstallmentDTO toLoanInstallmentDTO(LoanInstallment loanInstallment);
+
+    // The DTO carries neither the parent loan nor the delinquency job's columns
+    @Mapping(target = "loan", ignore = true)
+    @Mapping(target = "accruedPenalty", ignore = true)
+    @Mapping(target = "delinquencyBucket", ignore = true)
     LoanInstallment toLoanInstallment(LoanInstallmentDTO loanInstallmentDTO);
-}
\ No newline at end of file
+}
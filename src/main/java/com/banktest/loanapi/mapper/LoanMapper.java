@@ -3,9 +3,15 @@ package com.banktest.loanapi.mapper;
 import com.banktest.loanapi.dto.LoanDTO;
 import com.banktest.loanapi.model.Loan;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 @Mapper(componentModel = "spring", uses = {LoanInstallmentMapper.class})
 public interface LoanMapper {
     LoanDTO toLoanDTO(Loan loan);
+
+    // Leaves the installments untouched so the lazy collection is never loaded
+    @Mapping(target = "installments", ignore = true)
+    LoanDTO toLoanSummaryDTO(Loan loan);
+
     Loan toLoan(LoanDTO loanDTO);
 }
\ No newline at end of file
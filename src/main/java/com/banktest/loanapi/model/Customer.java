@@ -14,6 +14,6 @@ public class Customer {
     private Long id;
     private String name;
     private String surname;
-    private Double creditLimit;
-    private Double usedCreditLimit;
+    private Money creditLimit;
+    private Money usedCreditLimit;
 }
\ No newline at end of file
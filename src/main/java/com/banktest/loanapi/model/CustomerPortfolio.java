@@ -0,0 +1,22 @@
+package com.banktest.loanapi.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+// Read model of a customer's loans, one row per customer. Loan creation and payments adjust it in their own
+// transaction; the overdue part depends on the date, so the nightly delinquency run refreshes it.
+@Data
+@Entity
+public class CustomerPortfolio {
+    @Id
+    private Long customerId;
+    private Money outstandingAmount;
+    private Integer openLoanCount;
+    // Earliest unpaid installment due on or after the day it was last computed
+    private LocalDate nextDueDate;
+    private Money overdueAmount;
+    private LocalDate overdueAsOf;
+}
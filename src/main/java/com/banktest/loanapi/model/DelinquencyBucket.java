@@ -0,0 +1,23 @@
+package com.banktest.loanapi.model;
+
+// How far past due an unpaid installment is, in the bands the collections team works by
+public enum DelinquencyBucket {
+    CURRENT,
+    DAYS_1_30,
+    DAYS_31_60,
+    DAYS_61_90,
+    DAYS_OVER_90;
+
+    public static DelinquencyBucket forDaysPastDue(long daysPastDue) {
+        if (daysPastDue <= 0) {
+            return CURRENT;
+        } else if (daysPastDue <= 30) {
+            return DAYS_1_30;
+        } else if (daysPastDue <= 60) {
+            return DAYS_31_60;
+        } else if (daysPastDue <= 90) {
+            return DAYS_61_90;
+        }
+        return DAYS_OVER_90;
+    }
+}
@@ -0,0 +1,26 @@
+package com.banktest.loanapi.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// How far the delinquency run for a date got: every overdue installment up to the id is done
+@Data
+@Entity
+@Table(name = "delinquency_checkpoint")
+@NoArgsConstructor
+@AllArgsConstructor
+public class DelinquencyCheckpoint {
+    public static final Integer ID = 1;
+
+    @Id
+    private Integer id;
+    private LocalDate runDate;
+    private Long lastInstallmentId;
+    private Boolean completed;
+}
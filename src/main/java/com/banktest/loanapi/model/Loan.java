@@ -10,13 +10,19 @@ import java.util.List;
 @Entity
 public class Loan {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
     private Long customerId;
-    private Double loanAmount;
+    private Money loanAmount;
     private Integer numberOfInstallments;
     private LocalDate createDate;
     private Boolean isPaid;
+    private Integer paidInstallmentCount;
+    private Money outstandingAmount;
+    // Bumped on every update of the loan, so it changes with each payment
+    @Version
+    private Long version;
 
     @OneToMany(mappedBy = "loan", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<LoanInstallment> installments;
@@ -9,16 +9,21 @@ import java.time.LocalDate;
 @Entity
 public class LoanInstallment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_installment_seq")
+    @SequenceGenerator(name = "loan_installment_seq", sequenceName = "loan_installment_seq", allocationSize = 50)
     private Long id;
     private Long loanId;
-    private Double amount;
-    private Double paidAmount;
+    private Money amount;
+    private Money paidAmount;
     private LocalDate dueDate;
     private LocalDate paymentDate;
     private Boolean isPaid;
+    // Kept up to date for overdue installments by the delinquency run; payments still price their own penalty
+    private Money accruedPenalty;
+    @Enumerated(EnumType.STRING)
+    private DelinquencyBucket delinquencyBucket;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "loanId", insertable = false, updatable = false)
     private Loan loan;
 }
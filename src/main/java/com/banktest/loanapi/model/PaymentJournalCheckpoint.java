@@ -0,0 +1,22 @@
+package com.banktest.loanapi.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// The last payment journal sequence applied to the database; it moves in the same transaction as the payments
+@Data
+@Entity
+@Table(name = "payment_journal_checkpoint")
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentJournalCheckpoint {
+    public static final Integer ID = 1;
+
+    @Id
+    private Integer id;
+    private Long appliedSequence;
+}
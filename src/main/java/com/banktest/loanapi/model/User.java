@@ -43,9 +43,6 @@ public class User implements UserDetails {
     @Column(updatable = false, name = "created_at")
     private Date createdAt;
 
-    @Column(name = "profile_image", columnDefinition = "BYTEA")
-    private byte[] profileImage;
-
     @UpdateTimestamp
     @Column(name = "updated_at")
     private Date updatedAt;
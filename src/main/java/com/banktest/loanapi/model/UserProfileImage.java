@@ -0,0 +1,21 @@
+package com.banktest.loanapi.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.sql.Blob;
+
+// Kept out of auth_users so that loading a user never touches the image bytes
+@Data
+@Entity
+@Table(name = "user_profile_image")
+public class UserProfileImage {
+    @Id
+    private Integer userId;
+    private String contentType;
+    private Long size;
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    private Blob data;
+}
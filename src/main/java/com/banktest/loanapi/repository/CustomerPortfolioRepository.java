@@ -0,0 +1,65 @@
+package com.banktest.loanapi.repository;
+
+import com.banktest.loanapi.model.CustomerPortfolio;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+
+// Native because the amounts are converted Money attributes; every change is a delta or a recomputation in the database
+public interface CustomerPortfolioRepository extends JpaRepository<CustomerPortfolio, Long> {
+
+    // New loans are never overdue, so only the balance, the count and possibly the next due date move
+    @Modifying
+    @Query(value = "merge into customer_portfolio p " +
+            "using (values (cast(:customerId as bigint), cast(:amount as bigint), cast(:loans as integer), cast(:firstDueDate as date))) " +
+            "s(customer_id, amount, loans, first_due_date) on p.customer_id = s.customer_id " +
+            "when matched then update set outstanding_amount = p.outstanding_amount + s.amount, " +
+            "open_loan_count = p.open_loan_count + s.loans, " +
+            "next_due_date = least(coalesce(p.next_due_date, s.first_due_date), s.first_due_date) " +
+            "when not matched then insert (customer_id, outstanding_amount, open_loan_count, next_due_date, overdue_amount) " +
+            "values (s.customer_id, s.amount, s.loans, s.first_due_date, 0)", nativeQuery = true)
+    int addLoans(@Param("customerId") Long customerId, @Param("amount") long amountMinorUnits,
+                 @Param("loans") int loans, @Param("firstDueDate") LocalDate firstDueDate);
+
+    // Payments only reach installments due from today on, so the overdue amount stays; the next due date is looked up
+    // again over the customer's unpaid installments
+    @Modifying
+    @Query(value = "update customer_portfolio set outstanding_amount = outstanding_amount - :amount, " +
+            "open_loan_count = open_loan_count - :closedLoans, " +
+            "next_due_date = (select min(i.due_date) from loan l join loan_installment i on i.loan_id = l.id " +
+            "where l.customer_id = :customerId and i.is_paid = false and i.due_date >= :today) " +
+            "where customer_id = :customerId", nativeQuery = true)
+    int applyPayments(@Param("customerId") Long customerId, @Param("amount") long amountMinorUnits,
+                      @Param("closedLoans") int closedLoans, @Param("today") LocalDate today);
+
+    // Recomputes every column from the loans of the customers in the id range, inserting any row that is missing
+    @Modifying
+    @Query(value = "merge into customer_portfolio p using (select c.id as customer_id, " +
+            "coalesce((select sum(l.outstanding_amount) from loan l where l.customer_id = c.id and l.is_paid = false), 0) as outstanding_amount, " +
+            "(select count(*) from loan l where l.customer_id = c.id and l.is_paid = false) as open_loan_count, " +
+            "(select min(i.due_date) from loan l join loan_installment i on i.loan_id = l.id " +
+            "where l.customer_id = c.id and i.is_paid = false and i.due_date >= :asOf) as next_due_date, " +
+            "coalesce((select sum(i.amount) from loan l join loan_installment i on i.loan_id = l.id " +
+            "where l.customer_id = c.id and i.is_paid = false and i.due_date < :asOf), 0) as overdue_amount " +
+            "from customer c where c.id between :fromId and :toId) s on p.customer_id = s.customer_id " +
+            "when matched then update set outstanding_amount = s.outstanding_amount, open_loan_count = s.open_loan_count, " +
+            "next_due_date = s.next_due_date, overdue_amount = s.overdue_amount, overdue_as_of = :asOf " +
+            "when not matched then insert (customer_id, outstanding_amount, open_loan_count, next_due_date, overdue_amount, overdue_as_of) " +
+            "values (s.customer_id, s.outstanding_amount, s.open_loan_count, s.next_due_date, s.overdue_amount, :asOf)",
+            nativeQuery = true)
+    int rebuild(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("asOf") LocalDate asOf);
+
+    // Only the columns that move with the date; the balance and the count are left to the transactions that change them
+    @Modifying
+    @Query(value = "update customer_portfolio p set " +
+            "next_due_date = (select min(i.due_date) from loan l join loan_installment i on i.loan_id = l.id " +
+            "where l.customer_id = p.customer_id and i.is_paid = false and i.due_date >= :asOf), " +
+            "overdue_amount = coalesce((select sum(i.amount) from loan l join loan_installment i on i.loan_id = l.id " +
+            "where l.customer_id = p.customer_id and i.is_paid = false and i.due_date < :asOf), 0), " +
+            "overdue_as_of = :asOf " +
+            "where p.customer_id between :fromId and :toId", nativeQuery = true)
+    int refreshDueDates(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("asOf") LocalDate asOf);
+}
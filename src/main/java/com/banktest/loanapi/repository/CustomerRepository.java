@@ -1,7 +1,32 @@
 package com.banktest.loanapi.repository;
 
 import com.banktest.loanapi.model.Customer;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
+
+    // Native because the limits are converted Money attributes; the arithmetic runs on the minor-unit columns
+    @Modifying
+    @Query(value = "update customer set used_credit_limit = used_credit_limit + :amount " +
+            "where id = :customerId and used_credit_limit + :amount <= credit_limit", nativeQuery = true)
+    int reserveCreditLimit(@Param("customerId") Long customerId, @Param("amount") long amountMinorUnits);
+
+    @Modifying
+    @Query(value = "update customer set used_credit_limit = used_credit_limit - :amount where id = :customerId",
+            nativeQuery = true)
+    int releaseCreditLimit(@Param("customerId") Long customerId, @Param("amount") long amountMinorUnits);
+
+    // Keyset chunk of customer ids
+    @Query("select c.id from Customer c where c.id > :afterId order by c.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Row locks on a chunk of customers, the same rows loan creation and payments update
+    @Query(value = "select id from customer where id between :fromId and :toId for update", nativeQuery = true)
+    List<Long> lockIdsBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
 }
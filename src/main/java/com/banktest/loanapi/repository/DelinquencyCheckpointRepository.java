@@ -0,0 +1,7 @@
+package com.banktest.loanapi.repository;
+
+import com.banktest.loanapi.model.DelinquencyCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface DelinquencyCheckpointRepository extends JpaRepository<DelinquencyCheckpoint, Integer> {
+}
@@ -0,0 +1,11 @@
+package com.banktest.loanapi.repository;
+
+import com.banktest.loanapi.dto.DelinquencyUpdate;
+
+import java.util.List;
+
+public interface LoanInstallmentBatchRepository {
+
+    // Writes the accrued penalty and bucket of each still unpaid installment as one JDBC batch; returns the rows updated
+    int updateDelinquency(List<DelinquencyUpdate> updates);
+}
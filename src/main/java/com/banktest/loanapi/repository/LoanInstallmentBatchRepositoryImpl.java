@@ -0,0 +1,33 @@
+package com.banktest.loanapi.repository;
+
+import com.banktest.loanapi.dto.DelinquencyUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class LoanInstallmentBatchRepositoryImpl implements LoanInstallmentBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int updateDelinquency(List<DelinquencyUpdate> updates) {
+        // Values differ per row, so this is a prepared statement batch rather than one set-based UPDATE;
+        // an installment paid in the meantime is left alone
+        int[][] counts = jdbcTemplate.batchUpdate(
+                "update loan_installment set accrued_penalty = ?, delinquency_bucket = ? where id = ? and is_paid = false",
+                updates, updates.size(), (statement, update) -> {
+                    statement.setLong(1, update.accruedPenaltyMinorUnits());
+                    statement.setString(2, update.bucket().name());
+                    statement.setLong(3, update.installmentId());
+                });
+        int updated = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                updated += Math.max(count, 0);
+            }
+        }
+        return updated;
+    }
+}
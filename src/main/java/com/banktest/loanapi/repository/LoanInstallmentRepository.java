@@ -1,13 +1,57 @@
 package com.banktest.loanapi.repository;
 
+import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.dto.OverdueInstallment;
+import com.banktest.loanapi.dto.PaidInstallmentTotals;
 import com.banktest.loanapi.model.LoanInstallment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface LoanInstallmentRepository extends JpaRepository<LoanInstallment, Long> {
+public interface LoanInstallmentRepository extends JpaRepository<LoanInstallment, Long>, LoanInstallmentBatchRepository {
     List<LoanInstallment> findByLoanId(Long loanId);
     List<LoanInstallment> findByLoanIdAndIsPaidFalseAndDueDateBetween(Long loanId, LocalDate startDate, LocalDate endDate);
     List<LoanInstallment> findByLoanIdAndIsPaidFalse(Long loanId);
+
+    @Query("select new com.banktest.loanapi.dto.LoanInstallmentDTO(" +
+            "i.id, i.loanId, i.amount, i.paidAmount, i.dueDate, i.paymentDate, i.isPaid) " +
+            "from LoanInstallment i where i.loanId in :loanIds order by i.loanId, i.dueDate")
+    List<LoanInstallmentDTO> findDTOsByLoanIdIn(@Param("loanIds") Collection<Long> loanIds);
+
+    @Query("select new com.banktest.loanapi.dto.LoanInstallmentDTO(" +
+            "i.id, i.loanId, i.amount, i.paidAmount, i.dueDate, i.paymentDate, i.isPaid) " +
+            "from LoanInstallment i where i.loanId between :fromLoanId and :toLoanId order by i.loanId, i.id")
+    List<LoanInstallmentDTO> findDTOsByLoanIdBetween(@Param("fromLoanId") Long fromLoanId, @Param("toLoanId") Long toLoanId);
+
+    @Modifying
+    @Query("update LoanInstallment i set i.isPaid = true, i.paidAmount = i.amount, i.paymentDate = :paymentDate " +
+            "where i.id in :installmentIds")
+    int markPaid(@Param("installmentIds") List<Long> installmentIds, @Param("paymentDate") LocalDate paymentDate);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select i from LoanInstallment i order by i.loanId, i.id")
+    Stream<LoanInstallment> streamAllOrderByLoanId();
+
+    // Money columns hold minor units, so the sum is done natively
+    @Query(value = "select loan_id as loanId, count(*) as paidCount, coalesce(sum(paid_amount), 0) as paidAmount " +
+            "from loan_installment where is_paid = true and loan_id in :loanIds group by loan_id", nativeQuery = true)
+    List<PaidInstallmentTotals> findPaidTotalsByLoanIdIn(@Param("loanIds") Collection<Long> loanIds);
+
+    // Keyset chunk of unpaid installments past due, seeking on the primary key so every chunk costs the same
+    @Query("select new com.banktest.loanapi.dto.OverdueInstallment(i.id, i.amount, i.dueDate) from LoanInstallment i " +
+            "where i.id > :afterId and i.isPaid = false and i.dueDate < :asOf order by i.id")
+    List<OverdueInstallment> findOverdueAfter(@Param("afterId") Long afterId, @Param("asOf") LocalDate asOf, Limit limit);
 }
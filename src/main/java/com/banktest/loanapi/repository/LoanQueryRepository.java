@@ -0,0 +1,13 @@
+package com.banktest.loanapi.repository;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.model.Loan;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface LoanQueryRepository {
+
+    // Loans matching the specification in id order, built straight into DTOs without their installments
+    List<LoanDTO> findLoanDTOs(Specification<Loan> specification, int limit);
+}
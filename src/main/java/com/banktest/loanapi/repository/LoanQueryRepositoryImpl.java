@@ -0,0 +1,43 @@
+package com.banktest.loanapi.repository;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.model.Loan;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class LoanQueryRepositoryImpl implements LoanQueryRepository {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<LoanDTO> findLoanDTOs(Specification<Loan> specification, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<LoanDTO> query = cb.createQuery(LoanDTO.class);
+        Root<Loan> loan = query.from(Loan.class);
+
+        // Constructor expression: only the scalar columns are selected, no entity is managed
+        query.select(cb.construct(LoanDTO.class,
+                        loan.get("id"),
+                        loan.get("customerId"),
+                        loan.get("loanAmount"),
+                        loan.get("numberOfInstallments"),
+                        loan.get("createDate"),
+                        loan.get("isPaid"),
+                        loan.get("paidInstallmentCount"),
+                        loan.get("outstandingAmount"),
+                        loan.get("version")))
+                .where(specification.toPredicate(loan, query, cb))
+                .orderBy(cb.asc(loan.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -1,13 +1,50 @@
 package com.banktest.loanapi.repository;
 
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.dto.LoanVersion;
 import com.banktest.loanapi.model.Loan;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface LoanRepository extends JpaRepository<Loan, Long> {
-    List<Loan> findByCustomerId(Long customerId);
-    List<Loan> findByCustomerIdAndNumberOfInstallments(Long customerId, Integer numberOfInstallments);
-    List<Loan> findByCustomerIdAndIsPaid(Long customerId, Boolean isPaid);
-    List<Loan> findByCustomerIdAndNumberOfInstallmentsAndIsPaid(Long customerId, Integer numberOfInstallments, Boolean isPaid);
-}
\ No newline at end of file
+public interface LoanRepository extends JpaRepository<Loan, Long>, LoanQueryRepository {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from Loan l where l.id = :loanId")
+    Optional<Loan> findByIdForUpdate(@Param("loanId") Long loanId);
+
+    // Locked in id order, so workers locking overlapping sets can never deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from Loan l where l.id in :loanIds order by l.id")
+    List<Loan> findAllByIdForUpdate(@Param("loanIds") Collection<Long> loanIds);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select l from Loan l order by l.id")
+    Stream<Loan> streamAllOrderById();
+
+    // Keyset chunk of loan ids
+    @Query("select l.id from Loan l where l.id > :afterId order by l.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query("select new com.banktest.loanapi.dto.LoanDTO(l.id, l.customerId, l.loanAmount, l.numberOfInstallments, " +
+            "l.createDate, l.isPaid, l.paidInstallmentCount, l.outstandingAmount, l.version) " +
+            "from Loan l where l.id between :fromId and :toId order by l.id")
+    List<LoanDTO> findDTOsByIdBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    // Primary key lookup of what a conditional request needs: the owner for the access check and the version
+    @Query("select new com.banktest.loanapi.dto.LoanVersion(l.customerId, l.version) from Loan l where l.id = :loanId")
+    Optional<LoanVersion> findVersionById(@Param("loanId") Long loanId);
+}
@@ -0,0 +1,46 @@
+package com.banktest.loanapi.repository;
+
+import com.banktest.loanapi.dto.LoanSearchCriteria;
+import com.banktest.loanapi.model.Loan;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class LoanSpecifications {
+
+    private LoanSpecifications() {
+    }
+
+    // Loans of one customer matching the optional filters, positioned after the given id
+    public static Specification<Loan> forCustomer(Long customerId, LoanSearchCriteria criteria, Long afterId) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("customerId"), customerId));
+            if (criteria.getIsPaid() != null) {
+                predicates.add(cb.equal(root.get("isPaid"), criteria.getIsPaid()));
+            }
+            if (criteria.getNumberOfInstallments() != null) {
+                predicates.add(cb.equal(root.get("numberOfInstallments"), criteria.getNumberOfInstallments()));
+            }
+            if (criteria.getCreatedFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createDate"), criteria.getCreatedFrom()));
+            }
+            if (criteria.getCreatedTo() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("createDate"), criteria.getCreatedTo()));
+            }
+            if (criteria.getMinAmount() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("loanAmount"), criteria.getMinAmount()));
+            }
+            if (criteria.getMaxAmount() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("loanAmount"), criteria.getMaxAmount()));
+            }
+            // Seek past the previous page instead of skipping rows with an offset
+            if (afterId != null) {
+                predicates.add(cb.greaterThan(root.get("id"), afterId));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
@@ -0,0 +1,7 @@
+package com.banktest.loanapi.repository;
+
+import com.banktest.loanapi.model.PaymentJournalCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PaymentJournalCheckpointRepository extends JpaRepository<PaymentJournalCheckpoint, Integer> {
+}
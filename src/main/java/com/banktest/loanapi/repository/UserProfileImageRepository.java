@@ -0,0 +1,16 @@
+package com.banktest.loanapi.repository;
+
+import com.banktest.loanapi.dto.ProfileImageMetadata;
+import com.banktest.loanapi.model.UserProfileImage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface UserProfileImageRepository extends JpaRepository<UserProfileImage, Integer> {
+
+    @Query("select new com.banktest.loanapi.dto.ProfileImageMetadata(p.contentType, p.size) " +
+            "from UserProfileImage p where p.userId = :userId")
+    Optional<ProfileImageMetadata> findMetadataByUserId(@Param("userId") Integer userId);
+}
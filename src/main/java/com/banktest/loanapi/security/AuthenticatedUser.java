@@ -0,0 +1,22 @@
+package com.banktest.loanapi.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+// Principal built once per request from the verified token claims
+public record AuthenticatedUser(Long userId, String email, List<String> roles) {
+
+    public boolean isAdmin() {
+        return roles.contains("ROLE_ADMIN");
+    }
+
+    public boolean canAccessCustomer(Long customerId) {
+        return isAdmin() || userId.equals(customerId);
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return roles.stream().<GrantedAuthority>map(SimpleGrantedAuthority::new).toList();
+    }
+}
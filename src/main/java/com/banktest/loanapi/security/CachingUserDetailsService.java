@@ -0,0 +1,64 @@
+package com.banktest.loanapi.security;
+
+import com.banktest.loanapi.model.User;
+import com.banktest.loanapi.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+// Bounded, expiring cache in front of UserRepository.findByEmail; unknown emails are not cached,
+// AuthenticationService evicts a user whenever it creates or changes one. The lookup runs on the calling
+// thread outside the cache's map lock, so a virtual thread waiting on JDBC never pins its carrier.
+public class CachingUserDetailsService implements UserDetailsService {
+    private final UserRepository userRepository;
+
+    private final AsyncCache<String, User> cache;
+
+    public CachingUserDetailsService(UserRepository userRepository, long maximumSize, Duration timeToLive,
+                                     MeterRegistry registry) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .buildAsync();
+        // Hit, miss, load and eviction counters as cache.* meters tagged cache=userDetails
+        CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "userDetails");
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        // Only the thread that installs the pending future loads; concurrent callers for the same email wait on it
+        CompletableFuture<User> pending = new CompletableFuture<>();
+        CompletableFuture<User> future = cache.get(username, (email, executor) -> pending);
+        if (future == pending) {
+            try {
+                // A null result removes the entry again
+                pending.complete(userRepository.findByEmail(username).orElse(null));
+            } catch (RuntimeException e) {
+                pending.completeExceptionally(e);
+                throw e;
+            }
+        }
+        User user = future.join();
+        if (user == null) {
+            throw new UsernameNotFoundException("User not found");
+        }
+        return user;
+    }
+
+    public void evict(String email) {
+        cache.synchronous().invalidate(email);
+    }
+
+    public void evictAll() {
+        cache.synchronous().invalidateAll();
+    }
+}
@@ -0,0 +1,87 @@
+package com.banktest.loanapi.security;
+
+import com.banktest.loanapi.service.ApplicationMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Runs right after the JWT filter, so every API call is charged to the user it authenticated; reads and writes draw
+// on separate budgets so a client polling its loans cannot starve its own payments. Rejected calls never reach a
+// controller, and therefore never take a database connection.
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+
+    private final RateLimiter reads;
+
+    private final RateLimiter writes;
+
+    private final ApplicationMetrics metrics;
+
+    public RateLimitFilter(@Value("${rate-limit.enabled:true}") boolean enabled,
+                           @Value("${rate-limit.read.permits-per-second:100}") double readPermitsPerSecond,
+                           @Value("${rate-limit.read.burst:200}") int readBurst,
+                           @Value("${rate-limit.write.permits-per-second:20}") double writePermitsPerSecond,
+                           @Value("${rate-limit.write.burst:40}") int writeBurst,
+                           ApplicationMetrics metrics) {
+        this.enabled = enabled;
+        this.reads = new RateLimiter(readPermitsPerSecond, readBurst);
+        this.writes = new RateLimiter(writePermitsPerSecond, writeBurst);
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        // Anonymous calls are left to the authorization rules
+        if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser user)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean read = isRead(request.getMethod());
+        long waitNanos = (read ? reads : writes).tryAcquire(user.userId(), System.nanoTime());
+        if (waitNanos > 0) {
+            metrics.rateLimited(read);
+            // Whole seconds, rounded up so a client that waits exactly that long gets through
+            long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        reads.evictIdle(now);
+        writes.evictIdle(now);
+    }
+
+    private static boolean isRead(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+}
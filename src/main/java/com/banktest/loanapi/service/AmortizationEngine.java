@@ -0,0 +1,68 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.ScheduledInstallment;
+import com.banktest.loanapi.model.Money;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Builds installment plans without touching the database or the clock, so quoting tools can use it
+// directly; only the template cache is state
+@Component
+public class AmortizationEngine {
+
+    // A handful of installment counts times the months in use; old months simply age out
+    private static final int MAXIMUM_TEMPLATES = 1024;
+
+    private final Cache<TemplateKey, ScheduleTemplate> templates = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_TEMPLATES)
+            .build();
+
+    // Installments fall due on the first day of each month, starting the month after the loan is taken
+    public static YearMonth firstDueMonth(LocalDate startDate) {
+        return YearMonth.from(startDate).plusMonths(1);
+    }
+
+    public ScheduleTemplate template(int numberOfInstallments, YearMonth firstDueMonth) {
+        if (numberOfInstallments < 1) {
+            throw new IllegalArgumentException("Number of installments must be positive");
+        }
+        return templates.get(new TemplateKey(numberOfInstallments, firstDueMonth), AmortizationEngine::buildTemplate);
+    }
+
+    public List<ScheduledInstallment> schedule(Money totalAmount, int numberOfInstallments, LocalDate startDate) {
+        ScheduleTemplate template = template(numberOfInstallments, firstDueMonth(startDate));
+        Money[] amounts = template.split(totalAmount);
+        List<ScheduledInstallment> schedule = new ArrayList<>(amounts.length);
+        for (int i = 0; i < amounts.length; i++) {
+            schedule.add(new ScheduledInstallment(i + 1, template.dueDate(i), amounts[i]));
+        }
+        return Collections.unmodifiableList(schedule);
+    }
+
+    long cachedTemplates() {
+        return templates.estimatedSize();
+    }
+
+    private static ScheduleTemplate buildTemplate(TemplateKey key) {
+        LocalDate firstDueDate = key.firstDueMonth().atDay(1);
+        LocalDate[] dueDates = new LocalDate[key.numberOfInstallments()];
+        for (int i = 0; i < dueDates.length; i++) {
+            dueDates[i] = firstDueDate.plusMonths(i);
+        }
+        // Level installments: every share weighs the same
+        long[] shareWeights = new long[key.numberOfInstallments()];
+        Arrays.fill(shareWeights, 1);
+        return new ScheduleTemplate(key.firstDueMonth(), dueDates, shareWeights);
+    }
+
+    private record TemplateKey(int numberOfInstallments, YearMonth firstDueMonth) {
+    }
+}
@@ -0,0 +1,149 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.model.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+// Every meter is registered once up front; the hot paths only touch the meter instances, never the registry
+@Component
+public class ApplicationMetrics {
+
+    // Amount counters are kept in major currency units
+    private static final double MINOR_UNITS_PER_MAJOR = Math.pow(10, Money.SCALE);
+
+    private final Timer createLoan;
+
+    private final Timer listLoans;
+
+    private final Timer listInstallments;
+
+    private final Timer payInstallments;
+
+    private final Timer jwtAuthentication;
+
+    private final Timer authenticate;
+
+    private final Counter creditLimitRejections;
+
+    private final Counter installmentsPaid;
+
+    private final Counter loansClosed;
+
+    private final Counter discountAmount;
+
+    private final Counter penaltyAmount;
+
+    private final Counter idempotentReplays;
+
+    private final Counter readsRateLimited;
+
+    private final Counter writesRateLimited;
+
+    public ApplicationMetrics(MeterRegistry registry) {
+        this.createLoan = operationTimer(registry, "create");
+        this.listLoans = operationTimer(registry, "list");
+        this.listInstallments = operationTimer(registry, "installments");
+        this.payInstallments = operationTimer(registry, "pay");
+        this.jwtAuthentication = Timer.builder("auth.jwt")
+                .description("Bearer token verification per request")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.authenticate = Timer.builder("auth.authenticate")
+                .description("Email and password authentication")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.creditLimitRejections = Counter.builder("loan.credit.rejections")
+                .description("Loans refused for lack of credit limit")
+                .register(registry);
+        this.installmentsPaid = Counter.builder("loan.installments.paid")
+                .description("Installments settled by payments")
+                .register(registry);
+        this.loansClosed = Counter.builder("loan.closed")
+                .description("Loans fully paid off")
+                .register(registry);
+        this.discountAmount = adjustmentCounter(registry, "discount");
+        this.penaltyAmount = adjustmentCounter(registry, "penalty");
+        this.idempotentReplays = Counter.builder("loan.payment.idempotent.replays")
+                .description("Payments answered from the idempotency store instead of being run again")
+                .register(registry);
+        this.readsRateLimited = rateLimitCounter(registry, "read");
+        this.writesRateLimited = rateLimitCounter(registry, "write");
+    }
+
+    private static Timer operationTimer(MeterRegistry registry, String operation) {
+        return Timer.builder("loan.operation")
+                .description("Loan service operations")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Counter rateLimitCounter(MeterRegistry registry, String budget) {
+        return Counter.builder("http.rate-limit.rejections")
+                .description("API calls refused with 429 because the user's budget was spent")
+                .tag("budget", budget)
+                .register(registry);
+    }
+
+    private static Counter adjustmentCounter(MeterRegistry registry, String type) {
+        return Counter.builder("loan.payment.adjustment")
+                .description("Early payment discounts and late payment penalties")
+                .baseUnit("currency")
+                .tag("type", type)
+                .register(registry);
+    }
+
+    public Timer createLoan() {
+        return createLoan;
+    }
+
+    public Timer listLoans() {
+        return listLoans;
+    }
+
+    public Timer listInstallments() {
+        return listInstallments;
+    }
+
+    public Timer payInstallments() {
+        return payInstallments;
+    }
+
+    public Timer jwtAuthentication() {
+        return jwtAuthentication;
+    }
+
+    public Timer authenticate() {
+        return authenticate;
+    }
+
+    public void creditLimitRejected() {
+        creditLimitRejections.increment();
+    }
+
+    public void installmentsPaid(int count) {
+        installmentsPaid.increment(count);
+    }
+
+    public void loanClosed() {
+        loansClosed.increment();
+    }
+
+    public void discount(long minorUnits) {
+        discountAmount.increment(minorUnits / MINOR_UNITS_PER_MAJOR);
+    }
+
+    public void penalty(long minorUnits) {
+        penaltyAmount.increment(minorUnits / MINOR_UNITS_PER_MAJOR);
+    }
+
+    public void idempotentReplay() {
+        idempotentReplays.increment();
+    }
+
+    public void rateLimited(boolean read) {
+        (read ? readsRateLimited : writesRateLimited).increment();
+    }
+}
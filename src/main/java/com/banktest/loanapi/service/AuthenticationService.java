@@ -1,35 +1,51 @@
 package com.banktest.loanapi.service;
 
 
+import com.banktest.loanapi.dto.ChangePasswordDto;
 import com.banktest.loanapi.dto.LoginUserDto;
 import com.banktest.loanapi.dto.RegisterUserDto;
 import com.banktest.loanapi.model.User;
 import com.banktest.loanapi.repository.UserRepository;
+import com.banktest.loanapi.security.AuthenticatedUser;
+import com.banktest.loanapi.security.CachingUserDetailsService;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
 public class AuthenticationService {
+    private static final List<String> KNOWN_ROLES = List.of("ROLE_ADMIN", "ROLE_CUSTOMER");
+
     private final UserRepository userRepository;
 
     private final PasswordEncoder passwordEncoder;
 
     private final AuthenticationManager authenticationManager;
 
+    private final CachingUserDetailsService userDetailsService;
+
+    private final ApplicationMetrics metrics;
+
     public AuthenticationService(
             UserRepository userRepository,
             AuthenticationManager authenticationManager,
-            PasswordEncoder passwordEncoder
+            PasswordEncoder passwordEncoder,
+            CachingUserDetailsService userDetailsService,
+            ApplicationMetrics metrics
     ) {
         this.authenticationManager = authenticationManager;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userDetailsService = userDetailsService;
+        this.metrics = metrics;
     }
 
     public User signup(RegisterUserDto input) {
@@ -40,24 +56,53 @@ public class AuthenticationService {
                 .roles(List.of("ROLE_ADMIN")) // Default role
                 .build();
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        userDetailsService.evict(savedUser.getEmail());
+        return savedUser;
+    }
+
+    public User updateRoles(String email, List<String> roles) {
+        if (roles.isEmpty() || !KNOWN_ROLES.containsAll(roles)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Roles must be some of " + KNOWN_ROLES);
+        }
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        user.setRoles(new ArrayList<>(roles));
+
+        User savedUser = userRepository.save(user);
+        userDetailsService.evict(email);
+        return savedUser;
+    }
+
+    // The current password is checked as a login would; a wrong one fails with 401
+    public User changePassword(String email, ChangePasswordDto input) {
+        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(email, input.getCurrentPassword()));
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        user.setPassword(passwordEncoder.encode(input.getNewPassword()));
+
+        User savedUser = userRepository.save(user);
+        userDetailsService.evict(email);
+        return savedUser;
     }
 
     public User authenticate(LoginUserDto input) {
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        input.getEmail(),
-                        input.getPassword()
-                )
-        );
-
-        return userRepository.findByEmail(input.getEmail())
-                .orElseThrow();
+        // Timed whole: the password hash check dominates
+        return metrics.authenticate().record(() -> {
+            authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            input.getEmail(),
+                            input.getPassword()
+                    )
+            );
+
+            // Served from the user details cache the authentication has just filled
+            return (User) userDetailsService.loadUserByUsername(input.getEmail());
+        });
     }
 
     public UserDetails loadUserByUsername(String email) {
-        return userRepository.findByEmail(email)
-                .orElseThrow();
+        return userDetailsService.loadUserByUsername(email);
     }
 
 
@@ -71,7 +116,9 @@ public class AuthenticationService {
     private String getAuthenticatedUserEmail() {
         Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 
-        if (principal instanceof UserDetails) {
+        if (principal instanceof AuthenticatedUser) {
+            return ((AuthenticatedUser) principal).email();
+        } else if (principal instanceof UserDetails) {
             return ((UserDetails) principal).getUsername();
         } else {
             throw new RuntimeException("Failed to retrieve authenticated user");
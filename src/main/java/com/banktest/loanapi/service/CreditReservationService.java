@@ -0,0 +1,28 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@RequiredArgsConstructor
+public class CreditReservationService {
+
+    private final CustomerRepository customerRepository;
+
+    // The limit check and the increment are one conditional UPDATE, so the database decides
+    // atomically for every thread and every node; no row is read into the application first
+    @Transactional
+    public boolean reserve(Long customerId, Money amount) {
+        return customerRepository.reserveCreditLimit(customerId, amount.minorUnits()) == 1;
+    }
+
+    @Transactional
+    public void release(Long customerId, Money amount) {
+        if (customerRepository.releaseCreditLimit(customerId, amount.minorUnits()) == 0) {
+            throw new RuntimeException("Customer not found");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.CustomerPortfolioDTO;
+import com.banktest.loanapi.dto.CustomerPortfolioRebuildResultDTO;
+import com.banktest.loanapi.mapper.CustomerMapper;
+import com.banktest.loanapi.model.CustomerPortfolio;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerPortfolioRepository;
+import com.banktest.loanapi.repository.CustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+@Slf4j
+@Service
+public class CustomerPortfolioService {
+
+    private final CustomerPortfolioRepository customerPortfolioRepository;
+
+    private final CustomerRepository customerRepository;
+
+    private final CustomerMapper customerMapper;
+
+    private final TransactionTemplate chunkTransaction;
+
+    private final int chunkSize;
+
+    private final int workers;
+
+    private final boolean virtualThreads;
+
+    public CustomerPortfolioService(CustomerPortfolioRepository customerPortfolioRepository,
+                                    CustomerRepository customerRepository,
+                                    CustomerMapper customerMapper,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${customer-portfolio.chunk-size:1000}") int chunkSize,
+                                    @Value("${customer-portfolio.workers:0}") int workers,
+                                    @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.customerPortfolioRepository = customerPortfolioRepository;
+        this.customerRepository = customerRepository;
+        this.customerMapper = customerMapper;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = chunkSize;
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.virtualThreads = virtualThreads;
+    }
+
+    // Part of the transaction that created the loans
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void loansCreated(Long customerId, Money totalAmount, int loans, LocalDate firstDueDate) {
+        customerPortfolioRepository.addLoans(customerId, totalAmount.minorUnits(), loans, firstDueDate);
+    }
+
+    // Part of the transaction that applied the payments
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void paymentsApplied(Long customerId, Money amountSpent, int loansClosed, LocalDate today) {
+        customerPortfolioRepository.applyPayments(customerId, amountSpent.minorUnits(), loansClosed, today);
+    }
+
+    @Transactional(readOnly = true)
+    public CustomerPortfolioDTO getPortfolio(Long customerId) {
+        CustomerPortfolio portfolio = customerPortfolioRepository.findById(customerId).orElseGet(() -> {
+            // A customer without a loan yet has an empty portfolio
+            if (!customerRepository.existsById(customerId)) {
+                throw new RuntimeException("Customer not found");
+            }
+            CustomerPortfolio empty = new CustomerPortfolio();
+            empty.setCustomerId(customerId);
+            empty.setOutstandingAmount(Money.ZERO);
+            empty.setOpenLoanCount(0);
+            empty.setOverdueAmount(Money.ZERO);
+            return empty;
+        });
+        return customerMapper.toCustomerPortfolioDTO(portfolio);
+    }
+
+    // Repair: recomputes every customer's row from the loans, chunks of customers in parallel
+    public CustomerPortfolioRebuildResultDTO rebuild(LocalDate asOf) {
+        return forEachChunk((fromId, toId) -> customerPortfolioRepository.rebuild(fromId, toId, asOf));
+    }
+
+    // Moves the date-dependent columns to a new day; called by the nightly delinquency run
+    public CustomerPortfolioRebuildResultDTO refreshDueDates(LocalDate asOf) {
+        return forEachChunk((fromId, toId) -> customerPortfolioRepository.refreshDueDates(fromId, toId, asOf));
+    }
+
+    private CustomerPortfolioRebuildResultDTO forEachChunk(ChunkStatement statement) {
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("customer-portfolio-", 0).factory()
+                : Thread.ofPlatform().name("customer-portfolio-", 0).factory();
+        long customers = 0;
+        List<Future<Integer>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(workers, threadFactory)) {
+            // Only the bounds of each chunk are kept; the statement does the work inside the database
+            long afterId = 0;
+            List<Long> ids;
+            do {
+                ids = customerRepository.findIdsAfter(afterId, Limit.of(chunkSize));
+                if (!ids.isEmpty()) {
+                    long fromId = ids.get(0);
+                    long toId = ids.get(ids.size() - 1);
+                    futures.add(executor.submit(() -> chunkTransaction.execute(status -> {
+                        // Loan creation and payments move the customer's credit limit before the portfolio: one that
+                        // got there first commits before the recompute reads, one that comes later adds its change on top
+                        customerRepository.lockIdsBetween(fromId, toId);
+                        return statement.execute(fromId, toId);
+                    })));
+                    customers += ids.size();
+                    afterId = toId;
+                }
+            } while (ids.size() == chunkSize);
+
+            for (Future<Integer> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Customer portfolio update was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Customer portfolio update failed", e.getCause());
+        }
+        return new CustomerPortfolioRebuildResultDTO(customers, futures.size());
+    }
+
+    private interface ChunkStatement {
+        int execute(long fromId, long toId);
+    }
+}
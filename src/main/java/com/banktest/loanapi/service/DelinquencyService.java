@@ -0,0 +1,154 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.DelinquencyRunResultDTO;
+import com.banktest.loanapi.dto.DelinquencyUpdate;
+import com.banktest.loanapi.dto.OverdueInstallment;
+import com.banktest.loanapi.model.DelinquencyBucket;
+import com.banktest.loanapi.model.DelinquencyCheckpoint;
+import com.banktest.loanapi.repository.DelinquencyCheckpointRepository;
+import com.banktest.loanapi.repository.LoanInstallmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Accrues the late payment penalty and delinquency bucket of every overdue installment across the book. Installments
+// are read in keyset chunks and written back as JDBC batches by parallel workers, a wave of chunks at a time; after
+// each wave the checkpoint records the last id done, so a restarted run for the same date carries on from there.
+// A finished run also refreshes the date-dependent part of the customer portfolio summaries.
+@Slf4j
+@Service
+public class DelinquencyService {
+
+    private final LoanInstallmentRepository loanInstallmentRepository;
+
+    private final DelinquencyCheckpointRepository checkpointRepository;
+
+    private final CustomerPortfolioService customerPortfolioService;
+
+    private final TransactionTemplate chunkTransaction;
+
+    private final int chunkSize;
+
+    private final int workers;
+
+    private final boolean virtualThreads;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public DelinquencyService(LoanInstallmentRepository loanInstallmentRepository,
+                              DelinquencyCheckpointRepository checkpointRepository,
+                              CustomerPortfolioService customerPortfolioService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${delinquency.chunk-size:10000}") int chunkSize,
+                              @Value("${delinquency.workers:0}") int workers,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.loanInstallmentRepository = loanInstallmentRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.customerPortfolioService = customerPortfolioService;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = chunkSize;
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.virtualThreads = virtualThreads;
+    }
+
+    @Scheduled(cron = "${delinquency.cron:0 30 1 * * *}")
+    public void runScheduled() {
+        DelinquencyRunResultDTO result = run(LocalDate.now());
+        log.info("Delinquency run for {} updated {} installments in {} chunks", result.getAsOf(),
+                result.getInstallmentsUpdated(), result.getChunks());
+    }
+
+    public DelinquencyRunResultDTO run(LocalDate asOf) {
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("A delinquency run is already in progress");
+        }
+        try {
+            return doRun(asOf);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private DelinquencyRunResultDTO doRun(LocalDate asOf) {
+        // Resume an unfinished run for the same date; any other date starts over
+        DelinquencyCheckpoint checkpoint = checkpointRepository.findById(DelinquencyCheckpoint.ID).orElse(null);
+        long afterId = 0;
+        if (checkpoint != null && asOf.equals(checkpoint.getRunDate())) {
+            if (Boolean.TRUE.equals(checkpoint.getCompleted())) {
+                return new DelinquencyRunResultDTO(asOf, checkpoint.getLastInstallmentId(), 0, 0);
+            }
+            afterId = checkpoint.getLastInstallmentId();
+        }
+        long resumedAfterId = afterId;
+
+        int chunks = 0;
+        long updated = 0;
+        boolean exhausted = false;
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("delinquency-", 0).factory()
+                : Thread.ofPlatform().name("delinquency-", 0).factory();
+        try (ExecutorService executor = Executors.newFixedThreadPool(workers, threadFactory)) {
+            while (!exhausted) {
+                // A wave of at most one chunk per worker, so no more than that is ever held in memory
+                List<Future<Integer>> wave = new ArrayList<>(workers);
+                while (wave.size() < workers) {
+                    List<OverdueInstallment> chunk = loanInstallmentRepository.findOverdueAfter(afterId, asOf, Limit.of(chunkSize));
+                    if (!chunk.isEmpty()) {
+                        afterId = chunk.get(chunk.size() - 1).id();
+                        wave.add(executor.submit(() -> accrue(chunk, asOf)));
+                    }
+                    if (chunk.size() < chunkSize) {
+                        exhausted = true;
+                        break;
+                    }
+                }
+                for (Future<Integer> future : wave) {
+                    updated += future.get();
+                }
+                chunks += wave.size();
+
+                // Every chunk up to here is committed, so a restart can skip them
+                checkpointRepository.save(new DelinquencyCheckpoint(DelinquencyCheckpoint.ID, asOf, afterId, false));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Delinquency run was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Delinquency run failed", e.getCause());
+        }
+
+        // The portfolio summaries' overdue amounts and next due dates move to the same day before the run counts as done
+        customerPortfolioService.refreshDueDates(asOf);
+        checkpointRepository.save(new DelinquencyCheckpoint(DelinquencyCheckpoint.ID, asOf, afterId, true));
+        return new DelinquencyRunResultDTO(asOf, resumedAfterId, chunks, updated);
+    }
+
+    private int accrue(List<OverdueInstallment> chunk, LocalDate asOf) {
+        List<DelinquencyUpdate> updates = new ArrayList<>(chunk.size());
+        for (OverdueInstallment installment : chunk) {
+            // The same 0.1% per day a late payment is charged
+            long daysPastDue = ChronoUnit.DAYS.between(installment.dueDate(), asOf);
+            updates.add(new DelinquencyUpdate(installment.id(),
+                    PaymentEngine.penalty(installment.amount().minorUnits(), daysPastDue),
+                    DelinquencyBucket.forDaysPastDue(daysPastDue)));
+        }
+        return chunkTransaction.execute(status -> loanInstallmentRepository.updateDelinquency(updates));
+    }
+}
@@ -0,0 +1,223 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.LoanBatchItemResultDTO;
+import com.banktest.loanapi.dto.LoanBatchResultDTO;
+import com.banktest.loanapi.dto.LoanRequestDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.Loan;
+import com.banktest.loanapi.model.LoanInstallment;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import com.banktest.loanapi.repository.LoanInstallmentRepository;
+import com.banktest.loanapi.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class LoanBatchService {
+
+    public static final int MAX_BATCH_SIZE = 10_000;
+
+    // Loans committed per transaction; a customer's loans always stay in one chunk
+    static final int CHUNK_SIZE = 200;
+
+    private final CustomerRepository customerRepository;
+
+    private final LoanRepository loanRepository;
+
+    private final LoanInstallmentRepository loanInstallmentRepository;
+
+    private final CreditReservationService creditReservationService;
+
+    private final LoanFactory loanFactory;
+
+    private final CustomerPortfolioService customerPortfolioService;
+
+    private final LoanReadModel loanReadModel;
+
+    private final ApplicationMetrics metrics;
+
+    private final TransactionTemplate chunkTransaction;
+
+    public LoanBatchService(CustomerRepository customerRepository,
+                            LoanRepository loanRepository,
+                            LoanInstallmentRepository loanInstallmentRepository,
+                            CreditReservationService creditReservationService,
+                            LoanFactory loanFactory,
+                            CustomerPortfolioService customerPortfolioService,
+                            LoanReadModel loanReadModel,
+                            ApplicationMetrics metrics,
+                            PlatformTransactionManager transactionManager) {
+        this.customerRepository = customerRepository;
+        this.loanRepository = loanRepository;
+        this.loanInstallmentRepository = loanInstallmentRepository;
+        this.creditReservationService = creditReservationService;
+        this.loanFactory = loanFactory;
+        this.customerPortfolioService = customerPortfolioService;
+        this.loanReadModel = loanReadModel;
+        this.metrics = metrics;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public LoanBatchResultDTO createLoans(List<LoanRequestDTO> requests) {
+        if (requests == null || requests.isEmpty() || requests.size() > MAX_BATCH_SIZE) {
+            throw new RuntimeException("A batch must contain between 1 and " + MAX_BATCH_SIZE + " loans");
+        }
+        LoanBatchItemResultDTO[] results = new LoanBatchItemResultDTO[requests.size()];
+
+        // Validate every item up front and group the valid ones by customer, keeping submission order
+        Map<Long, List<Integer>> indexesByCustomer = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            LoanRequestDTO request = requests.get(i);
+            try {
+                if (request == null || request.getCustomerId() == null) {
+                    throw new RuntimeException("Customer id is required");
+                }
+                loanFactory.validate(request.getLoanAmount(), request.getInterestRate(), request.getNumberOfInstallments());
+                indexesByCustomer.computeIfAbsent(request.getCustomerId(), id -> new ArrayList<>()).add(i);
+            } catch (RuntimeException e) {
+                results[i] = failed(i, request, e.getMessage());
+            }
+        }
+
+        // Commit chunk by chunk, so a failing chunk never undoes the loans already created
+        List<Long> chunkCustomers = new ArrayList<>();
+        int chunkLoans = 0;
+        for (Map.Entry<Long, List<Integer>> entry : indexesByCustomer.entrySet()) {
+            if (chunkLoans > 0 && chunkLoans + entry.getValue().size() > CHUNK_SIZE) {
+                processChunk(chunkCustomers, indexesByCustomer, requests, results);
+                chunkCustomers = new ArrayList<>();
+                chunkLoans = 0;
+            }
+            chunkCustomers.add(entry.getKey());
+            chunkLoans += entry.getValue().size();
+        }
+        if (!chunkCustomers.isEmpty()) {
+            processChunk(chunkCustomers, indexesByCustomer, requests, results);
+        }
+
+        int created = (int) Arrays.stream(results).filter(LoanBatchItemResultDTO::isCreated).count();
+        return new LoanBatchResultDTO(created, results.length - created, Arrays.asList(results));
+    }
+
+    private void processChunk(List<Long> customerIds, Map<Long, List<Integer>> indexesByCustomer,
+                              List<LoanRequestDTO> requests, LoanBatchItemResultDTO[] results) {
+        try {
+            chunkTransaction.executeWithoutResult(status -> createChunk(customerIds, indexesByCustomer, requests, results));
+        } catch (RuntimeException e) {
+            // The whole chunk rolled back, reservations included; report each of its items and carry on
+            log.warn("Loan batch chunk of {} customers failed", customerIds.size(), e);
+            for (Long customerId : customerIds) {
+                for (int index : indexesByCustomer.get(customerId)) {
+                    results[index] = failed(index, requests.get(index), "Batch chunk failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void createChunk(List<Long> customerIds, Map<Long, List<Integer>> indexesByCustomer,
+                             List<LoanRequestDTO> requests, LoanBatchItemResultDTO[] results) {
+        // One select for every customer of the chunk
+        Map<Long, Customer> customers = customerRepository.findAllById(customerIds).stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
+        LocalDate today = LocalDate.now();
+        List<Loan> loans = new ArrayList<>();
+        List<Integer> loanIndexes = new ArrayList<>();
+
+        for (Long customerId : customerIds) {
+            List<Integer> indexes = indexesByCustomer.get(customerId);
+            Customer customer = customers.get(customerId);
+            if (customer == null) {
+                indexes.forEach(index -> results[index] = failed(index, requests.get(index), "Customer not found"));
+                continue;
+            }
+
+            // Credit check once per customer: take the requests in order while they fit the available limit
+            long available = customer.getCreditLimit().minorUnits() - customer.getUsedCreditLimit().minorUnits();
+            long reserved = 0;
+            List<Integer> accepted = new ArrayList<>();
+            List<Money> totals = new ArrayList<>();
+            for (int index : indexes) {
+                LoanRequestDTO request = requests.get(index);
+                Money total = loanFactory.totalAmount(request.getLoanAmount(), request.getInterestRate());
+                if (reserved + total.minorUnits() <= available) {
+                    reserved += total.minorUnits();
+                    accepted.add(index);
+                    totals.add(total);
+                } else {
+                    metrics.creditLimitRejected();
+                    results[index] = failed(index, request, "Customer does not have enough credit limit");
+                }
+            }
+            if (accepted.isEmpty()) {
+                continue;
+            }
+
+            // One conditional UPDATE reserves the customer's whole share. A single loan created since the customer was
+            // read can make it fail; then each loan is reserved on its own, as createLoan would, and those that still
+            // fit are kept.
+            if (!creditReservationService.reserve(customerId, Money.ofMinor(reserved))) {
+                List<Integer> kept = new ArrayList<>();
+                List<Money> keptTotals = new ArrayList<>();
+                for (int i = 0; i < accepted.size(); i++) {
+                    int index = accepted.get(i);
+                    if (creditReservationService.reserve(customerId, totals.get(i))) {
+                        kept.add(index);
+                        keptTotals.add(totals.get(i));
+                    } else {
+                        metrics.creditLimitRejected();
+                        results[index] = failed(index, requests.get(index), "Customer does not have enough credit limit");
+                    }
+                }
+                accepted = kept;
+                totals = keptTotals;
+            }
+            for (int i = 0; i < accepted.size(); i++) {
+                int index = accepted.get(i);
+                loans.add(loanFactory.newLoan(customerId, totals.get(i), requests.get(index).getNumberOfInstallments(), today));
+                loanIndexes.add(index);
+            }
+        }
+
+        // Ids come from the pooled sequences; every insert goes out in JDBC batches at commit
+        loanRepository.saveAll(loans);
+        List<LoanInstallment> installments = new ArrayList<>();
+        Map<Long, LocalDate> firstDueDates = new HashMap<>();
+        for (int i = 0; i < loans.size(); i++) {
+            Loan loan = loans.get(i);
+            List<LoanInstallment> schedule = loanFactory.newInstallments(loan);
+            installments.addAll(schedule);
+            firstDueDates.merge(loan.getCustomerId(), schedule.get(0).getDueDate(), (a, b) -> a.isBefore(b) ? a : b);
+            int index = loanIndexes.get(i);
+            results[index] = new LoanBatchItemResultDTO(index, loan.getCustomerId(), loan.getId(), true, null);
+        }
+        loanInstallmentRepository.saveAll(installments);
+        loanReadModel.loansCreated(loans, installments);
+
+        // One portfolio update per customer, in the order their credit was reserved
+        Map<Long, List<Loan>> loansByCustomer = loans.stream()
+                .collect(Collectors.groupingBy(Loan::getCustomerId, LinkedHashMap::new, Collectors.toList()));
+        loansByCustomer.forEach((customerId, customerLoans) -> customerPortfolioService.loansCreated(customerId,
+                Money.ofMinor(customerLoans.stream().mapToLong(loan -> loan.getLoanAmount().minorUnits()).sum()),
+                customerLoans.size(), firstDueDates.get(customerId)));
+    }
+
+    private static LoanBatchItemResultDTO failed(int index, LoanRequestDTO request, String error) {
+        return new LoanBatchItemResultDTO(index, request != null ? request.getCustomerId() : null, null, false, error);
+    }
+}
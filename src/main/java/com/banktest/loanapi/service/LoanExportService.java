@@ -0,0 +1,89 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.mapper.LoanInstallmentMapper;
+import com.banktest.loanapi.mapper.LoanMapper;
+import com.banktest.loanapi.model.Loan;
+import com.banktest.loanapi.model.LoanInstallment;
+import com.banktest.loanapi.repository.LoanInstallmentRepository;
+import com.banktest.loanapi.repository.LoanRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class LoanExportService {
+
+    // Loans written between output flushes and persistence context clears
+    static final int CHUNK_SIZE = 500;
+
+    private final LoanRepository loanRepository;
+
+    private final LoanInstallmentRepository loanInstallmentRepository;
+
+    private final LoanMapper loanMapper;
+
+    private final LoanInstallmentMapper loanInstallmentMapper;
+
+    private final EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public long exportNdjson(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("");
+        long exported = 0;
+
+        try (Stream<Loan> loans = loanRepository.streamAllOrderById();
+             Stream<LoanInstallment> installments = loanInstallmentRepository.streamAllOrderByLoanId();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // The caller owns the response stream
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            // Both cursors are ordered by loan id, so each loan picks up its installments in a single merge pass
+            Iterator<LoanInstallment> installmentIterator = installments.iterator();
+            LoanInstallment pending = installmentIterator.hasNext() ? installmentIterator.next() : null;
+
+            for (Iterator<Loan> loanIterator = loans.iterator(); loanIterator.hasNext(); ) {
+                Loan loan = loanIterator.next();
+                List<LoanInstallmentDTO> schedule = new ArrayList<>();
+                while (pending != null && pending.getLoanId() <= loan.getId()) {
+                    if (pending.getLoanId().equals(loan.getId())) {
+                        schedule.add(loanInstallmentMapper.toLoanInstallmentDTO(pending));
+                    }
+                    pending = installmentIterator.hasNext() ? installmentIterator.next() : null;
+                }
+
+                // One JSON document per line
+                LoanDTO loanDTO = loanMapper.toLoanSummaryDTO(loan);
+                loanDTO.setInstallments(schedule);
+                writer.writeValue(generator, loanDTO);
+                generator.writeRaw('\n');
+
+                // Push the chunk to the client and let go of the entities read so far
+                if (++exported % CHUNK_SIZE == 0) {
+                    generator.flush();
+                    entityManager.clear();
+                }
+            }
+            generator.flush();
+        }
+        return exported;
+    }
+}
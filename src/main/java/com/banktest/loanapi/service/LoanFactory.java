@@ -0,0 +1,75 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.model.Loan;
+import com.banktest.loanapi.model.LoanInstallment;
+import com.banktest.loanapi.model.Money;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// The loan rules shared by single and batch origination; builds entities, never touches the database
+@Component
+@RequiredArgsConstructor
+public class LoanFactory {
+
+    private static final List<Integer> VALID_INSTALLMENTS = List.of(6, 9, 12, 24);
+
+    private final AmortizationEngine amortizationEngine;
+
+    public void validate(Money loanAmount, Double interestRate, Integer numberOfInstallments) {
+        // Validate loan amount
+        if (loanAmount == null || loanAmount.isNegative() || loanAmount.isZero()) {
+            throw new RuntimeException("Loan amount must be positive");
+        }
+
+        // Validate number of installments
+        if (!VALID_INSTALLMENTS.contains(numberOfInstallments)) {
+            throw new RuntimeException("Number of installments must be 6, 9, 12, or 24");
+        }
+
+        // Validate interest rate
+        if (interestRate == null || interestRate < 0.1 || interestRate > 0.5) {
+            throw new RuntimeException("Interest rate must be between 0.1 and 0.5");
+        }
+    }
+
+    public Money totalAmount(Money loanAmount, Double interestRate) {
+        return loanAmount.times(1 + interestRate);
+    }
+
+    public Loan newLoan(Long customerId, Money totalLoanAmount, Integer numberOfInstallments, LocalDate createDate) {
+        Loan loan = new Loan();
+        loan.setCustomerId(customerId);
+        loan.setLoanAmount(totalLoanAmount);
+        loan.setNumberOfInstallments(numberOfInstallments);
+        loan.setCreateDate(createDate);
+        loan.setIsPaid(false);
+        loan.setPaidInstallmentCount(0);
+        loan.setOutstandingAmount(totalLoanAmount);
+        return loan;
+    }
+
+    // The loan must already have its id
+    public List<LoanInstallment> newInstallments(Loan loan) {
+        // Scale the cached template for this installment count and month; the rounding remainder is on the last one
+        ScheduleTemplate template = amortizationEngine.template(loan.getNumberOfInstallments(),
+                AmortizationEngine.firstDueMonth(loan.getCreateDate()));
+        Money[] amounts = template.split(loan.getLoanAmount());
+
+        List<LoanInstallment> installments = new ArrayList<>(amounts.length);
+        for (int i = 0; i < amounts.length; i++) {
+            LoanInstallment installment = new LoanInstallment();
+            installment.setLoanId(loan.getId());
+            installment.setAmount(amounts[i]);
+            installment.setPaidAmount(Money.ZERO);
+            installment.setDueDate(template.dueDate(i));
+            installment.setPaymentDate(null);
+            installment.setIsPaid(false);
+            installments.add(installment);
+        }
+        return installments;
+    }
+}
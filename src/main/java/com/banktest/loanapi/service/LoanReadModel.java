@@ -0,0 +1,455 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.dto.LoanSearchCriteria;
+import com.banktest.loanapi.dto.LoanVersion;
+import com.banktest.loanapi.dto.ReadModelVerificationDTO;
+import com.banktest.loanapi.model.Loan;
+import com.banktest.loanapi.model.LoanInstallment;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.LoanInstallmentRepository;
+import com.banktest.loanapi.repository.LoanRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Optional in-memory copy of every loan and its installments, indexed by loan id and by customer, so the loan read
+// endpoints are answered without a query. Loaded in parallel at startup, then fed by loan creation and payments once
+// their transaction commits. Payments only ever move a loan forward, so two commits on the same loan may reach the
+// model in either order.
+@Slf4j
+@Service
+public class LoanReadModel {
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+
+    private final LoanRepository loanRepository;
+
+    private final LoanInstallmentRepository loanInstallmentRepository;
+
+    private final boolean enabled;
+
+    private final int loadChunkSize;
+
+    private final int loadWorkers;
+
+    private final boolean virtualThreads;
+
+    // Guards both maps; the views themselves are immutable and replaced whole
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongObjectMap<LoanView> loansById = new LongObjectMap<>(1024);
+
+    // Each customer's loan ids, sorted, so a page is a binary search and a scan
+    private final LongObjectMap<long[]> loanIdsByCustomer = new LongObjectMap<>(1024);
+
+    private volatile boolean ready;
+
+    public LoanReadModel(LoanRepository loanRepository,
+                         LoanInstallmentRepository loanInstallmentRepository,
+                         @Value("${read-model.enabled:false}") boolean enabled,
+                         @Value("${read-model.load-chunk-size:10000}") int loadChunkSize,
+                         @Value("${read-model.load-workers:0}") int loadWorkers,
+                         @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.loanRepository = loanRepository;
+        this.loanInstallmentRepository = loanInstallmentRepository;
+        this.enabled = enabled;
+        this.loadChunkSize = loadChunkSize;
+        this.loadWorkers = loadWorkers > 0 ? loadWorkers : Runtime.getRuntime().availableProcessors();
+        this.virtualThreads = virtualThreads;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Reads go to the model only once it holds the whole book
+    public boolean isReady() {
+        return ready;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("read-model-load-", 0).factory()
+                : Thread.ofPlatform().name("read-model-load-", 0).factory();
+        try (ExecutorService executor = Executors.newFixedThreadPool(loadWorkers, threadFactory)) {
+            // Only the id bounds are read here; each worker selects its own range of loans and installments
+            List<Future<List<LoanView>>> chunks = new ArrayList<>();
+            long afterId = 0;
+            List<Long> ids;
+            do {
+                ids = loanRepository.findIdsAfter(afterId, Limit.of(loadChunkSize));
+                if (!ids.isEmpty()) {
+                    long fromId = ids.get(0);
+                    long toId = ids.get(ids.size() - 1);
+                    chunks.add(executor.submit(() -> loadRange(fromId, toId)));
+                    afterId = toId;
+                }
+            } while (ids.size() == loadChunkSize);
+
+            for (Future<List<LoanView>> chunk : chunks) {
+                List<LoanView> views = chunk.get();
+                lock.writeLock().lock();
+                try {
+                    views.forEach(this::put);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Loading the loan read model was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Loading the loan read model failed", e.getCause());
+        }
+        ready = true;
+        log.info("Loan read model loaded {} loans of {} customers in {} ms", loansById.size(), loanIdsByCustomer.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private List<LoanView> loadRange(long fromId, long toId) {
+        List<LoanDTO> loans = loanRepository.findDTOsByIdBetween(fromId, toId);
+        List<LoanInstallmentDTO> installments = loanInstallmentRepository.findDTOsByLoanIdBetween(fromId, toId);
+
+        // Both lists are in loan id order, so the installments are split off in one pass
+        List<LoanView> views = new ArrayList<>(loans.size());
+        int next = 0;
+        for (LoanDTO loan : loans) {
+            int from = next;
+            while (next < installments.size() && installments.get(next).getLoanId() <= loan.getId()) {
+                next++;
+            }
+            List<LoanInstallmentDTO> schedule = new ArrayList<>();
+            for (int i = from; i < next; i++) {
+                if (installments.get(i).getLoanId().equals(loan.getId())) {
+                    schedule.add(installments.get(i));
+                }
+            }
+            views.add(LoanView.of(loan, schedule));
+        }
+        return views;
+    }
+
+    // Called inside the creating transaction; the loans show up once it commits
+    public void loansCreated(List<Loan> loans, List<LoanInstallment> installments) {
+        if (!enabled) {
+            return;
+        }
+        Map<Long, List<LoanInstallmentDTO>> schedules = new HashMap<>();
+        for (LoanInstallment installment : installments) {
+            schedules.computeIfAbsent(installment.getLoanId(), id -> new ArrayList<>()).add(new LoanInstallmentDTO(
+                    installment.getId(), installment.getLoanId(), installment.getAmount(), installment.getPaidAmount(),
+                    installment.getDueDate(), installment.getPaymentDate(), installment.getIsPaid()));
+        }
+        List<LoanView> views = new ArrayList<>(loans.size());
+        for (Loan loan : loans) {
+            List<LoanInstallmentDTO> schedule = schedules.getOrDefault(loan.getId(), List.of());
+            views.add(LoanView.of(new LoanDTO(loan.getId(), loan.getCustomerId(), loan.getLoanAmount(),
+                    loan.getNumberOfInstallments(), loan.getCreateDate(), loan.getIsPaid(), loan.getPaidInstallmentCount(),
+                    loan.getOutstandingAmount(), loan.getVersion()), schedule));
+        }
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                views.forEach(this::put);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Called inside the paying transaction with the loan's counters as they now stand
+    public void installmentsPaid(Loan loan, List<Long> installmentIds, LocalDate paymentDate) {
+        if (!enabled || installmentIds.isEmpty()) {
+            return;
+        }
+        long loanId = loan.getId();
+        int paidInstallmentCount = loan.getPaidInstallmentCount();
+        long outstanding = loan.getOutstandingAmount().minorUnits();
+        boolean isPaid = Boolean.TRUE.equals(loan.getIsPaid());
+        long[] paidIds = installmentIds.stream().mapToLong(Long::longValue).sorted().toArray();
+        int paymentDay = (int) paymentDate.toEpochDay();
+
+        AfterCommit.run(() -> {
+            // Read only now: the version is bumped when the loan is flushed, after this call
+            long version = loan.getVersion();
+            lock.writeLock().lock();
+            try {
+                LoanView view = loansById.get(loanId);
+                if (view != null) {
+                    loansById.put(loanId, view.paid(paidInstallmentCount, outstanding, isPaid, paidIds, paymentDay, version));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private void put(LoanView view) {
+        loansById.put(view.id, view);
+        long[] loanIds = loanIdsByCustomer.get(view.customerId);
+        loanIdsByCustomer.put(view.customerId, insertSorted(loanIds != null ? loanIds : new long[0], view.id));
+    }
+
+    // The same page the specification query returns: the customer's loans after the cursor, filtered, in id order
+    public List<LoanDTO> findLoans(Long customerId, LoanSearchCriteria criteria, Long afterId, int limit, boolean withInstallments) {
+        List<LoanDTO> page = new ArrayList<>(Math.min(limit, 64));
+        lock.readLock().lock();
+        try {
+            long[] loanIds = loanIdsByCustomer.get(customerId);
+            if (loanIds == null) {
+                return page;
+            }
+            int start = 0;
+            if (afterId != null) {
+                int index = Arrays.binarySearch(loanIds, afterId);
+                start = index >= 0 ? index + 1 : -index - 1;
+            }
+            for (int i = start; i < loanIds.length && page.size() < limit; i++) {
+                LoanView view = loansById.get(loanIds[i]);
+                if (view.matches(criteria)) {
+                    page.add(view.toDTO(withInstallments));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return page;
+    }
+
+    public List<LoanInstallmentDTO> findInstallments(Long loanId) {
+        LoanView view = view(loanId);
+        return view != null ? view.installmentDTOs() : new ArrayList<>();
+    }
+
+    // Null when the loan does not exist
+    public Long findCustomerId(Long loanId) {
+        LoanView view = view(loanId);
+        return view != null ? view.customerId : null;
+    }
+
+    // Null when the loan does not exist
+    public LoanVersion findVersion(Long loanId) {
+        LoanView view = view(loanId);
+        return view != null ? new LoanVersion(view.customerId, view.version) : null;
+    }
+
+    // Null when the loan does not exist
+    public LoanDTO findLoan(Long loanId) {
+        LoanView view = view(loanId);
+        return view != null ? view.toDTO(false) : null;
+    }
+
+    private LoanView view(Long loanId) {
+        lock.readLock().lock();
+        try {
+            return loansById.get(loanId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Compares every loan and installment in the tables with the model, chunk by chunk. Writes landing while it runs
+    // can show up as mismatches, so a mismatch is worth a second run before a reload.
+    public ReadModelVerificationDTO verify() {
+        long loansChecked = 0;
+        long installmentsChecked = 0;
+        long missing = 0;
+        List<Long> mismatched = new ArrayList<>();
+        long mismatchCount = 0;
+
+        long afterId = 0;
+        List<Long> ids;
+        do {
+            ids = loanRepository.findIdsAfter(afterId, Limit.of(loadChunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            long fromId = ids.get(0);
+            long toId = ids.get(ids.size() - 1);
+            afterId = toId;
+            for (LoanView expected : loadRange(fromId, toId)) {
+                loansChecked++;
+                installmentsChecked += expected.installmentIds.length;
+                LoanView actual = view(expected.id);
+                if (actual == null) {
+                    missing++;
+                } else if (!actual.toDTO(true).equals(expected.toDTO(true))) {
+                    mismatchCount++;
+                    if (mismatched.size() < MAX_REPORTED_MISMATCHES) {
+                        mismatched.add(expected.id);
+                    }
+                }
+            }
+        } while (ids.size() == loadChunkSize);
+
+        long modelSize;
+        lock.readLock().lock();
+        try {
+            modelSize = loansById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+        long extra = Math.max(0, modelSize - (loansChecked - missing));
+        return new ReadModelVerificationDTO(loansChecked, installmentsChecked, missing, extra, mismatched,
+                missing == 0 && extra == 0 && mismatchCount == 0);
+    }
+
+    private static long[] insertSorted(long[] sorted, long value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index >= 0) {
+            return sorted;
+        }
+        int at = -index - 1;
+        long[] result = new long[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, at);
+        result[at] = value;
+        System.arraycopy(sorted, at, result, at + 1, sorted.length - at);
+        return result;
+    }
+
+    // One loan with its installments in primitive columns: minor units, epoch days and flags
+    private static final class LoanView {
+        private final long id;
+        private final long customerId;
+        private final long loanAmount;
+        private final int numberOfInstallments;
+        private final int createDay;
+        private final boolean isPaid;
+        private final int paidInstallmentCount;
+        private final long outstandingAmount;
+        private final long version;
+        private final long[] installmentIds;
+        private final long[] amounts;
+        private final long[] paidAmounts;
+        private final int[] dueDays;
+        private final int[] paymentDays;
+        private final boolean[] paid;
+
+        private LoanView(long id, long customerId, long loanAmount, int numberOfInstallments, int createDay, boolean isPaid,
+                         int paidInstallmentCount, long outstandingAmount, long version, long[] installmentIds, long[] amounts,
+                         long[] paidAmounts, int[] dueDays, int[] paymentDays, boolean[] paid) {
+            this.id = id;
+            this.customerId = customerId;
+            this.loanAmount = loanAmount;
+            this.numberOfInstallments = numberOfInstallments;
+            this.createDay = createDay;
+            this.isPaid = isPaid;
+            this.paidInstallmentCount = paidInstallmentCount;
+            this.outstandingAmount = outstandingAmount;
+            this.version = version;
+            this.installmentIds = installmentIds;
+            this.amounts = amounts;
+            this.paidAmounts = paidAmounts;
+            this.dueDays = dueDays;
+            this.paymentDays = paymentDays;
+            this.paid = paid;
+        }
+
+        static LoanView of(LoanDTO loan, List<LoanInstallmentDTO> installments) {
+            int n = installments.size();
+            long[] installmentIds = new long[n];
+            long[] amounts = new long[n];
+            long[] paidAmounts = new long[n];
+            int[] dueDays = new int[n];
+            int[] paymentDays = new int[n];
+            boolean[] paid = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                LoanInstallmentDTO installment = installments.get(i);
+                installmentIds[i] = installment.getId();
+                amounts[i] = minorUnits(installment.getAmount());
+                paidAmounts[i] = minorUnits(installment.getPaidAmount());
+                dueDays[i] = day(installment.getDueDate());
+                paymentDays[i] = day(installment.getPaymentDate());
+                paid[i] = Boolean.TRUE.equals(installment.getIsPaid());
+            }
+            return new LoanView(loan.getId(), loan.getCustomerId(), minorUnits(loan.getLoanAmount()),
+                    loan.getNumberOfInstallments() != null ? loan.getNumberOfInstallments() : 0, day(loan.getCreateDate()),
+                    Boolean.TRUE.equals(loan.getIsPaid()),
+                    loan.getPaidInstallmentCount() != null ? loan.getPaidInstallmentCount() : 0,
+                    minorUnits(loan.getOutstandingAmount()), loan.getVersion() != null ? loan.getVersion() : 0,
+                    installmentIds, amounts, paidAmounts, dueDays, paymentDays, paid);
+        }
+
+        // A copy with the installments marked paid; the counters only ever move forward
+        LoanView paid(int paidCount, long outstanding, boolean loanPaid, long[] paidIds, int paymentDay, long newVersion) {
+            long[] newPaidAmounts = paidAmounts.clone();
+            int[] newPaymentDays = paymentDays.clone();
+            boolean[] newPaid = paid.clone();
+            for (int i = 0; i < installmentIds.length; i++) {
+                if (!newPaid[i] && Arrays.binarySearch(paidIds, installmentIds[i]) >= 0) {
+                    newPaid[i] = true;
+                    newPaidAmounts[i] = amounts[i];
+                    newPaymentDays[i] = paymentDay;
+                }
+            }
+            return new LoanView(id, customerId, loanAmount, numberOfInstallments, createDay, isPaid || loanPaid,
+                    Math.max(paidInstallmentCount, paidCount), Math.min(outstandingAmount, outstanding),
+                    Math.max(version, newVersion), installmentIds, amounts, newPaidAmounts, dueDays, newPaymentDays, newPaid);
+        }
+
+        boolean matches(LoanSearchCriteria criteria) {
+            return (criteria.getIsPaid() == null || criteria.getIsPaid() == isPaid)
+                    && (criteria.getNumberOfInstallments() == null || criteria.getNumberOfInstallments() == numberOfInstallments)
+                    && (criteria.getCreatedFrom() == null || createDay >= criteria.getCreatedFrom().toEpochDay())
+                    && (criteria.getCreatedTo() == null || createDay <= criteria.getCreatedTo().toEpochDay())
+                    && (criteria.getMinAmount() == null || loanAmount >= criteria.getMinAmount().minorUnits())
+                    && (criteria.getMaxAmount() == null || loanAmount <= criteria.getMaxAmount().minorUnits());
+        }
+
+        LoanDTO toDTO(boolean withInstallments) {
+            LoanDTO loan = new LoanDTO(id, customerId, Money.ofMinor(loanAmount), numberOfInstallments, date(createDay),
+                    isPaid, paidInstallmentCount, Money.ofMinor(outstandingAmount), version);
+            if (withInstallments) {
+                loan.setInstallments(installmentDTOs());
+            }
+            return loan;
+        }
+
+        List<LoanInstallmentDTO> installmentDTOs() {
+            List<LoanInstallmentDTO> installments = new ArrayList<>(installmentIds.length);
+            for (int i = 0; i < installmentIds.length; i++) {
+                installments.add(new LoanInstallmentDTO(installmentIds[i], id, Money.ofMinor(amounts[i]),
+                        Money.ofMinor(paidAmounts[i]), date(dueDays[i]), date(paymentDays[i]), paid[i]));
+            }
+            return installments;
+        }
+
+        private static long minorUnits(Money money) {
+            return money != null ? money.minorUnits() : 0;
+        }
+
+        private static int day(LocalDate date) {
+            return date != null ? (int) date.toEpochDay() : NO_DATE;
+        }
+
+        private static LocalDate date(int day) {
+            return day != NO_DATE ? LocalDate.ofEpochDay(day) : null;
+        }
+    }
+}
@@ -2,31 +2,43 @@ package com.banktest.loanapi.service;
 
 import com.banktest.loanapi.dto.LoanDTO;
 import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.dto.LoanPageDTO;
+import com.banktest.loanapi.dto.LoanSearchCriteria;
+import com.banktest.loanapi.dto.LoanVersion;
 import com.banktest.loanapi.dto.PaymentResultResponseDTO;
 import com.banktest.loanapi.mapper.CustomerMapper;
 import com.banktest.loanapi.mapper.LoanInstallmentMapper;
 import com.banktest.loanapi.mapper.LoanMapper;
-import com.banktest.loanapi.model.Customer;
 import com.banktest.loanapi.model.Loan;
 import com.banktest.loanapi.model.LoanInstallment;
+import com.banktest.loanapi.model.Money;
 import com.banktest.loanapi.repository.CustomerRepository;
 import com.banktest.loanapi.repository.LoanInstallmentRepository;
 import com.banktest.loanapi.repository.LoanRepository;
+import com.banktest.loanapi.repository.LoanSpecifications;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class LoanService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    public static final int MAX_PAGE_SIZE = 100;
+
     private final CustomerRepository customerRepository;
 
 
@@ -35,168 +47,170 @@ public class LoanService {
 
     private final LoanInstallmentRepository loanInstallmentRepository;
 
+    private final CreditReservationService creditReservationService;
+
+    private final PaymentEngine paymentEngine;
+
+    private final PaymentJournalService paymentJournalService;
+
+    private final LoanFactory loanFactory;
+
+    private final CustomerPortfolioService customerPortfolioService;
+
+    private final LoanReadModel loanReadModel;
+
     private final CustomerMapper customerMapper;
 
     private final LoanMapper loanMapper;
 
     private final LoanInstallmentMapper loanInstallmentMapper;
 
-    public LoanDTO createLoan(Long customerId, Double loanAmount, Double interestRate, Integer numberOfInstallments) {
-        // Check if the customer exists
-        Customer customer = customerRepository.findById(customerId)
-                .orElseThrow(() -> new RuntimeException("Customer not found"));
+    private final ApplicationMetrics metrics;
 
-        // Check if the customer has enough credit limit
-        Double totalLoanAmount = loanAmount * (1 + interestRate);
-        if (customer.getUsedCreditLimit() + totalLoanAmount > customer.getCreditLimit()) {
-            throw new RuntimeException("Customer does not have enough credit limit");
-        }
+    private final PlatformTransactionManager transactionManager;
 
-        // Validate number of installments
-        List<Integer> validInstallments = Arrays.asList(6, 9, 12, 24);
-        if (!validInstallments.contains(numberOfInstallments)) {
-            throw new RuntimeException("Number of installments must be 6, 9, 12, or 24");
-        }
+    @Transactional
+    public LoanDTO createLoan(Long customerId, Money loanAmount, Double interestRate, Integer numberOfInstallments) {
+        return metrics.createLoan().record(() -> doCreateLoan(customerId, loanAmount, interestRate, numberOfInstallments));
+    }
 
-        // Validate interest rate
-        if (interestRate < 0.1 || interestRate > 0.5) {
-            throw new RuntimeException("Interest rate must be between 0.1 and 0.5");
-        }
+    private LoanDTO doCreateLoan(Long customerId, Money loanAmount, Double interestRate, Integer numberOfInstallments) {
+        // Validate amount, number of installments and interest rate
+        loanFactory.validate(loanAmount, interestRate, numberOfInstallments);
 
-        // Create the loan
-        Loan loan = new Loan();
-        loan.setCustomerId(customerId);
-        loan.setLoanAmount(totalLoanAmount);
-        loan.setNumberOfInstallments(numberOfInstallments);
-        loan.setCreateDate(LocalDate.now());
-        loan.setIsPaid(false);
+        // Reserve the credit limit; nothing is reserved unless the customer exists and has room
+        Money totalLoanAmount = loanFactory.totalAmount(loanAmount, interestRate);
+        if (!creditReservationService.reserve(customerId, totalLoanAmount)) {
+            if (!customerRepository.existsById(customerId)) {
+                throw new RuntimeException("Customer not found");
+            }
+            metrics.creditLimitRejected();
+            throw new RuntimeException("Customer does not have enough credit limit");
+        }
 
-        // Calculate installment amount
-        Double installmentAmount = totalLoanAmount / numberOfInstallments;
+        // Create the loan and persist it first: the id comes from the pooled sequence, no insert is issued until flush
+        Loan loan = loanRepository.save(loanFactory.newLoan(customerId, totalLoanAmount, numberOfInstallments, LocalDate.now()));
 
         // Create installments
-        List<LoanInstallment> installments = new ArrayList<>();
-        LocalDate dueDate = LocalDate.now().plusMonths(1).withDayOfMonth(1);
-        for (int i = 0; i < numberOfInstallments; i++) {
-            LoanInstallment installment = new LoanInstallment();
-            installment.setLoanId(loan.getId());
-            installment.setAmount(installmentAmount);
-            installment.setPaidAmount(0.0);
-            installment.setDueDate(dueDate.plusMonths(i));
-            installment.setPaymentDate(null);
-            installment.setIsPaid(false);
-            installments.add(installment);
-        }
-
+        List<LoanInstallment> installments = loanFactory.newInstallments(loan);
         loan.setInstallments(installments);
 
-        // Update customer's used credit limit
-        customer.setUsedCreditLimit(customer.getUsedCreditLimit() + totalLoanAmount);
-        customerRepository.save(customer);
-
-        // Save the loan and installments
-        loanRepository.save(loan);
+        // Queue the schedule; it is written as one ordered JDBC batch when the transaction commits
         loanInstallmentRepository.saveAll(installments);
 
+        // Keep the customer's portfolio summary in step, in the same transaction
+        customerPortfolioService.loansCreated(customerId, totalLoanAmount, 1, installments.get(0).getDueDate());
+        loanReadModel.loansCreated(List.of(loan), installments);
+
         // Convert to DTO and return
         return loanMapper.toLoanDTO(loan);
     }
 
-    public List<LoanDTO> listLoans(Long customerId, Integer numberOfInstallments, Boolean isPaid) {
-        // Fetch loans based on customer ID and optional filters
-        List<Loan> loans;
-        if (numberOfInstallments != null && isPaid != null) {
-            loans = loanRepository.findByCustomerIdAndNumberOfInstallmentsAndIsPaid(customerId, numberOfInstallments, isPaid);
-        } else if (numberOfInstallments != null) {
-            loans = loanRepository.findByCustomerIdAndNumberOfInstallments(customerId, numberOfInstallments);
-        } else if (isPaid != null) {
-            loans = loanRepository.findByCustomerIdAndIsPaid(customerId, isPaid);
-        } else {
-            loans = loanRepository.findByCustomerId(customerId);
-        }
+    // A page served from the read model never takes a connection; one read from the tables runs in a read-only
+    // transaction, so the loan counters and the installments come from the same snapshot
+    public LoanPageDTO listLoans(Long customerId, LoanSearchCriteria criteria, String cursor, int pageSize, boolean summary) {
+        return metrics.listLoans().record(() -> loanReadModel.isReady()
+                ? doListLoans(customerId, criteria, cursor, pageSize, summary, true)
+                : readOnly(() -> doListLoans(customerId, criteria, cursor, pageSize, summary, false)));
+    }
 
-        // Convert to DTOs and return
-        return loans.stream()
-                .map(loanMapper::toLoanDTO)
-                .collect(Collectors.toList());
+    private <T> T readOnly(Supplier<T> read) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> read.get());
     }
 
-    public List<LoanInstallmentDTO> listInstallments(Long loanId) {
-        // Fetch installments for the given loan ID
-        List<LoanInstallment> installments = loanInstallmentRepository.findByLoanId(loanId);
+    private LoanPageDTO doListLoans(Long customerId, LoanSearchCriteria criteria, String cursor, int pageSize, boolean summary,
+                                    boolean fromReadModel) {
+        // Keep every page bounded, whatever the client asks for
+        int limit = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        Long afterId = cursor != null ? decodeCursor(customerId, cursor) : null;
+
+        // One projection query for any combination of filters, seeking on (customer_id, id); the extra row tells us if there is a next page.
+        // The read model answers the same page from memory, installments included.
+        List<LoanDTO> loans = fromReadModel
+                ? loanReadModel.findLoans(customerId, criteria, afterId, limit + 1, !summary)
+                : loanRepository.findLoanDTOs(LoanSpecifications.forCustomer(customerId, criteria, afterId), limit + 1);
+
+        boolean hasNext = loans.size() > limit;
+        if (hasNext) {
+            loans = new ArrayList<>(loans.subList(0, limit));
+        }
+        String nextCursor = hasNext ? encodeCursor(customerId, loans.get(limit - 1).getId()) : null;
+
+        // Summary pages stop here; otherwise the whole page's installments come back in one IN query
+        if (!summary && !fromReadModel && !loans.isEmpty()) {
+            List<Long> loanIds = loans.stream().map(LoanDTO::getId).collect(Collectors.toList());
+            Map<Long, List<LoanInstallmentDTO>> installmentsByLoan = loanInstallmentRepository.findDTOsByLoanIdIn(loanIds)
+                    .stream()
+                    .collect(Collectors.groupingBy(LoanInstallmentDTO::getLoanId));
+            loans.forEach(loan -> loan.setInstallments(installmentsByLoan.getOrDefault(loan.getId(), new ArrayList<>())));
+        }
 
-        // Convert to DTOs and return
-        return installments.stream()
-                .map(loanInstallmentMapper::toLoanInstallmentDTO)
-                .collect(Collectors.toList());
+        return new LoanPageDTO(loans, nextCursor);
     }
 
-    public PaymentResultResponseDTO payInstallments(Long loanId, Double paymentAmount) {
-        // Fetch the loan
-        Loan loan = loanRepository.findById(loanId)
-                .orElseThrow(() -> new RuntimeException("Loan not found"));
-
-        // Fetch unpaid installments due within the next 3 months
-        LocalDate currentDate = LocalDate.now();
-        LocalDate maxDueDate = currentDate.plusMonths(3);
-        List<LoanInstallment> unpaidInstallments = loanInstallmentRepository
-                .findByLoanIdAndIsPaidFalseAndDueDateBetween(loanId, currentDate, maxDueDate);
-
-        // Sort installments by due date (earliest first)
-        unpaidInstallments.sort(Comparator.comparing(LoanInstallment::getDueDate));
-
-        // Calculate how many installments can be paid
-        int installmentsPaid = 0;
-        double totalAmountSpent = 0.0;
-
-        for (LoanInstallment installment : unpaidInstallments) {
-            if (paymentAmount >= installment.getAmount()) {
-                double installmentAmount = installment.getAmount();
-                long daysDifference = ChronoUnit.DAYS.between(currentDate, installment.getDueDate());
-
-                if (daysDifference > 0) {
-                    // Paid before due date: apply discount
-                    double discount = installmentAmount * 0.001 * daysDifference;
-                    installmentAmount -= discount;
-                } else if (daysDifference < 0) {
-                    // Paid after due date: apply penalty
-                    double penalty = installmentAmount * 0.001 * Math.abs(daysDifference);
-                    installmentAmount += penalty;
-                }
-
-                // Pay the installment
-                installment.setPaidAmount(installment.getAmount());
-                installment.setPaymentDate(currentDate);
-                installment.setIsPaid(true);
-                paymentAmount -= installment.getAmount();
-                totalAmountSpent += installment.getAmount();
-                installmentsPaid++;
-
-                // Save the updated installment
-                loanInstallmentRepository.save(installment);
-            } else {
-                break; // Not enough money to pay the next installment
+    // The cursor is bound to the customer so it cannot be replayed against another customer's loans
+    private static String encodeCursor(Long customerId, Long lastLoanId) {
+        String position = customerId + ":" + lastLoanId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Long decodeCursor(Long customerId, String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (position.length == 2 && Long.valueOf(position[0]).equals(customerId)) {
+                return Long.valueOf(position[1]);
             }
+        } catch (IllegalArgumentException e) {
+            // Falls through to the error below
         }
+        throw new RuntimeException("Invalid cursor");
+    }
 
-        // Update the loan status if all installments are paid
-        boolean isLoanPaid = loanInstallmentRepository.findByLoanIdAndIsPaidFalse(loanId).isEmpty();
-        if (isLoanPaid) {
-            loan.setIsPaid(true);
-            loanRepository.save(loan);
-        }
+    public List<LoanInstallmentDTO> listInstallments(Long loanId) {
+        return metrics.listInstallments().record(() -> {
+            if (loanReadModel.isReady()) {
+                return loanReadModel.findInstallments(loanId);
+            }
+
+            // Fetch installments for the given loan ID
+            List<LoanInstallment> installments = loanInstallmentRepository.findByLoanId(loanId);
 
-        // Update the customer's used credit limit
-        Customer customer = customerRepository.findById(loan.getCustomerId())
-                .orElseThrow(() -> new RuntimeException("Customer not found"));
-        customer.setUsedCreditLimit(customer.getUsedCreditLimit() - totalAmountSpent);
-        customerRepository.save(customer);
+            // Convert to DTOs and return
+            return installments.stream()
+                    .map(loanInstallmentMapper::toLoanInstallmentDTO)
+                    .collect(Collectors.toList());
+        });
+    }
 
-        // Return the payment result
-        return new PaymentResultResponseDTO(installmentsPaid, totalAmountSpent, isLoanPaid);
+    public PaymentResultResponseDTO payInstallments(Long loanId, Money paymentAmount) {
+        // With the journal on, the payment is durable once journaled and reaches the database in a later batch
+        return metrics.payInstallments().record(() -> paymentJournalService.isEnabled()
+                ? paymentJournalService.pay(loanId, paymentAmount)
+                : paymentEngine.pay(loanId, paymentAmount));
     }
 
 
+    // The owner of a loan, for access checks; served from the read model when it is loaded
+    public Long getLoanCustomerId(Long loanId) {
+        Long customerId = loanReadModel.isReady() ? loanReadModel.findCustomerId(loanId) : null;
+        return customerId != null ? customerId : getLoanById(loanId).getCustomerId();
+    }
+
+    // The loan's owner and version, for conditional requests; one primary key lookup unless the read model is loaded
+    public LoanVersion getLoanVersion(Long loanId) {
+        LoanVersion version = loanReadModel.isReady() ? loanReadModel.findVersion(loanId) : null;
+        return version != null ? version : loanRepository.findVersionById(loanId).orElseThrow(
+                () -> new RuntimeException("Loan not found"));
+    }
+
+    // The loan without its installments
+    public LoanDTO getLoan(Long loanId) {
+        LoanDTO loan = loanReadModel.isReady() ? loanReadModel.findLoan(loanId) : null;
+        return loan != null ? loan : loanMapper.toLoanSummaryDTO(getLoanById(loanId));
+    }
+
     public Loan getLoanById(Long loanId) {
       return   loanRepository.findById(loanId).orElseThrow(
               () -> new RuntimeException("Loan not found")
@@ -0,0 +1,33 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// The payment is durable in the journal but could not be applied yet; the journal applies it when it restarts.
+// Unlike other failures it must not be paid again.
+public class PaymentAcceptedException extends RuntimeException {
+
+    private final CompletableFuture<PaymentResultResponseDTO> applied;
+
+    public PaymentAcceptedException(CompletableFuture<PaymentResultResponseDTO> applied, Throwable cause) {
+        super("Payment is journaled and will be applied when the journal restarts", cause);
+        this.applied = applied;
+    }
+
+    // The payment's result once the journal has applied it; until then it is still only accepted
+    public PaymentResultResponseDTO result() {
+        if (!applied.isDone()) {
+            throw new PaymentAcceptedException(applied, getCause());
+        }
+        try {
+            return applied.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
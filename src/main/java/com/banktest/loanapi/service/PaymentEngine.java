@@ -0,0 +1,161 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.model.Loan;
+import com.banktest.loanapi.model.LoanInstallment;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.LoanInstallmentRepository;
+import com.banktest.loanapi.repository.LoanRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+@RequiredArgsConstructor
+public class PaymentEngine {
+
+    private final LoanRepository loanRepository;
+
+    private final LoanInstallmentRepository loanInstallmentRepository;
+
+    private final CreditReservationService creditReservationService;
+
+    private final CustomerPortfolioService customerPortfolioService;
+
+    private final LoanReadModel loanReadModel;
+
+    private final ApplicationMetrics metrics;
+
+    // A payment is a fixed set of statements whatever the schedule length: lock the loan, select the
+    // payable installments, one bulk UPDATE, the loan counters and the credit release
+    @Transactional
+    public PaymentResultResponseDTO pay(Long loanId, Money paymentAmount) {
+        // Lock the loan so concurrent payments on the same loan apply one after another
+        Loan loan = loanRepository.findByIdForUpdate(loanId)
+                .orElseThrow(() -> new RuntimeException("Loan not found"));
+
+        boolean wasPaid = Boolean.TRUE.equals(loan.getIsPaid());
+        LocalDate today = LocalDate.now();
+        PaymentResultResponseDTO result = settle(loan, List.of(paymentAmount), today).get(0);
+
+        // Release the paid part of the customer's used credit limit and move the portfolio summary with it
+        if (result.getInstallmentsPaid() > 0) {
+            creditReservationService.release(loan.getCustomerId(), result.getTotalAmountSpent());
+            customerPortfolioService.paymentsApplied(loan.getCustomerId(), result.getTotalAmountSpent(),
+                    !wasPaid && result.isLoanPaid() ? 1 : 0, today);
+        }
+        return result;
+    }
+
+    // Applies the payments in order, each one exactly as a separate call to pay would, against a single read of the
+    // schedule and a single bulk UPDATE. The caller holds the loan lock and releases the credit limit.
+    public List<PaymentResultResponseDTO> settle(Loan loan, List<Money> payments, LocalDate currentDate) {
+        // Fetch unpaid installments due within the next 3 months
+        List<LoanInstallment> unpaidInstallments = loanInstallmentRepository.findByLoanIdAndIsPaidFalseAndDueDateBetween(
+                loan.getId(), currentDate, PaymentSchedule.lastPayableDueDate(currentDate));
+        PaymentSchedule schedule = PaymentSchedule.ofInstallments(unpaidInstallments, currentDate);
+
+        List<Long> paidInstallmentIds = new ArrayList<>();
+        List<PaymentResultResponseDTO> results = new ArrayList<>(payments.size());
+        boolean closed = false;
+        long discount = 0;
+        long penalty = 0;
+
+        for (Money paymentAmount : payments) {
+            // The installments are settled at their face amount; discounts and penalties are only counted
+            PaymentSchedule.Payment payment = schedule.pay(paymentAmount.minorUnits());
+            int installmentsPaid = payment.installmentsPaid();
+            for (int i = payment.first(); i < payment.first() + installmentsPaid; i++) {
+                paidInstallmentIds.add(schedule.id(i));
+            }
+            Money amountSpent = payment.totalAmountSpent();
+
+            if (installmentsPaid > 0) {
+                // Keep the running totals on the loan, so the paid-off check needs no re-query
+                loan.setPaidInstallmentCount(loan.getPaidInstallmentCount() + installmentsPaid);
+                loan.setOutstandingAmount(loan.getOutstandingAmount().minus(amountSpent));
+                if (loan.getPaidInstallmentCount() >= loan.getNumberOfInstallments() && !Boolean.TRUE.equals(loan.getIsPaid())) {
+                    loan.setIsPaid(true);
+                    closed = true;
+                }
+                discount += payment.discount();
+                penalty += payment.penalty();
+            }
+            results.add(new PaymentResultResponseDTO(installmentsPaid, amountSpent, loan.getIsPaid()));
+        }
+
+        // Mark every paid installment in a single statement
+        if (!paidInstallmentIds.isEmpty()) {
+            loanInstallmentRepository.markPaid(paidInstallmentIds, currentDate);
+            loanReadModel.installmentsPaid(loan, paidInstallmentIds, currentDate);
+            recordPaid(paidInstallmentIds.size(), closed, discount, penalty);
+        }
+        return results;
+    }
+
+    // Counted once the payment commits: a batch that rolls back is settled again, payment by payment
+    private void recordPaid(int installmentsPaid, boolean closed, long discount, long penalty) {
+        AfterCommit.run(() -> {
+            metrics.installmentsPaid(installmentsPaid);
+            if (closed) {
+                metrics.loanClosed();
+            }
+            if (discount > 0) {
+                metrics.discount(discount);
+            }
+            if (penalty > 0) {
+                metrics.penalty(penalty);
+            }
+        });
+    }
+
+    // 0.1% of the installment per day paid early
+    public static long discount(long installmentMinorUnits, long daysEarly) {
+        return Money.fraction(installmentMinorUnits, daysEarly, 1000);
+    }
+
+    // 0.1% of the installment per day late
+    public static long penalty(long installmentMinorUnits, long daysLate) {
+        return Money.fraction(installmentMinorUnits, daysLate, 1000);
+    }
+
+    // Settles many loans in one transaction: one locking select for all of them, each loan's payments in the
+    // given order, then one credit release and portfolio update per customer in customer id order so concurrent
+    // batches take the customer locks alike. Loans that do not exist are left out of the result.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Long, List<PaymentResultResponseDTO>> settleAll(Map<Long, List<Money>> paymentsByLoan, LocalDate currentDate) {
+        Map<Long, List<PaymentResultResponseDTO>> resultsByLoan = new HashMap<>();
+        // Per customer: amount spent and loans closed
+        Map<Long, long[]> releasesByCustomer = new TreeMap<>();
+
+        for (Loan loan : loanRepository.findAllByIdForUpdate(paymentsByLoan.keySet())) {
+            boolean wasPaid = Boolean.TRUE.equals(loan.getIsPaid());
+            List<PaymentResultResponseDTO> results = settle(loan, paymentsByLoan.get(loan.getId()), currentDate);
+            resultsByLoan.put(loan.getId(), results);
+
+            long spent = 0;
+            for (PaymentResultResponseDTO result : results) {
+                spent += result.getTotalAmountSpent().minorUnits();
+            }
+            if (spent > 0) {
+                long[] release = releasesByCustomer.computeIfAbsent(loan.getCustomerId(), id -> new long[2]);
+                release[0] += spent;
+                release[1] += !wasPaid && Boolean.TRUE.equals(loan.getIsPaid()) ? 1 : 0;
+            }
+        }
+
+        releasesByCustomer.forEach((customerId, release) -> {
+            creditReservationService.release(customerId, Money.ofMinor(release[0]));
+            customerPortfolioService.paymentsApplied(customerId, Money.ofMinor(release[0]), (int) release[1], currentDate);
+        });
+        return resultsByLoan;
+    }
+}
@@ -0,0 +1,276 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.model.Money;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// The rows of a payment file and their outcomes, held in parallel primitive arrays indexed by row.
+// Workers only ever write the rows of their own loans, so no row is shared between threads.
+final class PaymentFile {
+
+    // Bytes of the input mapped at a time; a window always ends on a line break
+    static final int MAP_WINDOW = 64 * 1024 * 1024;
+
+    static final String RESULT_HEADER = "line,loanId,amount,status,installmentsPaid,amountSpent,loanPaid,error";
+
+    private int size;
+
+    private int[] lineNumbers = new int[1024];
+
+    private long[] loanIds = new long[1024];
+
+    private long[] amounts = new long[1024];
+
+    private String[] errors = new String[1024];
+
+    private int[] installmentsPaid;
+
+    private long[] amountsSpent;
+
+    private boolean[] loansPaid;
+
+    static PaymentFile read(Path input) throws IOException {
+        PaymentFile file = new PaymentFile();
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long position = 0;
+            int lineNumber = 0;
+            while (position < fileSize) {
+                int length = (int) Math.min(MAP_WINDOW, fileSize - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == fileSize;
+
+                // Parse straight from the mapped bytes, one line at a time; no line is ever turned into a String
+                int lineStart = 0;
+                for (int i = 0; i < length; i++) {
+                    if (buffer.get(i) == '\n') {
+                        file.parseLine(buffer, lineStart, i, ++lineNumber);
+                        lineStart = i + 1;
+                    }
+                }
+                if (last) {
+                    if (lineStart < length) {
+                        file.parseLine(buffer, lineStart, length, ++lineNumber);
+                    }
+                    position = fileSize;
+                } else {
+                    // The next window starts on the unfinished line
+                    if (lineStart == 0) {
+                        throw new RuntimeException("Line " + (lineNumber + 1) + " is too long");
+                    }
+                    position += lineStart;
+                }
+            }
+        }
+        file.installmentsPaid = new int[file.size];
+        file.amountsSpent = new long[file.size];
+        file.loansPaid = new boolean[file.size];
+        return file;
+    }
+
+    private void parseLine(MappedByteBuffer buffer, int from, int to, int lineNumber) {
+        if (to > from && buffer.get(to - 1) == '\r') {
+            to--;
+        }
+        if (to == from) {
+            return; // Blank line
+        }
+        // An optional header: a first line that does not start with a loan id
+        if (lineNumber == 1 && !isDigit(buffer.get(from))) {
+            return;
+        }
+
+        int row = addRow(lineNumber);
+        int comma = from;
+        while (comma < to && buffer.get(comma) != ',') {
+            comma++;
+        }
+        if (comma == to) {
+            errors[row] = "Expected loanId,amount";
+            return;
+        }
+        long loanId = parseLoanId(buffer, from, comma);
+        long amount = parseAmount(buffer, comma + 1, to);
+        if (loanId < 0) {
+            errors[row] = "Invalid loan id";
+        } else if (amount < 0) {
+            errors[row] = "Invalid amount";
+        }
+        loanIds[row] = loanId;
+        amounts[row] = amount;
+    }
+
+    private int addRow(int lineNumber) {
+        if (size == lineNumbers.length) {
+            int capacity = size * 2;
+            lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+            loanIds = Arrays.copyOf(loanIds, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            errors = Arrays.copyOf(errors, capacity);
+        }
+        lineNumbers[size] = lineNumber;
+        return size++;
+    }
+
+    // A positive id of at most 18 digits, or -1
+    private static long parseLoanId(MappedByteBuffer buffer, int from, int to) {
+        from = skipSpaces(buffer, from, to);
+        to = trimSpaces(buffer, from, to);
+        if (from == to || to - from > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (!isDigit(b)) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value > 0 ? value : -1;
+    }
+
+    // A non-negative decimal with at most two fraction digits, in minor units, or -1
+    private static long parseAmount(MappedByteBuffer buffer, int from, int to) {
+        from = skipSpaces(buffer, from, to);
+        to = trimSpaces(buffer, from, to);
+        long major = 0;
+        int majorDigits = 0;
+        int i = from;
+        while (i < to && isDigit(buffer.get(i))) {
+            major = major * 10 + (buffer.get(i++) - '0');
+            majorDigits++;
+        }
+        if (majorDigits == 0 || majorDigits > 15) {
+            return -1;
+        }
+        long minor = 0;
+        int minorDigits = 0;
+        if (i < to && buffer.get(i) == '.') {
+            i++;
+            while (i < to && isDigit(buffer.get(i)) && minorDigits < Money.SCALE) {
+                minor = minor * 10 + (buffer.get(i++) - '0');
+                minorDigits++;
+            }
+        }
+        if (i != to) {
+            return -1;
+        }
+        for (; minorDigits < Money.SCALE; minorDigits++) {
+            minor *= 10;
+        }
+        return major * 100 + minor;
+    }
+
+    private static int skipSpaces(MappedByteBuffer buffer, int from, int to) {
+        while (from < to && buffer.get(from) == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimSpaces(MappedByteBuffer buffer, int from, int to) {
+        while (to > from && buffer.get(to - 1) == ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isValid(int row) {
+        return errors[row] == null;
+    }
+
+    long loanId(int row) {
+        return loanIds[row];
+    }
+
+    Money amount(int row) {
+        return Money.ofMinor(amounts[row]);
+    }
+
+    void succeed(int row, PaymentResultResponseDTO result) {
+        errors[row] = null;
+        installmentsPaid[row] = result.getInstallmentsPaid();
+        amountsSpent[row] = result.getTotalAmountSpent().minorUnits();
+        loansPaid[row] = result.isLoanPaid();
+    }
+
+    void fail(int row, String error) {
+        errors[row] = error != null ? error : "Payment failed";
+        installmentsPaid[row] = 0;
+        amountsSpent[row] = 0;
+        loansPaid[row] = false;
+    }
+
+    int failedRows() {
+        int failed = 0;
+        for (int row = 0; row < size; row++) {
+            if (errors[row] != null) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    long installmentsPaid() {
+        long total = 0;
+        for (int row = 0; row < size; row++) {
+            total += installmentsPaid[row];
+        }
+        return total;
+    }
+
+    Money amountSpent() {
+        long total = 0;
+        for (int row = 0; row < size; row++) {
+            total += amountsSpent[row];
+        }
+        return Money.ofMinor(total);
+    }
+
+    // One result line per input row, in file order whatever order the workers finished in
+    void writeResults(Path resultFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8)) {
+            writer.write(RESULT_HEADER);
+            writer.write('\n');
+            StringBuilder line = new StringBuilder(128);
+            for (int row = 0; row < size; row++) {
+                line.setLength(0);
+                line.append(lineNumbers[row]).append(',');
+                if (loanIds[row] > 0) {
+                    line.append(loanIds[row]);
+                }
+                line.append(',');
+                if (amounts[row] >= 0) {
+                    line.append(Money.ofMinor(amounts[row]));
+                }
+                line.append(',');
+                if (errors[row] == null) {
+                    line.append("SUCCEEDED,").append(installmentsPaid[row]).append(',')
+                            .append(Money.ofMinor(amountsSpent[row])).append(',').append(loansPaid[row]).append(',');
+                } else {
+                    line.append("FAILED,0,0.00,false,")
+                            .append('"').append(errors[row].replace("\"", "\"\"")).append('"');
+                }
+                writer.append(line).write('\n');
+            }
+        }
+    }
+}
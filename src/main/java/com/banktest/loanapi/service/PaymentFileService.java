@@ -0,0 +1,183 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.PaymentFileResultDTO;
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.model.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.IntConsumer;
+
+@Slf4j
+@Service
+public class PaymentFileService {
+
+    // Payment rows committed per transaction; a loan's payments always stay in one chunk
+    static final int CHUNK_SIZE = 1_000;
+
+    private final PaymentEngine paymentEngine;
+
+    private final TransactionTemplate chunkTransaction;
+
+    private final int workers;
+
+    private final boolean virtualThreads;
+
+    public PaymentFileService(PaymentEngine paymentEngine,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${payment-file.workers:0}") int workers,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.paymentEngine = paymentEngine;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.virtualThreads = virtualThreads;
+    }
+
+    public PaymentFileResultDTO ingest(Path input, Path resultFile) throws IOException {
+        return ingest(input, resultFile, workers);
+    }
+
+    PaymentFileResultDTO ingest(Path input, Path resultFile, int workers) throws IOException {
+        PaymentFile file = PaymentFile.read(input);
+
+        // Partition by loan: each loan's rows keep their file order and belong to exactly one worker
+        Map<Long, RowList> rowsByLoan = new HashMap<>();
+        for (int row = 0; row < file.size(); row++) {
+            if (file.isValid(row)) {
+                rowsByLoan.computeIfAbsent(file.loanId(row), id -> new RowList()).add(row);
+            }
+        }
+        List<Long> loanIds = new ArrayList<>(rowsByLoan.keySet());
+        loanIds.sort(null);
+
+        int partitionCount = Math.max(1, Math.min(workers, loanIds.size()));
+        List<List<Long>> partitions = new ArrayList<>();
+        for (int p = 0; p < partitionCount; p++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < loanIds.size(); i++) {
+            partitions.get(i % partitionCount).add(loanIds.get(i));
+        }
+
+        // One task per partition bounds the parallelism whatever the thread model; closing waits for every partition
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("payment-file-", 0).factory()
+                : Thread.ofPlatform().name("payment-file-", 0).factory();
+        try (ExecutorService executor = Executors.newFixedThreadPool(partitionCount, threadFactory)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<Long> partition : partitions) {
+                futures.add(executor.submit(() -> processPartition(file, partition, rowsByLoan)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Payment file ingestion was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Payment file ingestion failed", e.getCause());
+        }
+
+        file.writeResults(resultFile);
+        int failed = file.failedRows();
+        return new PaymentFileResultDTO(file.size(), file.size() - failed, failed, file.installmentsPaid(), file.amountSpent());
+    }
+
+    private void processPartition(PaymentFile file, List<Long> loanIds, Map<Long, RowList> rowsByLoan) {
+        List<Long> chunk = new ArrayList<>();
+        int chunkRows = 0;
+        for (Long loanId : loanIds) {
+            int rows = rowsByLoan.get(loanId).size;
+            if (chunkRows > 0 && chunkRows + rows > CHUNK_SIZE) {
+                processChunk(file, chunk, rowsByLoan);
+                chunk = new ArrayList<>();
+                chunkRows = 0;
+            }
+            chunk.add(loanId);
+            chunkRows += rows;
+        }
+        if (!chunk.isEmpty()) {
+            processChunk(file, chunk, rowsByLoan);
+        }
+    }
+
+    private void processChunk(PaymentFile file, List<Long> loanIds, Map<Long, RowList> rowsByLoan) {
+        try {
+            chunkTransaction.executeWithoutResult(status -> settleChunk(file, loanIds, rowsByLoan));
+        } catch (RuntimeException e) {
+            if (loanIds.size() == 1) {
+                rowsByLoan.get(loanIds.get(0)).forEach(row -> file.fail(row, e.getMessage()));
+                return;
+            }
+            // The chunk rolled back; retry it loan by loan so a bad loan only fails its own rows
+            log.warn("Payment file chunk of {} loans failed, retrying loan by loan", loanIds.size(), e);
+            for (Long loanId : loanIds) {
+                processChunk(file, List.of(loanId), rowsByLoan);
+            }
+        }
+    }
+
+    private void settleChunk(PaymentFile file, List<Long> loanIds, Map<Long, RowList> rowsByLoan) {
+        // The loans' payments in file order, under the same rules as a single payment
+        Map<Long, List<Money>> paymentsByLoan = new LinkedHashMap<>();
+        for (Long loanId : loanIds) {
+            RowList rows = rowsByLoan.get(loanId);
+            List<Money> payments = new ArrayList<>(rows.size);
+            rows.forEach(row -> payments.add(file.amount(row)));
+            paymentsByLoan.put(loanId, payments);
+        }
+        Map<Long, List<PaymentResultResponseDTO>> resultsByLoan = paymentEngine.settleAll(paymentsByLoan, LocalDate.now());
+
+        for (Long loanId : loanIds) {
+            RowList rows = rowsByLoan.get(loanId);
+            List<PaymentResultResponseDTO> results = resultsByLoan.get(loanId);
+            if (results == null) {
+                rows.forEach(row -> file.fail(row, "Loan not found"));
+                continue;
+            }
+            for (int i = 0; i < rows.size; i++) {
+                file.succeed(rows.rows[i], results.get(i));
+            }
+        }
+    }
+
+    // Row indexes of one loan, in file order
+    private static final class RowList {
+
+        private int[] rows = new int[4];
+
+        private int size;
+
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        void forEach(IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(rows[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.model.Money;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+// Results of payments sent with an Idempotency-Key, bounded and expiring. The first request for a key
+// installs a pending future and runs the payment outside any lock; duplicates wait on that future, and
+// retries after it completed get the stored result with one map lookup. Failed payments are not stored.
+// A payment the journal accepted but has not applied is stored too, and a retry gets its result once it is applied.
+// Running payments are kept apart from the bounded store: a full store may evict a new entry at once, and a
+// duplicate that missed a running payment's entry would run it a second time.
+@Service
+public class PaymentIdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    // Completed payments only
+    private final Cache<String, Entry> results;
+
+    // Payments still running, never evicted; each leaves once its result is in the store
+    private final ConcurrentMap<String, Entry> inFlight = new ConcurrentHashMap<>();
+
+    private final ApplicationMetrics metrics;
+
+    public PaymentIdempotencyService(@Value("${idempotency.maximum-size}") long maximumSize,
+                                     @Value("${idempotency.time-to-live}") Duration timeToLive,
+                                     ApplicationMetrics metrics) {
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .build();
+        this.metrics = metrics;
+    }
+
+    public PaymentResultResponseDTO pay(Long userId, String idempotencyKey, Long loanId, Money paymentAmount,
+                                        Supplier<PaymentResultResponseDTO> payment) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        // Keys are scoped to the caller, so nobody can read another user's result by guessing a key
+        String key = userId + ":" + idempotencyKey;
+        Entry existing = results.getIfPresent(key);
+        if (existing == null) {
+            Entry pending = new Entry(loanId, paymentAmount, new CompletableFuture<>());
+            existing = inFlight.putIfAbsent(key, pending);
+            if (existing == null) {
+                // The payment that held the key may have finished between the two lookups
+                existing = results.getIfPresent(key);
+                if (existing == null) {
+                    return run(key, pending, payment);
+                }
+                inFlight.remove(key, pending);
+                existing.result().whenComplete((result, failure) -> {
+                    if (failure != null) {
+                        pending.result().completeExceptionally(failure);
+                    } else {
+                        pending.result().complete(result);
+                    }
+                });
+            }
+        }
+
+        if (!existing.loanId().equals(loanId) || !existing.paymentAmount().equals(paymentAmount)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for a different payment");
+        }
+        metrics.idempotentReplay();
+        try {
+            return existing.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PaymentAcceptedException accepted) {
+                return accepted.result();
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private PaymentResultResponseDTO run(String key, Entry pending, Supplier<PaymentResultResponseDTO> payment) {
+        PaymentResultResponseDTO result;
+        try {
+            result = payment.get();
+        } catch (PaymentAcceptedException e) {
+            // Durable already, so a retry must wait for it rather than pay again
+            pending.result().completeExceptionally(e);
+            results.put(key, pending);
+            inFlight.remove(key, pending);
+            throw e;
+        } catch (RuntimeException e) {
+            // Nothing was committed; let a retry run the payment again
+            inFlight.remove(key, pending);
+            pending.result().completeExceptionally(e);
+            throw e;
+        }
+        // Stored before it leaves the in-flight map, so a duplicate always finds it in one of the two
+        pending.result().complete(result);
+        results.put(key, pending);
+        inFlight.remove(key, pending);
+        return result;
+    }
+
+    private record Entry(Long loanId, Money paymentAmount, CompletableFuture<PaymentResultResponseDTO> result) {
+    }
+}
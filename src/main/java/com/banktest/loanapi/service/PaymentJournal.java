@@ -0,0 +1,226 @@
+package com.banktest.loanapi.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Append-only payment journal of fixed-size binary records, spread over preallocated memory-mapped segment files.
+// A record is type (1 byte), padding (3), CRC32C (4), sequence, loan id and two values (8 each): 40 bytes.
+// The first unwritten or torn record ends the journal. Only one thread appends; readers map the files themselves.
+// Segments are numbered in the order they were opened, not by sequence: outcomes alone can fill a segment.
+final class PaymentJournal implements AutoCloseable {
+
+    static final int RECORD_SIZE = 40;
+
+    // A payment accepted for the loan: values are the amount in minor units and the epoch millisecond
+    static final byte PAYMENT = 1;
+
+    // The payment was applied: values are the installments paid and the amount spent in minor units
+    static final byte APPLIED = 2;
+
+    // The payment was rejected and changed nothing
+    static final byte REJECTED = 3;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int MAGIC = 0x504A4E4C;
+
+    private static final int VERSION = 1;
+
+    private final Path directory;
+
+    private final int recordsPerSegment;
+
+    private final CRC32C crc = new CRC32C();
+
+    private final byte[] scratch = new byte[RECORD_SIZE - 8];
+
+    private FileChannel channel;
+
+    private MappedByteBuffer segment;
+
+    private int position;
+
+    private int unforcedFrom;
+
+    private long lastSequence;
+
+    private long segmentNumber;
+
+    private long forces;
+
+    private PaymentJournal(Path directory, int recordsPerSegment) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+    static PaymentJournal open(Path directory, int recordsPerSegment) throws IOException {
+        Files.createDirectories(directory);
+        PaymentJournal journal = new PaymentJournal(directory, recordsPerSegment);
+
+        // The next sequence follows the last payment ever written
+        long[] lastSequence = {0};
+        read(directory, (type, sequence, loanId, first, second) -> {
+            if (type == PAYMENT) {
+                lastSequence[0] = Math.max(lastSequence[0], sequence);
+            }
+        });
+        journal.lastSequence = lastSequence[0];
+
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            journal.openSegment(1);
+        } else {
+            // Carry on after the last valid record of the newest segment
+            Path newest = segments.get(segments.size() - 1);
+            journal.segmentNumber = Long.parseLong(newest.getFileName().toString().substring(9, 28));
+            journal.mapSegment(newest, false);
+            journal.position = HEADER_SIZE + validRecords(journal.segment) * RECORD_SIZE;
+            journal.unforcedFrom = journal.position;
+        }
+        return journal;
+    }
+
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    // fsyncs so far; a group commit covers many payments with one
+    long forces() {
+        return forces;
+    }
+
+    long appendPayment(long loanId, long amountMinorUnits, long epochMilli) throws IOException {
+        long sequence = lastSequence + 1;
+        append(PAYMENT, sequence, loanId, amountMinorUnits, epochMilli);
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    void appendOutcome(byte type, long sequence, long loanId, long installmentsPaid, long amountSpentMinorUnits) throws IOException {
+        append(type, sequence, loanId, installmentsPaid, amountSpentMinorUnits);
+    }
+
+    private void append(byte type, long sequence, long loanId, long first, long second) throws IOException {
+        if (position + RECORD_SIZE > segment.capacity()) {
+            // The full segment is made durable before the journal moves on
+            force();
+            channel.close();
+            openSegment(segmentNumber + 1);
+        }
+        segment.putLong(position + 8, sequence);
+        segment.putLong(position + 16, loanId);
+        segment.putLong(position + 24, first);
+        segment.putLong(position + 32, second);
+        segment.putInt(position + 4, checksum(segment, position, type));
+        // The type goes last: a reader never sees a typed record whose body is missing
+        segment.put(position, type);
+        position += RECORD_SIZE;
+    }
+
+    // One fsync for everything appended since the previous one
+    void force() {
+        if (position > unforcedFrom) {
+            segment.force(unforcedFrom, position - unforcedFrom);
+            unforcedFrom = position;
+            forces++;
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        // Always a new file: opening an existing one would overwrite its durable records
+        mapSegment(directory.resolve(String.format("payments-%019d.journal", number)), true);
+        segmentNumber = number;
+        segment.putInt(0, MAGIC);
+        segment.putInt(4, VERSION);
+        segment.putLong(8, number);
+        segment.force(0, HEADER_SIZE);
+        position = HEADER_SIZE;
+        unforcedFrom = HEADER_SIZE;
+    }
+
+    private void mapSegment(Path file, boolean create) throws IOException {
+        channel = create
+                ? FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    interface RecordVisitor {
+        void record(byte type, long sequence, long loanId, long first, long second);
+    }
+
+    // Visits every valid record in journal order
+    static void read(Path directory, RecordVisitor visitor) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        for (Path file : segments(directory)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                    throw new IOException("Not a payment journal segment: " + file);
+                }
+                int records = validRecords(buffer);
+                for (int i = 0; i < records; i++) {
+                    int offset = HEADER_SIZE + i * RECORD_SIZE;
+                    visitor.record(buffer.get(offset), buffer.getLong(offset + 8), buffer.getLong(offset + 16),
+                            buffer.getLong(offset + 24), buffer.getLong(offset + 32));
+                }
+            }
+        }
+    }
+
+    private static int validRecords(MappedByteBuffer buffer) {
+        byte[] scratch = new byte[RECORD_SIZE - 8];
+        CRC32C crc = new CRC32C();
+        int records = 0;
+        for (int offset = HEADER_SIZE; offset + RECORD_SIZE <= buffer.capacity(); offset += RECORD_SIZE) {
+            byte type = buffer.get(offset);
+            if (type != PAYMENT && type != APPLIED && type != REJECTED) {
+                break;
+            }
+            if (buffer.getInt(offset + 4) != checksum(buffer, offset, type, crc, scratch)) {
+                break; // Torn by a crash mid-write
+            }
+            records++;
+        }
+        return records;
+    }
+
+    private int checksum(MappedByteBuffer buffer, int offset, byte type) {
+        return checksum(buffer, offset, type, crc, scratch);
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int offset, byte type, CRC32C crc, byte[] scratch) {
+        crc.reset();
+        crc.update(type);
+        buffer.get(offset + 8, scratch);
+        crc.update(scratch);
+        return (int) crc.getValue();
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>(files
+                    .filter(file -> file.getFileName().toString().matches("payments-\\d{19}\\.journal"))
+                    .toList());
+            // The zero-padded segment number sorts segments in journal order
+            segments.sort(null);
+            return segments;
+        }
+    }
+}
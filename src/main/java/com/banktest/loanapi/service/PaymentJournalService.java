@@ -0,0 +1,474 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.PaidInstallmentTotals;
+import com.banktest.loanapi.dto.PaymentJournalVerificationDTO;
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.model.PaymentJournalCheckpoint;
+import com.banktest.loanapi.repository.LoanInstallmentRepository;
+import com.banktest.loanapi.repository.PaymentJournalCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Payments are made durable in the journal, many per fsync, and applied to the database behind it in batched
+// transactions. The caller still gets its own payment's result. The checkpoint of the last applied sequence moves in
+// the same transaction as the payments, so on startup exactly the journaled payments after it are replayed.
+@Slf4j
+@Service
+public class PaymentJournalService {
+
+    private static final int VERIFY_CHUNK_SIZE = 1000;
+
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+
+    private final PaymentEngine paymentEngine;
+
+    private final PaymentJournalCheckpointRepository checkpointRepository;
+
+    private final LoanInstallmentRepository loanInstallmentRepository;
+
+    private final TransactionTemplate batchTransaction;
+
+    private final boolean enabled;
+
+    private final Path directory;
+
+    private final int segmentRecords;
+
+    private final int maxBatch;
+
+    // Payments waiting for the writer, bounded so a slow disk pushes back on callers
+    private final BlockingQueue<Pending> accepted;
+
+    // Durable groups waiting for the applier
+    private final BlockingQueue<List<Pending>> durable = new LinkedBlockingQueue<>();
+
+    // Outcomes waiting for the writer; they ride along with the next group's fsync
+    private final Queue<Outcome> outcomes = new ConcurrentLinkedQueue<>();
+
+    // Payments that were journaled but failed to apply, by sequence; the next start completes them as it replays them
+    private final Map<Long, CompletableFuture<PaymentResultResponseDTO>> awaitingReplay = new ConcurrentHashMap<>();
+
+    private PaymentJournal journal;
+
+    private Thread writer;
+
+    private Thread applier;
+
+    private volatile boolean running;
+
+    // Set when the writer or the applier hit an error they cannot carry on from; both stop until the next start
+    private volatile boolean failed;
+
+    // Set when the journal's tail may be torn, so nothing more is appended to it
+    private volatile boolean writeFailed;
+
+    public PaymentJournalService(PaymentEngine paymentEngine,
+                                 PaymentJournalCheckpointRepository checkpointRepository,
+                                 LoanInstallmentRepository loanInstallmentRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${payment-journal.enabled:false}") boolean enabled,
+                                 @Value("${payment-journal.directory:data/payment-journal}") Path directory,
+                                 @Value("${payment-journal.segment-records:1048576}") int segmentRecords,
+                                 @Value("${payment-journal.max-batch:1000}") int maxBatch) {
+        this.paymentEngine = paymentEngine;
+        this.checkpointRepository = checkpointRepository;
+        this.loanInstallmentRepository = loanInstallmentRepository;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.maxBatch = maxBatch;
+        this.accepted = new ArrayBlockingQueue<>(maxBatch * 10);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        journal = PaymentJournal.open(directory, segmentRecords);
+        replay();
+
+        failed = false;
+        writeFailed = false;
+        running = true;
+        writer = Thread.ofPlatform().name("payment-journal-writer").start(this::write);
+        applier = Thread.ofPlatform().name("payment-journal-applier").start(this::apply);
+        log.info("Payment journal open at {}, last sequence {}", directory.toAbsolutePath(), journal.lastSequence());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (journal == null) {
+            return;
+        }
+        // Both threads drain what they already hold before they exit
+        running = false;
+        writer.join();
+        applier.join();
+
+        for (Pending payment; (payment = accepted.poll()) != null; ) {
+            payment.result.completeExceptionally(new RuntimeException("Payment journal is stopped"));
+        }
+        if (!writeFailed) {
+            for (Outcome outcome; (outcome = outcomes.poll()) != null; ) {
+                appendOutcome(outcome);
+            }
+        }
+        outcomes.clear();
+        journal.close();
+        journal = null;
+    }
+
+    public PaymentResultResponseDTO pay(Long loanId, Money paymentAmount) {
+        if (!running) {
+            throw new RuntimeException("Payment journal is not running");
+        }
+        Pending payment = new Pending(0, loanId, paymentAmount, System.currentTimeMillis());
+        try {
+            accepted.put(payment);
+            // The journal may have stopped while we queued; a payment the writer never took is failed here
+            if (!running && accepted.remove(payment)) {
+                throw new RuntimeException("Payment journal is not running");
+            }
+            return payment.result.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the payment", e);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // fsyncs of the journal so far
+    long forces() {
+        return journal.forces();
+    }
+
+    private void replay() throws IOException {
+        long checkpoint = appliedSequence();
+        List<Pending> unapplied = new ArrayList<>();
+        PaymentJournal.read(directory, (type, sequence, loanId, amount, epochMilli) -> {
+            if (type == PaymentJournal.PAYMENT && sequence > checkpoint) {
+                Pending payment = new Pending(sequence, loanId, Money.ofMinor(amount), epochMilli);
+                CompletableFuture<PaymentResultResponseDTO> awaiting = awaitingReplay.remove(sequence);
+                if (awaiting != null) {
+                    payment.result.whenComplete((result, failure) -> {
+                        if (failure != null) {
+                            awaiting.completeExceptionally(failure);
+                        } else {
+                            awaiting.complete(result);
+                        }
+                    });
+                }
+                unapplied.add(payment);
+            }
+        });
+        // Anything else got through before the failure after all, and its result is only in the journal's outcomes
+        awaitingReplay.values().forEach(awaiting -> awaiting.completeExceptionally(
+                new RuntimeException("Payment was applied before the journal restarted")));
+        awaitingReplay.clear();
+
+        // Nobody waits for these; their outcomes go straight to the journal
+        for (int from = 0; from < unapplied.size(); from += maxBatch) {
+            applyBatch(unapplied.subList(from, Math.min(from + maxBatch, unapplied.size())), this::appendOutcome);
+        }
+        journal.force();
+        if (!unapplied.isEmpty()) {
+            log.info("Replayed {} journaled payments after sequence {}", unapplied.size(), checkpoint);
+        }
+    }
+
+    private void write() {
+        List<Pending> group = new ArrayList<>(maxBatch);
+        while ((running || !accepted.isEmpty()) && !failed) {
+            try {
+                Pending first = accepted.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    group.add(first);
+                    accepted.drainTo(group, maxBatch - 1);
+                }
+                for (Outcome outcome; (outcome = outcomes.poll()) != null; ) {
+                    appendOutcome(outcome);
+                }
+                for (Pending payment : group) {
+                    payment.sequence = journal.appendPayment(payment.loanId, payment.amount.minorUnits(), payment.epochMilli);
+                }
+                // One fsync makes the whole group durable
+                journal.force();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | UncheckedIOException e) {
+                // Whether the group reached the disk is unknown, so nothing more is written after it
+                log.error("Payment journal write failed, no further payments are accepted", e);
+                writeFailed = true;
+                fail();
+                group.forEach(payment -> payment.result.completeExceptionally(
+                        new RuntimeException("Payment journal write failed", e)));
+                break;
+            }
+            if (!group.isEmpty()) {
+                durable.add(group);
+                group = new ArrayList<>(maxBatch);
+            }
+        }
+        if (failed) {
+            for (Pending payment; (payment = accepted.poll()) != null; ) {
+                payment.result.completeExceptionally(new RuntimeException("Payment journal is stopped"));
+            }
+        }
+    }
+
+    private void apply() {
+        List<List<Pending>> groups = new ArrayList<>();
+        while (running || writer.isAlive() || !durable.isEmpty()) {
+            try {
+                List<Pending> first = durable.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // Groups that queued up while the database was busy are applied together
+                groups.add(first);
+                durable.drainTo(groups);
+                List<Pending> payments = new ArrayList<>();
+                groups.forEach(payments::addAll);
+                groups.clear();
+
+                try {
+                    applyBatch(payments, outcomes::add);
+                } catch (RuntimeException e) {
+                    // The checkpoint is still before the failed payments. Applying later groups would move it past
+                    // them, so the journal stops here and the next start replays everything after it.
+                    log.error("Applying {} journaled payments failed, no further payments are accepted", payments.size(), e);
+                    fail();
+                    payments.forEach(payment -> accept(payment, e));
+                    // Once the writer is gone nothing more can reach the durable queue
+                    writer.join();
+                    for (List<Pending> group; (group = durable.poll()) != null; ) {
+                        group.forEach(payment -> accept(payment, e));
+                    }
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // The caller learns its payment is durable, and gets a future its replay completes
+    private void accept(Pending payment, RuntimeException e) {
+        CompletableFuture<PaymentResultResponseDTO> applied = new CompletableFuture<>();
+        awaitingReplay.put(payment.sequence, applied);
+        payment.result.completeExceptionally(new PaymentAcceptedException(applied, e));
+    }
+
+    private void fail() {
+        failed = true;
+        running = false;
+    }
+
+    private void applyBatch(List<Pending> payments, Consumer<Outcome> outcomeSink) {
+        // Payments are settled as of the day they were accepted, also when they are replayed later
+        int from = 0;
+        for (int i = 1; i <= payments.size(); i++) {
+            if (i == payments.size() || !payments.get(i).date.equals(payments.get(from).date)) {
+                applyDay(payments.subList(from, i), outcomeSink);
+                from = i;
+            }
+        }
+    }
+
+    private void applyDay(List<Pending> payments, Consumer<Outcome> outcomeSink) {
+        Map<Long, List<Money>> paymentsByLoan = new LinkedHashMap<>();
+        for (Pending payment : payments) {
+            paymentsByLoan.computeIfAbsent(payment.loanId, id -> new ArrayList<>()).add(payment.amount);
+        }
+        long lastSequence = payments.get(payments.size() - 1).sequence;
+
+        Map<Long, List<PaymentResultResponseDTO>> resultsByLoan;
+        try {
+            resultsByLoan = batchTransaction.execute(status -> {
+                Map<Long, List<PaymentResultResponseDTO>> results = paymentEngine.settleAll(paymentsByLoan, payments.get(0).date);
+                checkpointRepository.save(new PaymentJournalCheckpoint(PaymentJournalCheckpoint.ID, lastSequence));
+                return results;
+            });
+        } catch (RuntimeException e) {
+            if (payments.size() == 1) {
+                reject(payments.get(0), e, outcomeSink);
+                return;
+            }
+            // Keep the rest of the batch when one payment fails
+            log.warn("Journaled batch of {} payments failed, retrying payment by payment", payments.size(), e);
+            for (int i = 0; i < payments.size(); i++) {
+                applyDay(payments.subList(i, i + 1), outcomeSink);
+            }
+            return;
+        }
+
+        // Each loan's results come back in the order its payments were journaled
+        Map<Long, Integer> nextResult = new HashMap<>();
+        for (Pending payment : payments) {
+            List<PaymentResultResponseDTO> results = resultsByLoan.get(payment.loanId);
+            if (results == null) {
+                outcomeSink.accept(new Outcome(PaymentJournal.REJECTED, payment.sequence, payment.loanId, 0, 0));
+                payment.result.completeExceptionally(new RuntimeException("Loan not found"));
+                continue;
+            }
+            PaymentResultResponseDTO result = results.get(nextResult.merge(payment.loanId, 1, Integer::sum) - 1);
+            outcomeSink.accept(new Outcome(PaymentJournal.APPLIED, payment.sequence, payment.loanId,
+                    result.getInstallmentsPaid(), result.getTotalAmountSpent().minorUnits()));
+            payment.result.complete(result);
+        }
+    }
+
+    private void reject(Pending payment, RuntimeException e, Consumer<Outcome> outcomeSink) {
+        // The checkpoint still moves past the failed payment, so it is never replayed
+        batchTransaction.executeWithoutResult(status -> checkpointRepository.save(
+                new PaymentJournalCheckpoint(PaymentJournalCheckpoint.ID, payment.sequence)));
+        outcomeSink.accept(new Outcome(PaymentJournal.REJECTED, payment.sequence, payment.loanId, 0, 0));
+        payment.result.completeExceptionally(e);
+    }
+
+    private void appendOutcome(Outcome outcome) {
+        try {
+            journal.appendOutcome(outcome.type, outcome.sequence, outcome.loanId, outcome.installmentsPaid, outcome.amountSpent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long appliedSequence() {
+        return checkpointRepository.findById(PaymentJournalCheckpoint.ID)
+                .map(PaymentJournalCheckpoint::getAppliedSequence)
+                .orElse(0L);
+    }
+
+    // Checks the journal against itself and against the paid installments in the database. Loans with a payment
+    // still pending, or whose outcome was lost in a crash, are left out of the comparison.
+    public PaymentJournalVerificationDTO verify() throws IOException {
+        long checkpoint = appliedSequence();
+        Map<Long, Long> loanBySequence = new HashMap<>();
+        Set<Long> outcomeSequences = new HashSet<>();
+        Map<Long, long[]> appliedByLoan = new HashMap<>();
+        long[] counts = new long[4]; // records, payments, applied, rejected
+
+        PaymentJournal.read(directory, (type, sequence, loanId, first, second) -> {
+            counts[0]++;
+            if (type == PaymentJournal.PAYMENT) {
+                counts[1]++;
+                loanBySequence.put(sequence, loanId);
+                return;
+            }
+            outcomeSequences.add(sequence);
+            if (type == PaymentJournal.APPLIED) {
+                counts[2]++;
+                long[] totals = appliedByLoan.computeIfAbsent(loanId, id -> new long[2]);
+                totals[0] += first;
+                totals[1] += second;
+            } else {
+                counts[3]++;
+            }
+        });
+
+        long pending = 0;
+        long withoutOutcome = 0;
+        Set<Long> uncertainLoans = new HashSet<>();
+        for (Map.Entry<Long, Long> payment : loanBySequence.entrySet()) {
+            if (payment.getKey() > checkpoint) {
+                pending++;
+                uncertainLoans.add(payment.getValue());
+            } else if (!outcomeSequences.contains(payment.getKey())) {
+                withoutOutcome++;
+                uncertainLoans.add(payment.getValue());
+            }
+        }
+
+        List<Long> loanIds = new ArrayList<>(new HashSet<>(loanBySequence.values()));
+        loanIds.removeAll(uncertainLoans);
+        loanIds.sort(null);
+        List<Long> mismatched = new ArrayList<>();
+        long mismatchCount = 0;
+        for (int from = 0; from < loanIds.size(); from += VERIFY_CHUNK_SIZE) {
+            List<Long> chunk = loanIds.subList(from, Math.min(from + VERIFY_CHUNK_SIZE, loanIds.size()));
+            Map<Long, PaidInstallmentTotals> paidByLoan = new HashMap<>();
+            loanInstallmentRepository.findPaidTotalsByLoanIdIn(chunk).forEach(totals -> paidByLoan.put(totals.getLoanId(), totals));
+
+            for (Long loanId : chunk) {
+                long[] journaled = appliedByLoan.getOrDefault(loanId, new long[2]);
+                PaidInstallmentTotals paid = paidByLoan.get(loanId);
+                long paidCount = paid != null ? paid.getPaidCount() : 0;
+                long paidAmount = paid != null ? paid.getPaidAmount() : 0;
+                if (journaled[0] != paidCount || journaled[1] != paidAmount) {
+                    mismatchCount++;
+                    if (mismatched.size() < MAX_REPORTED_MISMATCHES) {
+                        mismatched.add(loanId);
+                    }
+                }
+            }
+        }
+
+        return new PaymentJournalVerificationDTO(counts[0], counts[1], counts[2], counts[3], pending, withoutOutcome,
+                loanIds.size(), mismatched, mismatchCount == 0);
+    }
+
+    private static final class Pending {
+        private long sequence;
+        private final long loanId;
+        private final Money amount;
+        private final long epochMilli;
+        private final LocalDate date;
+        private final CompletableFuture<PaymentResultResponseDTO> result = new CompletableFuture<>();
+
+        private Pending(long sequence, long loanId, Money amount, long epochMilli) {
+            this.sequence = sequence;
+            this.loanId = loanId;
+            this.amount = amount;
+            this.epochMilli = epochMilli;
+            this.date = LocalDate.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneId.systemDefault());
+        }
+    }
+
+    private record Outcome(byte type, long sequence, long loanId, long installmentsPaid, long amountSpent) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.InstallmentQuoteDTO;
+import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.dto.LoanQuoteDTO;
+import com.banktest.loanapi.dto.PaymentCandidateDTO;
+import com.banktest.loanapi.dto.PaymentQuoteDTO;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.LoanInstallmentRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Answers "what if I paid" without paying: the loan's unpaid schedule is read once and every candidate runs through
+// the same PaymentSchedule the payment engine settles with. Nothing is written and nothing is locked.
+@Service
+@RequiredArgsConstructor
+public class PaymentQuoteService {
+
+    public static final int MAX_CANDIDATES = 1000;
+
+    private final LoanInstallmentRepository loanInstallmentRepository;
+
+    private final LoanReadModel loanReadModel;
+
+    // Only joins a transaction, so a quote served from the read model never takes a connection
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public LoanQuoteDTO quote(Long loanId, LocalDate date) {
+        List<LoanInstallmentDTO> unpaid = unpaidInstallments(loanId);
+        PaymentSchedule schedule = PaymentSchedule.ofDTOs(unpaid, date);
+
+        List<InstallmentQuoteDTO> installments = new ArrayList<>(schedule.size());
+        long payoff = 0;
+        long adjustedPayoff = 0;
+        for (int i = 0; i < schedule.size(); i++) {
+            long amount = schedule.amount(i);
+            long adjustment = schedule.adjustment(i);
+            installments.add(new InstallmentQuoteDTO(schedule.id(i), schedule.dueDate(i), Money.ofMinor(amount),
+                    Money.ofMinor(Math.max(0, -adjustment)), Money.ofMinor(Math.max(0, adjustment)),
+                    Money.ofMinor(amount + adjustment)));
+            payoff += amount;
+            adjustedPayoff += amount + adjustment;
+        }
+        return new LoanQuoteDTO(loanId, date, Money.ofMinor(payoff), Money.ofMinor(adjustedPayoff),
+                Money.ofMinor(unpaid.stream().mapToLong(installment -> installment.getAmount().minorUnits()).sum()),
+                !unpaid.isEmpty() && schedule.size() == unpaid.size(), installments);
+    }
+
+    // Each candidate on its own, as if it were the only payment made
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<PaymentQuoteDTO> quote(Long loanId, List<PaymentCandidateDTO> candidates, LocalDate today) {
+        if (candidates.size() > MAX_CANDIDATES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_CANDIDATES + " candidates can be quoted at once");
+        }
+        List<LoanInstallmentDTO> unpaid = unpaidInstallments(loanId);
+
+        List<PaymentQuoteDTO> quotes = new ArrayList<>(candidates.size());
+        for (PaymentCandidateDTO candidate : candidates) {
+            if (candidate.getAmount() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every candidate needs an amount");
+            }
+            LocalDate date = candidate.getDate() != null ? candidate.getDate() : today;
+            PaymentSchedule.Payment payment = PaymentSchedule.ofDTOs(unpaid, date).pay(candidate.getAmount().minorUnits());
+            quotes.add(new PaymentQuoteDTO(candidate.getAmount(), date, payment.installmentsPaid(), payment.totalAmountSpent(),
+                    !unpaid.isEmpty() && payment.installmentsPaid() == unpaid.size(),
+                    Money.ofMinor(payment.discount()), Money.ofMinor(payment.penalty())));
+        }
+        return quotes;
+    }
+
+    private List<LoanInstallmentDTO> unpaidInstallments(Long loanId) {
+        List<LoanInstallmentDTO> installments = loanReadModel.isReady()
+                ? loanReadModel.findInstallments(loanId)
+                : loanInstallmentRepository.findDTOsByLoanIdIn(List.of(loanId));
+        return installments.stream()
+                .filter(installment -> !Boolean.TRUE.equals(installment.getIsPaid()))
+                .collect(Collectors.toList());
+    }
+}
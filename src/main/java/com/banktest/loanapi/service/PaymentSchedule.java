@@ -0,0 +1,134 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.model.LoanInstallment;
+import com.banktest.loanapi.model.Money;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// The payment rules over a loan's unpaid installments, without touching the database or the clock: a payment on a
+// given day reaches the installments due within the next three months, earliest first, and settles each one whole at
+// its face amount; paying early earns 0.1% per day and paying late costs 0.1% per day. The payment engine applies the
+// outcome and the quotes only report it, so the two cannot drift apart.
+final class PaymentSchedule {
+
+    static final int PAYABLE_MONTHS = 3;
+
+    private final LocalDate currentDate;
+
+    private final long[] ids;
+
+    private final long[] amounts;
+
+    private final LocalDate[] dueDates;
+
+    // The first installment no payment has reached yet
+    private int next;
+
+    private PaymentSchedule(LocalDate currentDate, List<Unpaid> payable) {
+        this.currentDate = currentDate;
+        int n = payable.size();
+        this.ids = new long[n];
+        this.amounts = new long[n];
+        this.dueDates = new LocalDate[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = payable.get(i).id();
+            amounts[i] = payable.get(i).amount();
+            dueDates[i] = payable.get(i).dueDate();
+        }
+    }
+
+    static LocalDate lastPayableDueDate(LocalDate currentDate) {
+        return currentDate.plusMonths(PAYABLE_MONTHS);
+    }
+
+    static PaymentSchedule ofInstallments(List<LoanInstallment> unpaid, LocalDate currentDate) {
+        List<Unpaid> installments = new ArrayList<>(unpaid.size());
+        for (LoanInstallment installment : unpaid) {
+            installments.add(new Unpaid(installment.getId(), installment.getAmount().minorUnits(), installment.getDueDate()));
+        }
+        return of(installments, currentDate);
+    }
+
+    static PaymentSchedule ofDTOs(List<LoanInstallmentDTO> unpaid, LocalDate currentDate) {
+        List<Unpaid> installments = new ArrayList<>(unpaid.size());
+        for (LoanInstallmentDTO installment : unpaid) {
+            installments.add(new Unpaid(installment.getId(), installment.getAmount().minorUnits(), installment.getDueDate()));
+        }
+        return of(installments, currentDate);
+    }
+
+    // Keeps the installments a payment on the day can reach, in the order it reaches them
+    private static PaymentSchedule of(List<Unpaid> unpaid, LocalDate currentDate) {
+        LocalDate lastDueDate = lastPayableDueDate(currentDate);
+        List<Unpaid> payable = new ArrayList<>(unpaid.size());
+        for (Unpaid installment : unpaid) {
+            if (!installment.dueDate().isBefore(currentDate) && !installment.dueDate().isAfter(lastDueDate)) {
+                payable.add(installment);
+            }
+        }
+        payable.sort(Comparator.comparing(Unpaid::dueDate).thenComparingLong(Unpaid::id));
+        return new PaymentSchedule(currentDate, payable);
+    }
+
+    // Applies one payment after the ones before it: as many whole installments as the amount covers
+    Payment pay(long amountMinorUnits) {
+        int first = next;
+        long remaining = amountMinorUnits;
+        long spent = 0;
+        long discount = 0;
+        long penalty = 0;
+        while (next < amounts.length && remaining >= amounts[next]) {
+            long adjustment = adjustment(next);
+            if (adjustment < 0) {
+                discount -= adjustment;
+            } else {
+                penalty += adjustment;
+            }
+            remaining -= amounts[next];
+            spent += amounts[next];
+            next++;
+        }
+        return new Payment(first, next - first, spent, discount, penalty);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    long id(int index) {
+        return ids[index];
+    }
+
+    long amount(int index) {
+        return amounts[index];
+    }
+
+    LocalDate dueDate(int index) {
+        return dueDates[index];
+    }
+
+    // Negative for the discount on an early payment, positive for the penalty on a late one
+    long adjustment(int index) {
+        long daysDifference = ChronoUnit.DAYS.between(currentDate, dueDates[index]);
+        if (daysDifference > 0) {
+            return -PaymentEngine.discount(amounts[index], daysDifference);
+        }
+        return daysDifference < 0 ? PaymentEngine.penalty(amounts[index], -daysDifference) : 0;
+    }
+
+    // The installments from `first` on that one payment settled, and what they came to
+    record Payment(int first, int installmentsPaid, long amountSpent, long discount, long penalty) {
+
+        Money totalAmountSpent() {
+            return Money.ofMinor(amountSpent);
+        }
+    }
+
+    private record Unpaid(long id, long amount, LocalDate dueDate) {
+    }
+}
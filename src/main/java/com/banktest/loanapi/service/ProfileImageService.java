@@ -0,0 +1,73 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.ProfileImageMetadata;
+import com.banktest.loanapi.model.UserProfileImage;
+import com.banktest.loanapi.repository.UserProfileImageRepository;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.jdbc.BlobProxy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.sql.SQLException;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class ProfileImageService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UserProfileImageRepository userProfileImageRepository;
+
+    // The request body is handed to the driver as a stream; it is never buffered into a byte[]
+    @Transactional
+    public void store(Integer userId, String contentType, InputStream content, long size) {
+        UserProfileImage image = userProfileImageRepository.findById(userId)
+                .orElseGet(UserProfileImage::new);
+        image.setUserId(userId);
+        image.setContentType(contentType);
+        image.setSize(size);
+        image.setData(BlobProxy.generateProxy(content, size));
+        userProfileImageRepository.save(image);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<ProfileImageMetadata> findMetadata(Integer userId) {
+        return userProfileImageRepository.findMetadataByUserId(userId);
+    }
+
+    // Copies [offset, offset + length) of the image a buffer at a time. Both channels wrap streams and copy through a
+    // byte[] of their own, so a direct buffer would buy nothing here.
+    @Transactional(readOnly = true)
+    public void copyTo(Integer userId, long offset, long length, OutputStream out) throws IOException {
+        UserProfileImage image = userProfileImageRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("Profile image not found"));
+
+        try (InputStream in = image.getData().getBinaryStream(offset + 1, length);
+             ReadableByteChannel source = Channels.newChannel(in)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to read profile image", e);
+        }
+    }
+
+    @Transactional
+    public void delete(Integer userId) {
+        userProfileImageRepository.deleteById(userId);
+    }
+}
@@ -0,0 +1,52 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.model.Money;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+// An installment plan without an amount: the due dates for a given first-due month and the share of
+// the total each installment carries. Immutable, so one instance is shared by every loan that uses it
+public final class ScheduleTemplate {
+
+    private final YearMonth firstDueMonth;
+    private final LocalDate[] dueDates;
+    private final long[] shareWeights;
+    private final long totalWeight;
+
+    ScheduleTemplate(YearMonth firstDueMonth, LocalDate[] dueDates, long[] shareWeights) {
+        this.firstDueMonth = firstDueMonth;
+        this.dueDates = dueDates.clone();
+        this.shareWeights = shareWeights.clone();
+        this.totalWeight = Arrays.stream(shareWeights).sum();
+    }
+
+    public int size() {
+        return dueDates.length;
+    }
+
+    public YearMonth firstDueMonth() {
+        return firstDueMonth;
+    }
+
+    public LocalDate dueDate(int index) {
+        return dueDates[index];
+    }
+
+    // Each installment gets its share of the total rounded down to the cent; the last one takes whatever
+    // is left, so the amounts always add up to the total exactly. Equal shares reuse one Money instance
+    public Money[] split(Money total) {
+        Money[] amounts = new Money[dueDates.length];
+        long allocated = 0;
+        Money previous = null;
+        for (int i = 0; i < amounts.length - 1; i++) {
+            long share = Math.multiplyExact(total.minorUnits(), shareWeights[i]) / totalWeight;
+            amounts[i] = previous != null && previous.minorUnits() == share ? previous : Money.ofMinor(share);
+            previous = amounts[i];
+            allocated += share;
+        }
+        amounts[amounts.length - 1] = Money.ofMinor(total.minorUnits() - allocated);
+        return amounts;
+    }
+}
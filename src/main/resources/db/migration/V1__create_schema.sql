@@ -0,0 +1,97 @@
+-- The schema as Hibernate generated it up to now; money columns hold minor units
+
+create sequence auth_users_seq start with 1 increment by 50;
+create sequence loan_seq start with 1 increment by 50;
+create sequence loan_installment_seq start with 1 increment by 50;
+
+create table auth_users (
+    id integer not null,
+    created_at timestamp(6),
+    updated_at timestamp(6),
+    email varchar(100) not null unique,
+    full_name varchar(255) not null,
+    password varchar(255) not null,
+    primary key (id)
+);
+
+create table user_roles (
+    user_id integer not null,
+    roles varchar(255)
+);
+
+create table user_profile_image (
+    user_id integer not null,
+    size bigint,
+    content_type varchar(255),
+    data blob,
+    primary key (user_id)
+);
+
+create table customer (
+    id bigint generated by default as identity,
+    name varchar(255),
+    surname varchar(255),
+    credit_limit bigint,
+    used_credit_limit bigint,
+    primary key (id)
+);
+
+create table loan (
+    id bigint not null,
+    customer_id bigint,
+    loan_amount bigint,
+    number_of_installments integer,
+    create_date date,
+    is_paid boolean,
+    paid_installment_count integer,
+    outstanding_amount bigint,
+    primary key (id)
+);
+
+create table loan_installment (
+    id bigint not null,
+    loan_id bigint,
+    amount bigint,
+    paid_amount bigint,
+    due_date date,
+    payment_date date,
+    is_paid boolean,
+    accrued_penalty bigint,
+    delinquency_bucket enum ('CURRENT', 'DAYS_1_30', 'DAYS_31_60', 'DAYS_61_90', 'DAYS_OVER_90'),
+    primary key (id)
+);
+
+create table customer_portfolio (
+    customer_id bigint not null,
+    outstanding_amount bigint,
+    open_loan_count integer,
+    next_due_date date,
+    overdue_amount bigint,
+    overdue_as_of date,
+    primary key (customer_id)
+);
+
+create table payment_journal_checkpoint (
+    id integer not null,
+    applied_sequence bigint,
+    primary key (id)
+);
+
+create table delinquency_checkpoint (
+    id integer not null,
+    run_date date,
+    last_installment_id bigint,
+    completed boolean,
+    primary key (id)
+);
+
+-- A customer's loans, paged by id
+create index idx_loan_customer_id_id on loan (customer_id, id);
+-- The loan list filters
+create index idx_loan_customer_paid_installments on loan (customer_id, is_paid, number_of_installments);
+-- A loan's schedule in id order
+create index idx_loan_installment_loan_id_id on loan_installment (loan_id, id);
+
+-- Added after the indexes so each constraint uses one of them instead of creating its own
+alter table user_roles add constraint fk_user_roles_user foreign key (user_id) references auth_users;
+alter table loan_installment add constraint fk_loan_installment_loan foreign key (loan_id) references loan;
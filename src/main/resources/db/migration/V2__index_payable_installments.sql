@@ -0,0 +1,2 @@
+-- The installments a payment can reach: a loan's unpaid ones in a due date window
+create index idx_loan_installment_payable on loan_installment (loan_id, is_paid, due_date);
@@ -0,0 +1,2 @@
+-- Optimistic version of each loan, bumped whenever a payment changes it; the ETag of the loan's responses
+alter table loan add column version bigint default 0 not null;
@@ -0,0 +1,115 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import com.banktest.loanapi.repository.UserRepository;
+import com.banktest.loanapi.service.AuthenticationService;
+import com.banktest.loanapi.service.LoanService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:actuator-test")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class ActuatorEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testPrometheus_ExposesLoanAndAuthenticationMetrics() throws Exception {
+        // A loan paid off in full
+        Customer customer = new Customer();
+        customer.setName("John");
+        customer.setSurname("Doe");
+        customer.setCreditLimit(Money.of(100_000));
+        customer.setUsedCreditLimit(Money.ZERO);
+        Long customerId = customerRepository.save(customer).getId();
+        LoanDTO loan = loanService.createLoan(customerId, Money.of(500), 0.2, 6);
+        loanService.payInstallments(loan.getId(), Money.of(600));
+
+        String token = registerAndObtainAccessToken("admin@example.com", "password", "Admin User");
+
+        // Perform the request
+        String body = mockMvc.perform(get("/actuator/prometheus")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Timers carry histogram buckets for percentiles; business outcomes are plain counters
+        assertTrue(body.contains("loan_operation_seconds_bucket{application=\"credit module\",operation=\"create\""), body);
+        assertTrue(body.contains("loan_operation_seconds_count{application=\"credit module\",operation=\"pay\"}"), body);
+        assertTrue(body.contains("auth_authenticate_seconds_bucket"), body);
+        assertTrue(body.contains("auth_jwt_seconds_count"), body);
+        assertTrue(body.contains("loan_installments_paid_total"), body);
+        assertTrue(body.contains("loan_closed_total"), body);
+        assertTrue(body.contains("loan_credit_rejections_total"), body);
+        assertTrue(body.contains("loan_payment_adjustment_currency_total{application=\"credit module\",type=\"discount\"}"), body);
+        // The user details cache
+        assertTrue(body.contains("cache_gets_total{application=\"credit module\",cache=\"userDetails\",result=\"hit\"}"), body);
+        assertTrue(body.contains("cache_evictions_total{application=\"credit module\",cache=\"userDetails\"}"), body);
+    }
+
+    @Test
+    void testPrometheus_RejectsNonAdminButHealthIsPublic() throws Exception {
+        registerAndObtainAccessToken("customer@example.com", "password", "Customer User");
+        authenticationService.updateRoles("customer@example.com", List.of("ROLE_CUSTOMER"));
+        String token = obtainAccessToken("customer@example.com", "password");
+
+        mockMvc.perform(get("/actuator/prometheus")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+
+    private String registerAndObtainAccessToken(String email, String password, String fullName) throws Exception {
+        mockMvc.perform(post("/auth/signup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\", \"password\":\"" + password + "\", \"fullName\":\"" + fullName + "\"}"))
+                .andExpect(status().isOk());
+        return obtainAccessToken(email, password);
+    }
+
+    private String obtainAccessToken(String email, String password) throws Exception {
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\", \"password\":\"" + password + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        return new ObjectMapper().readTree(result.getResponse().getContentAsString()).get("token").asText();
+    }
+}
@@ -1,30 +1,48 @@
 package com.banktest.loanapi.controller;
 
+import com.banktest.loanapi.dto.LoanBatchItemResultDTO;
+import com.banktest.loanapi.dto.LoanBatchResultDTO;
 import com.banktest.loanapi.dto.LoanDTO;
 import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.dto.LoanPageDTO;
+import com.banktest.loanapi.dto.LoanRequestDTO;
+import com.banktest.loanapi.dto.LoanSearchCriteria;
+import com.banktest.loanapi.dto.LoanVersion;
 import com.banktest.loanapi.dto.PaymentResultResponseDTO;
 import com.banktest.loanapi.model.Loan;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.model.User;
 import com.banktest.loanapi.repository.LoanRepository;
 import com.banktest.loanapi.repository.UserRepository;
+import com.banktest.loanapi.service.AuthenticationService;
+import com.banktest.loanapi.service.JwtService;
+import com.banktest.loanapi.service.LoanBatchService;
 import com.banktest.loanapi.service.LoanService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -44,12 +62,21 @@ class LoanControllerTest {
     @MockBean
     private LoanService loanService;
 
+    @MockBean
+    private LoanBatchService loanBatchService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
-    @Autowired
+    @SpyBean
     private  UserRepository userRepository;
 
+    @SpyBean
+    private JwtService jwtService;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
     @BeforeEach
     public void clearUser(){
         userRepository.deleteAll();
@@ -65,12 +92,12 @@ class LoanControllerTest {
         LoanDTO loanDTO = new LoanDTO();
         loanDTO.setId(1L);
         loanDTO.setCustomerId(1L);
-        loanDTO.setLoanAmount(1200.0);
+        loanDTO.setLoanAmount(Money.of(1200));
         loanDTO.setNumberOfInstallments(12);
         loanDTO.setCreateDate(LocalDate.now());
         loanDTO.setIsPaid(false);
 
-        when(loanService.createLoan(1L, 1000.0, 0.2, 12)).thenReturn(loanDTO);
+        when(loanService.createLoan(1L, Money.of(1000), 0.2, 12)).thenReturn(loanDTO);
 
         // Perform the request
         mockMvc.perform(post("/api/loans")
@@ -87,7 +114,54 @@ class LoanControllerTest {
                 .andExpect(jsonPath("$.numberOfInstallments").value(12));
 
         // Verify service call
-        verify(loanService, times(1)).createLoan(1L, 1000.0, 0.2, 12);
+        verify(loanService, times(1)).createLoan(1L, Money.of(1000), 0.2, 12);
+    }
+
+    @Test
+    void testCreateLoans_Batch() throws Exception {
+        // Register and authenticate user
+        String token = registerAndObtainAccessToken("testuser@example.com", "password", "Test User");
+
+        // Mock service response
+        LoanBatchResultDTO batchResult = new LoanBatchResultDTO(1, 1, List.of(
+                new LoanBatchItemResultDTO(0, 1L, 10L, true, null),
+                new LoanBatchItemResultDTO(1, 2L, null, false, "Customer does not have enough credit limit")));
+        when(loanBatchService.createLoans(any())).thenReturn(batchResult);
+
+        // Perform the request
+        mockMvc.perform(post("/api/loans/batch")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"customerId\":1,\"loanAmount\":1000.50,\"interestRate\":0.2,\"numberOfInstallments\":12}," +
+                                "{\"customerId\":2,\"loanAmount\":5000,\"interestRate\":0.3,\"numberOfInstallments\":6}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.results[0].loanId").value(10L))
+                .andExpect(jsonPath("$.results[1].error").value("Customer does not have enough credit limit"));
+
+        // Verify the requests reached the service intact
+        verify(loanBatchService, times(1)).createLoans(List.of(
+                new LoanRequestDTO(1L, Money.valueOf("1000.50"), 0.2, 12),
+                new LoanRequestDTO(2L, Money.of(5000), 0.3, 6)));
+    }
+
+    @Test
+    void testCreateLoans_BatchRejectsNonAdminForOtherCustomer() throws Exception {
+        // Register and authenticate a user without the admin role
+        registerAndObtainAccessToken("testuser@example.com", "password", "Test User");
+        User user = authenticationService.updateRoles("testuser@example.com", List.of("ROLE_CUSTOMER"));
+        String token = obtainAccessToken("testuser@example.com", "password");
+
+        // One of the loans is for another customer
+        mockMvc.perform(post("/api/loans/batch")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"customerId\":" + user.getId() + ",\"loanAmount\":1000,\"interestRate\":0.2,\"numberOfInstallments\":12}," +
+                                "{\"customerId\":" + (user.getId() + 1) + ",\"loanAmount\":1000,\"interestRate\":0.2,\"numberOfInstallments\":12}]"))
+                .andExpect(status().isForbidden());
+
+        verify(loanBatchService, never()).createLoans(any());
     }
 
     @Test
@@ -96,7 +170,7 @@ class LoanControllerTest {
         LoanDTO loanDTO = new LoanDTO();
         loanDTO.setId(1L);
         loanDTO.setCustomerId(1L);
-        loanDTO.setLoanAmount(1200.0);
+        loanDTO.setLoanAmount(Money.of(1200));
         loanDTO.setNumberOfInstallments(12);
         loanDTO.setIsPaid(false);
 
@@ -104,7 +178,8 @@ class LoanControllerTest {
         String token = registerAndObtainAccessToken("testuser@example.com", "password", "Test User");
 
         // Mock service response
-        when(loanService.listLoans(1L, 12, false)).thenReturn(Arrays.asList(loanDTO));
+        when(loanService.listLoans(eq(1L), any(LoanSearchCriteria.class), isNull(), eq(20), eq(false)))
+                .thenReturn(new LoanPageDTO(Arrays.asList(loanDTO), "next"));
 
         // Perform the request
         mockMvc.perform(get("/api/loans")
@@ -114,14 +189,18 @@ class LoanControllerTest {
                         .param("isPaid", "false")
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].id").value(1L))
-                .andExpect(jsonPath("$[0].customerId").value(1L))
-                .andExpect(jsonPath("$[0].loanAmount").value(1200.0))
-                .andExpect(jsonPath("$[0].numberOfInstallments").value(12))
-                .andExpect(jsonPath("$[0].isPaid").value(false));
-
-        // Verify service call
-        verify(loanService, times(1)).listLoans(1L, 12, false);
+                .andExpect(jsonPath("$.content[0].id").value(1L))
+                .andExpect(jsonPath("$.content[0].customerId").value(1L))
+                .andExpect(jsonPath("$.content[0].loanAmount").value(1200.0))
+                .andExpect(jsonPath("$.content[0].numberOfInstallments").value(12))
+                .andExpect(jsonPath("$.content[0].isPaid").value(false))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+
+        // Verify the filters reached the service
+        ArgumentCaptor<LoanSearchCriteria> criteria = ArgumentCaptor.forClass(LoanSearchCriteria.class);
+        verify(loanService, times(1)).listLoans(eq(1L), criteria.capture(), isNull(), eq(20), eq(false));
+        assertEquals(12, criteria.getValue().getNumberOfInstallments());
+        assertEquals(false, criteria.getValue().getIsPaid());
     }
 
     private String registerAndObtainAccessToken(String email, String password, String fullName) throws Exception {
@@ -132,6 +211,10 @@ class LoanControllerTest {
                 .andExpect(status().isOk());
 
         // Now login and get the token
+        return obtainAccessToken(email, password);
+    }
+
+    private String obtainAccessToken(String email, String password) throws Exception {
         MvcResult result = mockMvc.perform(post("/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"email\":\"" + email + "\", \"password\":\"" + password + "\"}"))
@@ -148,8 +231,8 @@ class LoanControllerTest {
         LoanInstallmentDTO installmentDTO1 = new LoanInstallmentDTO();
         installmentDTO1.setId(1L);
         installmentDTO1.setLoanId(1L);
-        installmentDTO1.setAmount(100.0);
-        installmentDTO1.setPaidAmount(0.0);
+        installmentDTO1.setAmount(Money.of(100));
+        installmentDTO1.setPaidAmount(Money.ZERO);
         installmentDTO1.setDueDate(LocalDate.now().plusMonths(1));
         installmentDTO1.setPaymentDate(null);
         installmentDTO1.setIsPaid(false);
@@ -157,8 +240,8 @@ class LoanControllerTest {
         LoanInstallmentDTO installmentDTO2 = new LoanInstallmentDTO();
         installmentDTO2.setId(2L);
         installmentDTO2.setLoanId(1L);
-        installmentDTO2.setAmount(100.0);
-        installmentDTO2.setPaidAmount(0.0);
+        installmentDTO2.setAmount(Money.of(100));
+        installmentDTO2.setPaidAmount(Money.ZERO);
         installmentDTO2.setDueDate(LocalDate.now().plusMonths(2));
         installmentDTO2.setPaymentDate(null);
         installmentDTO2.setIsPaid(false);
@@ -167,7 +250,7 @@ class LoanControllerTest {
         loan = new Loan();
         loan.setId(1L);
         loan.setCustomerId(1L);
-        loan.setLoanAmount(1200.0);
+        loan.setLoanAmount(Money.of(1200));
         loan.setNumberOfInstallments(12);
         loan.setCreateDate(LocalDate.now());
         loan.setIsPaid(false);
@@ -177,7 +260,7 @@ class LoanControllerTest {
 
 
         // Mock service response
-        when(loanService.getLoanById(1L)).thenReturn(loan);
+        when(loanService.getLoanVersion(1L)).thenReturn(new LoanVersion(loan.getCustomerId(), 3L));
         when(loanService.listInstallments(1L)).thenReturn(Arrays.asList(installmentDTO1, installmentDTO2));
 
         // Perform the request
@@ -185,6 +268,7 @@ class LoanControllerTest {
                         .header("Authorization", "Bearer " + token)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1.3\""))
                 .andExpect(jsonPath("$[0].id").value(1L))
                 .andExpect(jsonPath("$[0].loanId").value(1L))
                 .andExpect(jsonPath("$[0].amount").value(100.0))
@@ -196,22 +280,45 @@ class LoanControllerTest {
         verify(loanService, times(1)).listInstallments(1L);
     }
 
+    @Test
+    void testListInstallments_NotModifiedWithoutReadingTheSchedule() throws Exception {
+        String token = registerAndObtainAccessToken("testuser@example.com", "password", "Test User");
+        when(loanService.getLoanVersion(1L)).thenReturn(new LoanVersion(1L, 3L));
+
+        mockMvc.perform(get("/api/loans/1/installments")
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", "\"1.3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"1.3\""))
+                .andExpect(content().string(""));
+
+        // An older version gets the full schedule again
+        when(loanService.listInstallments(1L)).thenReturn(List.of());
+        mockMvc.perform(get("/api/loans/1/installments")
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", "\"1.2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1.3\""));
+
+        verify(loanService, times(1)).listInstallments(1L);
+    }
+
     @Test
     void testPayInstallments_Success() throws Exception {
         Loan loan;
         loan = new Loan();
         loan.setId(1L);
         loan.setCustomerId(1L);
-        loan.setLoanAmount(1200.0);
+        loan.setLoanAmount(Money.of(1200));
         loan.setNumberOfInstallments(12);
         loan.setCreateDate(LocalDate.now());
         loan.setIsPaid(false);
         // Register and authenticate user
         String token = registerAndObtainAccessToken("testuser@example.com", "password", "Test User");
         // Mock service response
-        PaymentResultResponseDTO paymentResult = new PaymentResultResponseDTO(1, 100.0, false);
-        when(loanService.getLoanById(1L)).thenReturn(loan);
-        when(loanService.payInstallments(1L, 150.0)).thenReturn(paymentResult);
+        PaymentResultResponseDTO paymentResult = new PaymentResultResponseDTO(1, Money.of(100), false);
+        when(loanService.getLoanCustomerId(1L)).thenReturn(loan.getCustomerId());
+        when(loanService.payInstallments(1L, Money.of(150))).thenReturn(paymentResult);
 
         // Perform the request
         mockMvc.perform(post("/api/loans/1/pay")
@@ -223,7 +330,77 @@ class LoanControllerTest {
                 .andExpect(jsonPath("$.totalAmountSpent").value(100.0))
                 .andExpect(jsonPath("$.loanPaid").value(false));
         // Verify service call
-        verify(loanService, times(1)).payInstallments(1L, 150.0);
+        verify(loanService, times(1)).payInstallments(1L, Money.of(150));
+    }
+
+    @Test
+    void testPayInstallments_RetryWithIdempotencyKeyIsNotPaidAgain() throws Exception {
+        Loan loan = new Loan();
+        loan.setId(1L);
+        loan.setCustomerId(1L);
+        // Register and authenticate user
+        String token = registerAndObtainAccessToken("testuser@example.com", "password", "Test User");
+        // Mock service response
+        when(loanService.getLoanCustomerId(1L)).thenReturn(loan.getCustomerId());
+        when(loanService.payInstallments(1L, Money.of(150))).thenReturn(new PaymentResultResponseDTO(1, Money.of(100), false));
+
+        // The same request twice, as a client retrying after a timeout
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/loans/1/pay")
+                            .header("Authorization", "Bearer " + token)
+                            .header(LoanController.IDEMPOTENCY_KEY_HEADER, "payment-retry-key")
+                            .param("paymentAmount", "150.0"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.installmentsPaid").value(1))
+                    .andExpect(jsonPath("$.totalAmountSpent").value(100.0));
+        }
+
+        // Paid once; the retry never read the loan
+        verify(loanService, times(1)).getLoanCustomerId(1L);
+        verify(loanService, times(1)).payInstallments(1L, Money.of(150));
+
+        // The same key for another amount is refused
+        mockMvc.perform(post("/api/loans/1/pay")
+                        .header("Authorization", "Bearer " + token)
+                        .header(LoanController.IDEMPOTENCY_KEY_HEADER, "payment-retry-key")
+                        .param("paymentAmount", "300.0"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void testLoanRequest_ParsesTokenOnceWithoutUserLookup() throws Exception {
+        // Register and authenticate user
+        String token = registerAndObtainAccessToken("testuser@example.com", "password", "Test User");
+        clearInvocations(userRepository, jwtService);
+
+        // Mock service response
+        when(loanService.listLoans(eq(1L), any(), isNull(), anyInt(), anyBoolean())).thenReturn(new LoanPageDTO(List.of(), null));
+
+        // Perform the request
+        mockMvc.perform(get("/api/loans")
+                        .header("Authorization", "Bearer " + token)
+                        .param("customerId", "1"))
+                .andExpect(status().isOk());
+
+        // The principal comes from the token claims: one verification, no user table access
+        verify(jwtService, times(1)).parseAuthenticatedUser(token);
+        verify(jwtService, never()).extractUsername(any());
+        verifyNoInteractions(userRepository);
     }
 
-}
\ No newline at end of file
+    @Test
+    void testLoanRequest_RejectsNonAdminForOtherCustomer() throws Exception {
+        // Register and authenticate a user without the admin role
+        String token = registerAndObtainAccessToken("testuser@example.com", "password", "Test User");
+        User user = authenticationService.updateRoles("testuser@example.com", List.of("ROLE_CUSTOMER"));
+        token = obtainAccessToken("testuser@example.com", "password");
+
+        // Perform the request for another customer
+        mockMvc.perform(get("/api/loans")
+                        .header("Authorization", "Bearer " + token)
+                        .param("customerId", String.valueOf(user.getId() + 1)))
+                .andExpect(status().isForbidden());
+
+        verify(loanService, never()).listLoans(any(), any(), any(), anyInt(), anyBoolean());
+    }
+}
@@ -0,0 +1,125 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import com.banktest.loanapi.repository.UserRepository;
+import com.banktest.loanapi.service.AuthenticationService;
+import com.banktest.loanapi.service.LoanService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:loan-export-test")
+@AutoConfigureMockMvc
+class LoanExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testExportLoans_StreamsOneLinePerLoanWithInstallments() throws Exception {
+        // Three loans for one customer, one of them partially paid
+        Customer customer = new Customer();
+        customer.setName("John");
+        customer.setSurname("Doe");
+        customer.setCreditLimit(Money.of(100_000));
+        customer.setUsedCreditLimit(Money.ZERO);
+        Long customerId = customerRepository.save(customer).getId();
+        LoanDTO first = loanService.createLoan(customerId, Money.of(1000), 0.2, 6);
+        LoanDTO second = loanService.createLoan(customerId, Money.of(2000), 0.2, 12);
+        LoanDTO third = loanService.createLoan(customerId, Money.of(3000), 0.2, 24);
+        loanService.payInstallments(second.getId(), Money.of(200));
+
+        String token = registerAndObtainAccessToken("admin@example.com", "password", "Admin User");
+
+        // Perform the request
+        MvcResult result = mockMvc.perform(get("/api/admin/exports/loans")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        // One loan per line, in id order, each with its full schedule
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> lines = body.lines().toList();
+        assertTrue(body.endsWith("\n"));
+        assertEquals(3, lines.size());
+        JsonNode firstLine = objectMapper.readTree(lines.get(0));
+        JsonNode secondLine = objectMapper.readTree(lines.get(1));
+        JsonNode thirdLine = objectMapper.readTree(lines.get(2));
+        assertEquals(first.getId(), firstLine.get("id").asLong());
+        assertEquals(6, firstLine.get("installments").size());
+        assertEquals(second.getId(), secondLine.get("id").asLong());
+        assertEquals(12, secondLine.get("installments").size());
+        assertTrue(secondLine.get("installments").get(0).get("isPaid").asBoolean());
+        assertFalse(secondLine.get("installments").get(11).get("isPaid").asBoolean());
+        assertEquals(third.getId(), thirdLine.get("id").asLong());
+        assertEquals(24, thirdLine.get("installments").size());
+        for (JsonNode installment : thirdLine.get("installments")) {
+            assertEquals(third.getId(), installment.get("loanId").asLong());
+        }
+    }
+
+    @Test
+    void testExportLoans_RejectsNonAdmin() throws Exception {
+        registerAndObtainAccessToken("customer@example.com", "password", "Customer User");
+        authenticationService.updateRoles("customer@example.com", List.of("ROLE_CUSTOMER"));
+        String token = obtainAccessToken("customer@example.com", "password");
+
+        mockMvc.perform(get("/api/admin/exports/loans")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
+    private String registerAndObtainAccessToken(String email, String password, String fullName) throws Exception {
+        mockMvc.perform(post("/auth/signup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\", \"password\":\"" + password + "\", \"fullName\":\"" + fullName + "\"}"))
+                .andExpect(status().isOk());
+        return obtainAccessToken(email, password);
+    }
+
+    private String obtainAccessToken(String email, String password) throws Exception {
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\", \"password\":\"" + password + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        return new ObjectMapper().readTree(result.getResponse().getContentAsString()).get("token").asText();
+    }
+}
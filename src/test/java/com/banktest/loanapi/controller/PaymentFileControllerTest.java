@@ -0,0 +1,120 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import com.banktest.loanapi.repository.UserRepository;
+import com.banktest.loanapi.service.AuthenticationService;
+import com.banktest.loanapi.service.LoanService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:payment-file-test")
+@AutoConfigureMockMvc
+class PaymentFileControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testIngest_ReturnsOneResultLinePerRow() throws Exception {
+        // One loan of 1200 over 12 installments of 100
+        Customer customer = new Customer();
+        customer.setName("John");
+        customer.setSurname("Doe");
+        customer.setCreditLimit(Money.of(100_000));
+        customer.setUsedCreditLimit(Money.ZERO);
+        Long customerId = customerRepository.save(customer).getId();
+        LoanDTO loan = loanService.createLoan(customerId, Money.of(1000), 0.2, 12);
+
+        String token = registerAndObtainAccessToken("admin@example.com", "password", "Admin User");
+
+        // Perform the request
+        String file = "loanId,amount\n" +
+                loan.getId() + ",150.00\r\n" +
+                "\n" +
+                loan.getId() + ",abc\n" +
+                "999999999,100\n" +
+                loan.getId() + ",200";
+        String body = mockMvc.perform(post("/api/admin/payment-files")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(PaymentFileController.TEXT_CSV_VALUE)
+                        .content(file))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Payment-Rows", "4"))
+                .andExpect(header().string("X-Payment-Succeeded", "2"))
+                .andExpect(header().string("X-Payment-Failed", "2"))
+                .andReturn().getResponse().getContentAsString();
+
+        // Results in file order, with the file's line numbers
+        List<String> lines = body.lines().toList();
+        assertEquals(5, lines.size());
+        assertEquals("line,loanId,amount,status,installmentsPaid,amountSpent,loanPaid,error", lines.get(0));
+        assertEquals("2," + loan.getId() + ",150.00,SUCCEEDED,1,100.00,false,", lines.get(1));
+        assertEquals("4," + loan.getId() + ",,FAILED,0,0.00,false,\"Invalid amount\"", lines.get(2));
+        assertEquals("5,999999999,100.00,FAILED,0,0.00,false,\"Loan not found\"", lines.get(3));
+        assertEquals("6," + loan.getId() + ",200.00,SUCCEEDED,2,200.00,false,", lines.get(4));
+        assertEquals(Money.of(900), loanService.getLoanById(loan.getId()).getOutstandingAmount());
+    }
+
+    @Test
+    void testIngest_RejectsNonAdmin() throws Exception {
+        registerAndObtainAccessToken("customer@example.com", "password", "Customer User");
+        authenticationService.updateRoles("customer@example.com", List.of("ROLE_CUSTOMER"));
+        String token = obtainAccessToken("customer@example.com", "password");
+
+        mockMvc.perform(post("/api/admin/payment-files")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(PaymentFileController.TEXT_CSV_VALUE)
+                        .content("1,100\n"))
+                .andExpect(status().isForbidden());
+    }
+
+    private String registerAndObtainAccessToken(String email, String password, String fullName) throws Exception {
+        mockMvc.perform(post("/auth/signup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\", \"password\":\"" + password + "\", \"fullName\":\"" + fullName + "\"}"))
+                .andExpect(status().isOk());
+        return obtainAccessToken(email, password);
+    }
+
+    private String obtainAccessToken(String email, String password) throws Exception {
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\", \"password\":\"" + password + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        return new ObjectMapper().readTree(result.getResponse().getContentAsString()).get("token").asText();
+    }
+}
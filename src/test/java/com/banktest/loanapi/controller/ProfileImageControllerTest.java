@@ -0,0 +1,139 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.repository.UserRepository;
+import com.banktest.loanapi.security.CachingUserDetailsService;
+import com.banktest.loanapi.support.SqlStatementCapture;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        SqlStatementCapture.PROPERTY,
+        "spring.datasource.url=jdbc:h2:mem:profile-image-test"
+})
+@AutoConfigureMockMvc
+class ProfileImageControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CachingUserDetailsService userDetailsService;
+
+    private byte[] image;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        image = new byte[200_000];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = (byte) (i % 251);
+        }
+    }
+
+    @Test
+    void testUploadAndDownload_FullAndRange() throws Exception {
+        String token = registerAndObtainAccessToken("image@example.com", "password", "Image User");
+
+        // Upload the image
+        mockMvc.perform(put("/api/users/me/profile-image")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.IMAGE_PNG)
+                        .content(image))
+                .andExpect(status().isNoContent());
+
+        // Download it whole
+        byte[] downloaded = mockMvc.perform(get("/api/users/me/profile-image")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(image, downloaded);
+
+        // Download a byte range
+        byte[] range = mockMvc.perform(get("/api/users/me/profile-image")
+                        .header("Authorization", "Bearer " + token)
+                        .header(HttpHeaders.RANGE, "bytes=1000-1999"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1000-1999/" + image.length))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(Arrays.copyOfRange(image, 1000, 2000), range);
+    }
+
+    @Test
+    void testUpload_RejectsContentThatIsNotAnImage() throws Exception {
+        String token = registerAndObtainAccessToken("image@example.com", "password", "Image User");
+
+        for (String contentType : List.of("text/html", "image/svg+xml", "image/*", "not a type")) {
+            mockMvc.perform(put("/api/users/me/profile-image")
+                            .header("Authorization", "Bearer " + token)
+                            .header(HttpHeaders.CONTENT_TYPE, contentType)
+                            .content(image))
+                    .andExpect(status().isUnsupportedMediaType());
+        }
+        mockMvc.perform(put("/api/users/me/profile-image")
+                        .header("Authorization", "Bearer " + token)
+                        .content(image))
+                .andExpect(status().isUnsupportedMediaType());
+
+        // Nothing was stored
+        mockMvc.perform(get("/api/users/me/profile-image")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testAuthenticationQueries_DoNotSelectImage() throws Exception {
+        String token = registerAndObtainAccessToken("image@example.com", "password", "Image User");
+        mockMvc.perform(put("/api/users/me/profile-image")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.IMAGE_PNG)
+                        .content(image))
+                .andExpect(status().isNoContent());
+
+        // Log in again, past the user details cache, and look at every statement the authentication issued
+        userDetailsService.evictAll();
+        SqlStatementCapture.reset();
+        obtainAccessToken("image@example.com", "password");
+        List<String> statements = SqlStatementCapture.statements();
+
+        assertTrue(statements.stream().anyMatch(sql -> sql.contains("auth_users")), () -> "Statements: " + statements);
+        assertTrue(statements.stream().noneMatch(sql -> sql.contains("profile_image") || sql.contains("data")),
+                () -> "Statements: " + statements);
+    }
+
+    private String registerAndObtainAccessToken(String email, String password, String fullName) throws Exception {
+        mockMvc.perform(post("/auth/signup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\", \"password\":\"" + password + "\", \"fullName\":\"" + fullName + "\"}"))
+                .andExpect(status().isOk());
+        return obtainAccessToken(email, password);
+    }
+
+    private String obtainAccessToken(String email, String password) throws Exception {
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\", \"password\":\"" + password + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        return new ObjectMapper().readTree(result.getResponse().getContentAsString()).get("token").asText();
+    }
+}
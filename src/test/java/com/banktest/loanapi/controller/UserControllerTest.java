@@ -0,0 +1,102 @@
+package com.banktest.loanapi.controller;
+
+import com.banktest.loanapi.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:user-controller-test")
+@AutoConfigureMockMvc
+class UserControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testChangePassword_OldPasswordStopsWorkingDespiteTheCache() throws Exception {
+        // Logging in leaves the user in the user details cache
+        String token = registerAndObtainAccessToken("user@example.com", "password", "Some User");
+
+        // A wrong current password changes nothing
+        mockMvc.perform(put("/api/users/me/password")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"currentPassword\":\"wrong\", \"newPassword\":\"new-password\"}"))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(put("/api/users/me/password")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"currentPassword\":\"password\", \"newPassword\":\"new-password\"}"))
+                .andExpect(status().isNoContent());
+
+        login("user@example.com", "password").andExpect(status().isUnauthorized());
+        login("user@example.com", "new-password").andExpect(status().isOk());
+    }
+
+    @Test
+    void testUpdateRoles_NextLoginGetsTheNewRoles() throws Exception {
+        String adminToken = registerAndObtainAccessToken("admin@example.com", "password", "Admin User");
+        registerAndObtainAccessToken("customer@example.com", "password", "Customer User");
+
+        mockMvc.perform(put("/api/admin/users/customer@example.com/roles")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"ROLE_CUSTOMER\"]"))
+                .andExpect(status().isOk());
+
+        // Past the cached details the signup left behind
+        JsonNode login = new ObjectMapper().readTree(login("customer@example.com", "password")
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertEquals("[\"ROLE_CUSTOMER\"]", login.get("roles").toString());
+
+        // Only admins change roles, and only to known ones
+        mockMvc.perform(put("/api/admin/users/admin@example.com/roles")
+                        .header("Authorization", "Bearer " + login.get("token").asText())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"ROLE_ADMIN\"]"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(put("/api/admin/users/customer@example.com/roles")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"ROLE_ROOT\"]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private String registerAndObtainAccessToken(String email, String password, String fullName) throws Exception {
+        mockMvc.perform(post("/auth/signup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\", \"password\":\"" + password + "\", \"fullName\":\"" + fullName + "\"}"))
+                .andExpect(status().isOk());
+        String body = login(email, password)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return new ObjectMapper().readTree(body).get("token").asText();
+    }
+
+    private ResultActions login(String email, String password) throws Exception {
+        return mockMvc.perform(post("/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"" + email + "\", \"password\":\"" + password + "\"}"));
+    }
+}
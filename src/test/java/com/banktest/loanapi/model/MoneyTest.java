@@ -0,0 +1,53 @@
+package com.banktest.loanapi.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void testParsing_RoundsHalfUpToTheCent() {
+        assertEquals(100_050, Money.valueOf("1000.50").minorUnits());
+        assertEquals(1, Money.valueOf("0.005").minorUnits());
+        assertEquals(0, Money.valueOf("0.004").minorUnits());
+        assertEquals(Money.of(1200), Money.of(new BigDecimal("1200.00")));
+        assertSame(Money.ZERO, Money.valueOf("0"));
+    }
+
+    @Test
+    void testArithmetic_IsExactInMinorUnits() {
+        // Ten times 0.10 is exactly 1.00, unlike binary floating point
+        Money total = Money.ZERO;
+        for (int i = 0; i < 10; i++) {
+            total = total.plus(Money.valueOf("0.10"));
+        }
+        assertEquals(Money.of(1), total);
+
+        assertEquals(Money.of(1200), Money.of(1000).times(1 + 0.2));
+        assertEquals(Money.valueOf("0.30"), Money.valueOf("0.10").times(3));
+        assertEquals(Money.valueOf("-0.50"), Money.valueOf("1.00").minus(Money.valueOf("1.50")));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)));
+    }
+
+    @Test
+    void testFraction_RoundsHalfAwayFromZero() {
+        // 0.1% of 100.00 per day for 5 days is 0.50
+        assertEquals(50, Money.fraction(10_000, 5, 1000));
+        // 0.1% of 1.25 is 0.00125, below half a cent
+        assertEquals(0, Money.fraction(125, 1, 1000));
+        // 0.1% of 5.00 is exactly half a cent
+        assertEquals(1, Money.fraction(500, 1, 1000));
+        assertEquals(-1, Money.fraction(-500, 1, 1000));
+    }
+
+    @Test
+    void testJson_IsADecimalNumber() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals("1000.50", objectMapper.writeValueAsString(Money.valueOf("1000.5")));
+        assertEquals(Money.valueOf("99.99"), objectMapper.readValue("99.99", Money.class));
+    }
+}
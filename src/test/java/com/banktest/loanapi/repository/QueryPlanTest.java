@@ -0,0 +1,194 @@
+package com.banktest.loanapi.repository;
+
+import com.banktest.loanapi.dto.LoanSearchCriteria;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.support.SqlStatementCapture;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Every repository query is run against a seeded book and each statement Hibernate sends is EXPLAINed;
+// a plan that reads a whole table instead of an index fails the test
+@SpringBootTest(properties = {
+        SqlStatementCapture.PROPERTY,
+        "spring.datasource.url=jdbc:h2:mem:query-plan-it"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final int LOANS = 2_000;
+
+    private static final int INSTALLMENTS_PER_LOAN = 12;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LoanInstallmentRepository loanInstallmentRepository;
+
+    @Autowired
+    private CustomerPortfolioRepository customerPortfolioRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserProfileImageRepository userProfileImageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private long loanId;
+
+    private long customerId;
+
+    @BeforeAll
+    void seed() {
+        // Enough rows that the optimizer's choice means something, with fresh statistics
+        jdbcTemplate.update("insert into customer (name, surname, credit_limit, used_credit_limit) "
+                + "select 'Plan', 'Customer', 100000000, 0 from system_range(1, ?)", LOANS / 10);
+        jdbcTemplate.update("insert into loan (id, customer_id, loan_amount, number_of_installments, create_date, is_paid, "
+                + "paid_installment_count, outstanding_amount) "
+                + "select next value for loan_seq, mod(x - 1, ?) + 1, 120000, ?, current_date, false, 0, 120000 "
+                + "from system_range(1, ?)", LOANS / 10, INSTALLMENTS_PER_LOAN, LOANS);
+        jdbcTemplate.update("insert into loan_installment (id, loan_id, amount, paid_amount, due_date, payment_date, is_paid) "
+                + "select next value for loan_installment_seq, l.id, 10000, 0, dateadd(month, r.x, current_date), null, false "
+                + "from loan l cross join system_range(0, ?) r", INSTALLMENTS_PER_LOAN - 1);
+        jdbcTemplate.execute("analyze");
+        loanId = jdbcTemplate.queryForObject("select min(id) from loan", Long.class);
+        customerId = 1;
+    }
+
+    @Test
+    void testRepositoryQueries_UseIndexes() {
+        LocalDate today = LocalDate.now();
+        LoanSearchCriteria filtered = new LoanSearchCriteria();
+        filtered.setIsPaid(false);
+        filtered.setNumberOfInstallments(INSTALLMENTS_PER_LOAN);
+        filtered.setMinAmount(Money.of(100));
+
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("customer by id", () -> customerRepository.findById(customerId));
+        queries.put("reserve credit limit", () -> customerRepository.reserveCreditLimit(customerId, 100));
+        queries.put("release credit limit", () -> customerRepository.releaseCreditLimit(customerId, 100));
+        queries.put("customer id chunk", () -> customerRepository.findIdsAfter(customerId, Limit.of(100)));
+        queries.put("customer chunk lock", () -> customerRepository.lockIdsBetween(customerId, customerId + 100));
+        queries.put("loan for update", () -> loanRepository.findByIdForUpdate(loanId));
+        queries.put("loans for update", () -> loanRepository.findAllByIdForUpdate(List.of(loanId, loanId + 1)));
+        queries.put("loan id chunk", () -> loanRepository.findIdsAfter(loanId, Limit.of(100)));
+        queries.put("loan range", () -> loanRepository.findDTOsByIdBetween(loanId, loanId + 100));
+        queries.put("loan version", () -> loanRepository.findVersionById(loanId));
+        queries.put("loan page", () -> loanRepository.findLoanDTOs(
+                LoanSpecifications.forCustomer(customerId, new LoanSearchCriteria(), null), 21));
+        queries.put("filtered loan page", () -> loanRepository.findLoanDTOs(
+                LoanSpecifications.forCustomer(customerId, filtered, loanId), 21));
+        queries.put("loan schedule", () -> loanInstallmentRepository.findByLoanId(loanId));
+        queries.put("payable installments", () -> loanInstallmentRepository
+                .findByLoanIdAndIsPaidFalseAndDueDateBetween(loanId, today, today.plusMonths(3)));
+        queries.put("unpaid installments", () -> loanInstallmentRepository.findByLoanIdAndIsPaidFalse(loanId));
+        queries.put("page installments", () -> loanInstallmentRepository.findDTOsByLoanIdIn(List.of(loanId, loanId + 1)));
+        queries.put("installment range", () -> loanInstallmentRepository.findDTOsByLoanIdBetween(loanId, loanId + 100));
+        queries.put("mark paid", () -> loanInstallmentRepository.markPaid(List.of(loanId, loanId + 1), today));
+        queries.put("paid totals", () -> loanInstallmentRepository.findPaidTotalsByLoanIdIn(List.of(loanId, loanId + 1)));
+        queries.put("overdue chunk", () -> loanInstallmentRepository.findOverdueAfter(0L, today.plusYears(1), Limit.of(100)));
+        queries.put("portfolio add loans", () -> customerPortfolioRepository.addLoans(customerId, 100, 1, today));
+        queries.put("portfolio payments", () -> customerPortfolioRepository.applyPayments(customerId, 100, 0, today));
+        queries.put("portfolio rebuild", () -> customerPortfolioRepository.rebuild(customerId, customerId + 10, today));
+        queries.put("portfolio due dates", () -> customerPortfolioRepository.refreshDueDates(customerId, customerId + 10, today));
+        queries.put("user by email", () -> userRepository.findByEmail("plan@example.com"));
+        queries.put("profile image metadata", () -> userProfileImageRepository.findMetadataByUserId(1));
+        queries.put("loan export", () -> {
+            try (Stream<?> loans = loanRepository.streamAllOrderById()) {
+                loans.limit(1).forEach(loan -> { });
+            }
+        });
+        queries.put("installment export", () -> {
+            try (Stream<?> installments = loanInstallmentRepository.streamAllOrderByLoanId()) {
+                installments.limit(1).forEach(installment -> { });
+            }
+        });
+
+        // Each query runs in a transaction that is rolled back, so the book stays as seeded
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<String> tableScans = new ArrayList<>();
+        queries.forEach((name, query) -> {
+            SqlStatementCapture.reset();
+            transaction.executeWithoutResult(status -> {
+                query.run();
+                status.setRollbackOnly();
+            });
+            List<String> statements = SqlStatementCapture.statements();
+            assertFalse(statements.isEmpty(), () -> name + " sent no statement");
+            for (String sql : statements) {
+                String plan = explain(sql);
+                if (plan.contains(".tablescan")) {
+                    tableScans.add(name + ": " + plan);
+                }
+            }
+        });
+        assertEquals(List.of(), tableScans);
+    }
+
+    @Test
+    void testPayableInstallments_SeekOnLoanPaidAndDueDate() {
+        String plan = explain("select * from loan_installment where loan_id = ? and is_paid = false and due_date between ? and ?");
+        assertTrue(plan.contains("idx_loan_installment_payable"), plan);
+    }
+
+    @Test
+    void testExplain_ReportsATableScan() {
+        // The check above is only as good as its ability to see a scan
+        assertTrue(explain("select * from loan_installment where amount = ?").contains(".tablescan"));
+    }
+
+    // H2 plans a statement without its parameter values, so each one is bound to null
+    private String explain(String sql) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+            int parameters = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                statement.setNull(i, Types.NULL);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    plan.append(rows.getString(1)).append('\n');
+                }
+            }
+            return plan.toString().toLowerCase();
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not explain " + sql, e);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.banktest.loanapi.security;
+
+import com.banktest.loanapi.model.User;
+import com.banktest.loanapi.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingUserDetailsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private CachingUserDetailsService userDetailsService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userDetailsService = new CachingUserDetailsService(userRepository, 2, Duration.ofMinutes(10), meterRegistry);
+        user = User.builder()
+                .id(1)
+                .email("john@example.com")
+                .fullName("John Doe")
+                .password("secret")
+                .roles(List.of("ROLE_ADMIN"))
+                .build();
+    }
+
+    @Test
+    void testLoadUser_CachedAfterFirstLoad() {
+        when(userRepository.findByEmail("john@example.com")).thenReturn(Optional.of(user));
+
+        assertSame(user, userDetailsService.loadUserByUsername("john@example.com"));
+        assertSame(user, userDetailsService.loadUserByUsername("john@example.com"));
+
+        // One database lookup, one miss and one hit
+        verify(userRepository, times(1)).findByEmail("john@example.com");
+        assertEquals(1, gets("miss"));
+        assertEquals(1, gets("hit"));
+    }
+
+    @Test
+    void testEvict_ReloadsFromRepository() {
+        when(userRepository.findByEmail("john@example.com")).thenReturn(Optional.of(user));
+
+        userDetailsService.loadUserByUsername("john@example.com");
+        userDetailsService.evict("john@example.com");
+        userDetailsService.loadUserByUsername("john@example.com");
+
+        verify(userRepository, times(2)).findByEmail("john@example.com");
+    }
+
+    @Test
+    void testUnknownUser_NotCached() {
+        when(userRepository.findByEmail("nobody@example.com")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("nobody@example.com"));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("nobody@example.com"));
+
+        // A user signing up afterwards must not be hidden by a cached miss
+        verify(userRepository, times(2)).findByEmail("nobody@example.com");
+    }
+
+    @Test
+    void testConcurrentLoads_OneLookupOutsideTheMapLock() throws Exception {
+        // A slow lookup, as when every pooled connection is busy
+        when(userRepository.findByEmail("john@example.com")).thenAnswer(invocation -> {
+            Thread.sleep(100);
+            return Optional.of(user);
+        });
+
+        // Many virtual threads miss at once
+        List<Future<UserDetails>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 100; i++) {
+                futures.add(executor.submit(() -> userDetailsService.loadUserByUsername("john@example.com")));
+            }
+        }
+        for (Future<UserDetails> future : futures) {
+            assertSame(user, future.get());
+        }
+
+        // They all waited on the one load
+        verify(userRepository, times(1)).findByEmail("john@example.com");
+    }
+
+    @Test
+    void testFailedLoad_NotCached() {
+        when(userRepository.findByEmail("john@example.com"))
+                .thenThrow(new IllegalStateException("connection refused"))
+                .thenReturn(Optional.of(user));
+
+        assertThrows(IllegalStateException.class, () -> userDetailsService.loadUserByUsername("john@example.com"));
+        assertSame(user, userDetailsService.loadUserByUsername("john@example.com"));
+    }
+
+    @Test
+    void testMaximumSize_EvictsEntries() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            String email = "user" + i + "@example.com";
+            when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+            userDetailsService.loadUserByUsername(email);
+        }
+
+        // Eviction runs in the cache's background maintenance
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (evictions() < 8 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(8, evictions());
+        assertTrue(meterRegistry.get("cache.size").tag("cache", "userDetails").gauge().value() <= 2);
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "userDetails").tag("result", result).functionCounter().count();
+    }
+
+    private double evictions() {
+        return meterRegistry.get("cache.evictions").tag("cache", "userDetails").functionCounter().count();
+    }
+}
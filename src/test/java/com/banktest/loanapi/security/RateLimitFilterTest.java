@@ -0,0 +1,86 @@
+package com.banktest.loanapi.security;
+
+import com.banktest.loanapi.model.User;
+import com.banktest.loanapi.service.JwtService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rate-limit-it",
+        "rate-limit.read.permits-per-second=0.1",
+        "rate-limit.read.burst=2",
+        "rate-limit.write.permits-per-second=0.1",
+        "rate-limit.write.burst=1"
+})
+@AutoConfigureMockMvc
+class RateLimitFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testRateLimit_SeparateReadAndWriteBudgetsPerUser() throws Exception {
+        String token = token(41);
+
+        mockMvc.perform(listLoans(41, token)).andExpect(status().isOk());
+        mockMvc.perform(listLoans(41, token)).andExpect(status().isOk());
+        // The third read in a row is refused until a permit comes back in 10 s
+        mockMvc.perform(listLoans(41, token))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "10"));
+
+        // Writes still have their own budget, and other users are untouched
+        mockMvc.perform(createLoans(token)).andExpect(status().isOk());
+        mockMvc.perform(createLoans(token)).andExpect(status().isTooManyRequests());
+        mockMvc.perform(listLoans(42, token(42))).andExpect(status().isOk());
+
+        assertEquals(1, meterRegistry.get("http.rate-limit.rejections").tag("budget", "read").counter().count());
+        assertEquals(1, meterRegistry.get("http.rate-limit.rejections").tag("budget", "write").counter().count());
+    }
+
+    @Test
+    void testRateLimit_AnonymousCallsLeftToAuthorization() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/loans").param("customerId", "43")).andExpect(status().isUnauthorized());
+        }
+    }
+
+    private static RequestBuilder listLoans(long customerId, String token) {
+        return get("/api/loans").param("customerId", Long.toString(customerId)).header("Authorization", "Bearer " + token);
+    }
+
+    private static RequestBuilder createLoans(String token) {
+        return post("/api/loans/batch").header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON).content("[]");
+    }
+
+    private String token(int userId) {
+        return jwtService.generateToken(User.builder()
+                .id(userId)
+                .email("user" + userId + "@example.com")
+                .fullName("Rate Limited")
+                .password("unused")
+                .roles(List.of("ROLE_CUSTOMER"))
+                .build());
+    }
+}
@@ -0,0 +1,86 @@
+package com.banktest.loanapi.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void testTryAcquire_BurstThenSteadyRate() {
+        // 10 per second with a burst of 3
+        RateLimiter limiter = new RateLimiter(10, 3);
+        long now = 1_000 * SECOND;
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(1L, now));
+        }
+        // The fourth has to wait one emission interval
+        assertEquals(SECOND / 10, limiter.tryAcquire(1L, now));
+        // Another key has its own bucket
+        assertEquals(0, limiter.tryAcquire(2L, now));
+
+        // A permit comes back every 100 ms, never more than the burst
+        assertEquals(0, limiter.tryAcquire(1L, now + SECOND / 10));
+        assertTrue(limiter.tryAcquire(1L, now + SECOND / 10) > 0);
+        long later = now + 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(1L, later));
+        }
+        assertTrue(limiter.tryAcquire(1L, later) > 0);
+    }
+
+    @Test
+    void testEvictIdle_DropsOnlyFullBuckets() {
+        RateLimiter limiter = new RateLimiter(10, 3);
+        long now = 1_000 * SECOND;
+        limiter.tryAcquire(1L, now);
+        limiter.tryAcquire(2L, now + SECOND);
+
+        // Key 1 is full again after 100 ms, key 2 is not yet
+        assertEquals(1, limiter.evictIdle(now + SECOND + 1));
+        assertEquals(1, limiter.size());
+
+        // A dropped key starts over with a full bucket, just as if it had been kept
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(1L, now + SECOND + 1));
+        }
+        assertTrue(limiter.tryAcquire(1L, now + SECOND + 1) > 0);
+    }
+
+    @Test
+    void testTryAcquire_NoPermitGrantedTwiceUnderContention() throws Exception {
+        RateLimiter limiter = new RateLimiter(1, 1_000);
+        long now = 1_000 * SECOND;
+
+        // 16 threads race for one key's 1000 permits at the same instant
+        List<Future<Integer>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int t = 0; t < 16; t++) {
+                futures.add(executor.submit(() -> {
+                    int granted = 0;
+                    for (int i = 0; i < 500; i++) {
+                        if (limiter.tryAcquire(7L, now) == 0) {
+                            granted++;
+                        }
+                    }
+                    return granted;
+                }));
+            }
+        }
+        int granted = 0;
+        for (Future<Integer> future : futures) {
+            granted += future.get();
+        }
+        assertEquals(1_000, granted);
+    }
+}
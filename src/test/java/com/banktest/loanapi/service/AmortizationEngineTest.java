@@ -0,0 +1,61 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.ScheduledInstallment;
+import com.banktest.loanapi.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmortizationEngineTest {
+
+    private final AmortizationEngine amortizationEngine = new AmortizationEngine();
+
+    @Test
+    void testSchedule_RemainderOnLastInstallment() {
+        // 1000.00 over 6 installments: 166.66 five times and 166.70 at the end
+        List<ScheduledInstallment> schedule = amortizationEngine.schedule(Money.of(1000), 6, LocalDate.of(2026, 1, 15));
+
+        assertEquals(6, schedule.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Money.valueOf("166.66"), schedule.get(i).amount());
+        }
+        assertEquals(Money.valueOf("166.70"), schedule.get(5).amount());
+        assertEquals(Money.of(1000), schedule.stream().map(ScheduledInstallment::amount).reduce(Money.ZERO, Money::plus));
+    }
+
+    @Test
+    void testSchedule_DueOnTheFirstOfEachFollowingMonth() {
+        List<ScheduledInstallment> schedule = amortizationEngine.schedule(Money.of(1200), 12, LocalDate.of(2026, 11, 30));
+
+        assertEquals(1, schedule.get(0).number());
+        assertEquals(LocalDate.of(2026, 12, 1), schedule.get(0).dueDate());
+        assertEquals(LocalDate.of(2027, 1, 1), schedule.get(1).dueDate());
+        assertEquals(LocalDate.of(2027, 11, 1), schedule.get(11).dueDate());
+        assertThrows(UnsupportedOperationException.class, () -> schedule.remove(0));
+    }
+
+    @Test
+    void testTemplate_CachedPerInstallmentCountAndMonth() {
+        ScheduleTemplate template = amortizationEngine.template(24, YearMonth.of(2026, 12));
+
+        // Every loan taken in the same month with the same count shares one template
+        assertSame(template, amortizationEngine.template(24, YearMonth.of(2026, 12)));
+        assertNotSame(template, amortizationEngine.template(24, YearMonth.of(2027, 1)));
+        assertNotSame(template, amortizationEngine.template(12, YearMonth.of(2026, 12)));
+        assertEquals(3, amortizationEngine.cachedTemplates());
+    }
+
+    @Test
+    void testTemplate_SplitReusesEqualAmounts() {
+        Money[] amounts = amortizationEngine.template(9, YearMonth.of(2026, 12)).split(Money.of(1200));
+
+        assertSame(amounts[0], amounts[7]);
+        assertEquals(Money.valueOf("133.33"), amounts[0]);
+        assertEquals(Money.valueOf("133.36"), amounts[8]);
+        assertThrows(IllegalArgumentException.class, () -> amortizationEngine.template(0, YearMonth.of(2026, 12)));
+    }
+}
@@ -0,0 +1,119 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.CustomerPortfolioDTO;
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.dto.LoanRequestDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:customer-portfolio-it",
+        "customer-portfolio.chunk-size=3",
+        "customer-portfolio.workers=4"
+})
+class CustomerPortfolioServiceIntegrationTest {
+
+    @Autowired
+    private CustomerPortfolioService customerPortfolioService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private LoanBatchService loanBatchService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testPortfolio_FollowsLoansAndPaymentsAndMatchesARebuild() {
+        Long customerId = newCustomer();
+        CustomerPortfolioDTO empty = customerPortfolioService.getPortfolio(customerId);
+        assertEquals(Money.ZERO, empty.getOutstandingAmount());
+        assertEquals(0, empty.getOpenLoanCount());
+
+        LoanDTO first = loanService.createLoan(customerId, Money.of(1000), 0.2, 12);
+        loanService.createLoan(customerId, Money.of(500), 0.2, 6);
+        loanBatchService.createLoans(List.of(new LoanRequestDTO(customerId, Money.of(1000), 0.2, 24)));
+
+        CustomerPortfolioDTO created = customerPortfolioService.getPortfolio(customerId);
+        assertEquals(Money.of(1200 + 600 + 1200), created.getOutstandingAmount());
+        assertEquals(3, created.getOpenLoanCount());
+        assertEquals(firstDueDate(first.getId()), created.getNextDueDate());
+        assertEquals(Money.ZERO, created.getOverdueAmount());
+
+        loanService.payInstallments(first.getId(), Money.of(200));
+        CustomerPortfolioDTO paid = customerPortfolioService.getPortfolio(customerId);
+        assertEquals(Money.of(3000 - 200), paid.getOutstandingAmount());
+        assertEquals(3, paid.getOpenLoanCount());
+
+        // Recomputing from scratch gives the same row the transactions maintained
+        customerPortfolioService.rebuild(LocalDate.now());
+        CustomerPortfolioDTO rebuilt = customerPortfolioService.getPortfolio(customerId);
+        assertEquals(paid.getOutstandingAmount(), rebuilt.getOutstandingAmount());
+        assertEquals(paid.getOpenLoanCount(), rebuilt.getOpenLoanCount());
+        assertEquals(paid.getNextDueDate(), rebuilt.getNextDueDate());
+        assertEquals(paid.getOverdueAmount(), rebuilt.getOverdueAmount());
+        assertEquals(LocalDate.now(), rebuilt.getOverdueAsOf());
+    }
+
+    @Test
+    void testRebuild_RepairsEveryCustomerInParallelChunks() {
+        List<Long> customerIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Long customerId = newCustomer();
+            customerIds.add(customerId);
+            loanService.createLoan(customerId, Money.of(1000), 0.2, 12);
+        }
+
+        // Lose the read model, then rebuild it as of a date when several installments are overdue
+        jdbcTemplate.update("delete from customer_portfolio");
+        LocalDate asOf = LocalDate.now().plusMonths(5);
+        assertTrue(customerPortfolioService.rebuild(asOf).getChunks() > 1);
+
+        for (Long customerId : customerIds) {
+            CustomerPortfolioDTO portfolio = customerPortfolioService.getPortfolio(customerId);
+            assertEquals(Money.of(1200), portfolio.getOutstandingAmount());
+            assertEquals(1, portfolio.getOpenLoanCount());
+            Long overdue = jdbcTemplate.queryForObject("select sum(i.amount) from loan_installment i join loan l on l.id = i.loan_id "
+                    + "where l.customer_id = ? and i.due_date < ?", Long.class, customerId, asOf);
+            assertEquals(Money.ofMinor(overdue), portfolio.getOverdueAmount());
+            assertTrue(portfolio.getOverdueAmount().minorUnits() > 0);
+            assertTrue(portfolio.getNextDueDate().isAfter(asOf.minusDays(1)));
+            assertEquals(asOf, portfolio.getOverdueAsOf());
+        }
+    }
+
+    @Test
+    void testGetPortfolio_UnknownCustomer() {
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> customerPortfolioService.getPortfolio(999_999L));
+        assertEquals("Customer not found", exception.getMessage());
+    }
+
+    private Long newCustomer() {
+        Customer customer = new Customer();
+        customer.setName("John");
+        customer.setSurname("Doe");
+        customer.setCreditLimit(Money.of(1_000_000));
+        customer.setUsedCreditLimit(Money.ZERO);
+        return customerRepository.save(customer).getId();
+    }
+
+    private LocalDate firstDueDate(Long loanId) {
+        return jdbcTemplate.queryForObject("select min(due_date) from loan_installment where loan_id = ?", LocalDate.class, loanId);
+    }
+}
@@ -0,0 +1,121 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.DelinquencyRunResultDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.DelinquencyBucket;
+import com.banktest.loanapi.model.DelinquencyCheckpoint;
+import com.banktest.loanapi.model.LoanInstallment;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import com.banktest.loanapi.repository.DelinquencyCheckpointRepository;
+import com.banktest.loanapi.repository.LoanInstallmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:delinquency-it",
+        "delinquency.chunk-size=5",
+        "delinquency.workers=3"
+})
+class DelinquencyServiceIntegrationTest {
+
+    @Autowired
+    private DelinquencyService delinquencyService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanInstallmentRepository loanInstallmentRepository;
+
+    @Autowired
+    private DelinquencyCheckpointRepository checkpointRepository;
+
+    private final List<Long> loanIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Customer customer = new Customer();
+        customer.setName("John");
+        customer.setSurname("Doe");
+        customer.setCreditLimit(Money.of(1_000_000));
+        customer.setUsedCreditLimit(Money.ZERO);
+        customer = customerRepository.save(customer);
+        for (int i = 0; i < 4; i++) {
+            loanIds.add(loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 12).getId());
+        }
+    }
+
+    @Test
+    void testRun_AccruesPenaltyAndBucketOfEveryOverdueInstallment() {
+        // The first installment of one loan is paid before it falls due
+        loanService.payInstallments(loanIds.get(0), Money.of(100));
+
+        // Looking back from eight months out, most of each schedule is overdue
+        LocalDate asOf = LocalDate.now().plusMonths(8);
+        DelinquencyRunResultDTO result = delinquencyService.run(asOf);
+
+        assertEquals(0, result.getResumedAfterId());
+        assertTrue(result.getChunks() > 1);
+        for (LoanInstallment installment : installments()) {
+            long daysPastDue = ChronoUnit.DAYS.between(installment.getDueDate(), asOf);
+            if (installment.getIsPaid() || daysPastDue <= 0) {
+                assertNull(installment.getAccruedPenalty());
+                assertNull(installment.getDelinquencyBucket());
+            } else {
+                assertEquals(Money.ofMinor(PaymentEngine.penalty(installment.getAmount().minorUnits(), daysPastDue)),
+                        installment.getAccruedPenalty());
+                assertEquals(DelinquencyBucket.forDaysPastDue(daysPastDue), installment.getDelinquencyBucket());
+            }
+        }
+        assertTrue(installments().stream().anyMatch(i -> i.getDelinquencyBucket() == DelinquencyBucket.DAYS_OVER_90));
+
+        // A finished run is not repeated for the same date
+        DelinquencyRunResultDTO again = delinquencyService.run(asOf);
+        assertEquals(0, again.getChunks());
+        assertEquals(0, again.getInstallmentsUpdated());
+    }
+
+    @Test
+    void testRun_ResumesAfterTheCheckpointOfAnInterruptedRun() {
+        LocalDate asOf = LocalDate.now().plusMonths(20);
+        List<LoanInstallment> installments = installments();
+        long resumeAfter = installments.get(installments.size() / 2).getId();
+
+        // A run for the same date stopped halfway through this book
+        checkpointRepository.save(new DelinquencyCheckpoint(DelinquencyCheckpoint.ID, asOf, resumeAfter, false));
+        DelinquencyRunResultDTO result = delinquencyService.run(asOf);
+
+        assertEquals(resumeAfter, result.getResumedAfterId());
+        for (LoanInstallment installment : installments()) {
+            if (installment.getId() <= resumeAfter) {
+                assertNull(installment.getAccruedPenalty());
+            } else {
+                assertNotNull(installment.getAccruedPenalty());
+            }
+        }
+        DelinquencyCheckpoint checkpoint = checkpointRepository.findById(DelinquencyCheckpoint.ID).orElseThrow();
+        assertTrue(checkpoint.getCompleted());
+        assertEquals(asOf, checkpoint.getRunDate());
+    }
+
+    private List<LoanInstallment> installments() {
+        List<LoanInstallment> installments = new ArrayList<>();
+        loanIds.forEach(loanId -> installments.addAll(loanInstallmentRepository.findByLoanId(loanId)));
+        installments.sort(Comparator.comparing(LoanInstallment::getId));
+        return installments;
+    }
+}
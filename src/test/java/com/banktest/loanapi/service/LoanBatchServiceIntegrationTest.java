@@ -0,0 +1,153 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.LoanBatchItemResultDTO;
+import com.banktest.loanapi.dto.LoanBatchResultDTO;
+import com.banktest.loanapi.dto.LoanRequestDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import com.banktest.loanapi.repository.LoanInstallmentRepository;
+import com.banktest.loanapi.repository.LoanRepository;
+import com.banktest.loanapi.support.SqlStatementCapture;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = {
+        SqlStatementCapture.PROPERTY,
+        "spring.datasource.url=jdbc:h2:mem:loan-batch-it"
+})
+class LoanBatchServiceIntegrationTest {
+
+    @Autowired
+    private LoanBatchService loanBatchService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LoanInstallmentRepository loanInstallmentRepository;
+
+    @SpyBean
+    private LoanFactory loanFactory;
+
+    @SpyBean
+    private CreditReservationService creditReservationService;
+
+    @Test
+    void testCreateLoans_ReportsEachItemAndChecksCreditOncePerCustomer() {
+        // Room for two loans of 1200 but not three
+        Long limited = saveCustomer(Money.of(2500));
+        Long roomy = saveCustomer(Money.of(100_000));
+        Long missing = roomy + 1000;
+
+        List<LoanRequestDTO> requests = List.of(
+                new LoanRequestDTO(limited, Money.of(1000), 0.2, 6),
+                new LoanRequestDTO(roomy, Money.of(1000), 0.2, 12),
+                new LoanRequestDTO(limited, Money.of(1000), 0.2, 9),
+                new LoanRequestDTO(missing, Money.of(1000), 0.2, 6),
+                new LoanRequestDTO(limited, Money.of(1000), 0.2, 24),
+                new LoanRequestDTO(roomy, Money.of(1000), 0.2, 7));
+
+        SqlStatementCapture.reset();
+        LoanBatchResultDTO result = loanBatchService.createLoans(requests);
+        List<String> statements = SqlStatementCapture.statements();
+
+        // Per-item outcome, in submission order
+        List<LoanBatchItemResultDTO> items = result.getResults();
+        assertEquals(3, result.getCreated());
+        assertEquals(3, result.getFailed());
+        assertTrue(items.get(0).isCreated());
+        assertTrue(items.get(1).isCreated());
+        assertTrue(items.get(2).isCreated());
+        assertEquals("Customer not found", items.get(3).getError());
+        assertEquals("Customer does not have enough credit limit", items.get(4).getError());
+        assertEquals("Number of installments must be 6, 9, 12, or 24", items.get(5).getError());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(i, items.get(i).getIndex());
+        }
+
+        // Everything was written, with each schedule
+        assertEquals(Money.of(2400), customerRepository.findById(limited).orElseThrow().getUsedCreditLimit());
+        assertEquals(Money.of(1200), customerRepository.findById(roomy).orElseThrow().getUsedCreditLimit());
+        assertEquals(12, loanInstallmentRepository.findByLoanId(items.get(1).getLoanId()).size());
+
+        // One customer select for the chunk and one reservation per customer that got a loan
+        assertEquals(1, statements.stream().filter(sql -> sql.startsWith("select") && sql.contains("from customer")).count(),
+                () -> "Statements: " + statements);
+        assertEquals(2, statements.stream().filter(sql -> sql.startsWith("update customer")).count(),
+                () -> "Statements: " + statements);
+        assertEquals(1, statements.stream().filter(sql -> sql.startsWith("insert into loan_installment")).count(),
+                () -> "Statements: " + statements);
+    }
+
+    @Test
+    void testCreateLoans_ConcurrentSingleLoanOnlyRejectsTheItemsThatNoLongerFit() {
+        // Room for two loans of 1200 when the batch reads the customer
+        Long customerId = saveCustomer(Money.of(2500));
+        doAnswer(invocation -> {
+            // A single loan commits between the chunk's read of the customer and its reservation
+            CompletableFuture.runAsync(() -> creditReservationService.reserve(customerId, Money.of(1200))).join();
+            return invocation.callRealMethod();
+        }).doCallRealMethod().when(creditReservationService).reserve(any(), any());
+
+        LoanBatchResultDTO result = loanBatchService.createLoans(List.of(
+                new LoanRequestDTO(customerId, Money.of(1000), 0.2, 6),
+                new LoanRequestDTO(customerId, Money.of(1000), 0.2, 12)));
+
+        // The first loan still fits next to the single one, as it would have through createLoan
+        assertEquals(1, result.getCreated());
+        assertTrue(result.getResults().get(0).isCreated());
+        assertEquals("Customer does not have enough credit limit", result.getResults().get(1).getError());
+        assertEquals(Money.of(2400), customerRepository.findById(customerId).orElseThrow().getUsedCreditLimit());
+    }
+
+    @Test
+    void testCreateLoans_FailedChunkDoesNotRollBackOthers() {
+        // Enough customers for two chunks; the first chunk fails while building its installments
+        List<Long> customerIds = new ArrayList<>();
+        List<LoanRequestDTO> requests = new ArrayList<>();
+        for (int i = 0; i < LoanBatchService.CHUNK_SIZE + 10; i++) {
+            Long customerId = saveCustomer(Money.of(10_000));
+            customerIds.add(customerId);
+            requests.add(new LoanRequestDTO(customerId, Money.of(1000), 0.2, 6));
+        }
+        long loansBefore = loanRepository.count();
+        doThrow(new RuntimeException("disk full")).doCallRealMethod().when(loanFactory).newInstallments(any());
+
+        LoanBatchResultDTO result = loanBatchService.createLoans(requests);
+
+        // The first chunk is reported failed and rolled back, reservations included; the second one committed
+        assertEquals(10, result.getCreated());
+        assertEquals(LoanBatchService.CHUNK_SIZE, result.getFailed());
+        assertEquals("Batch chunk failed: disk full", result.getResults().get(0).getError());
+        assertTrue(result.getResults().get(LoanBatchService.CHUNK_SIZE).isCreated());
+        assertEquals(loansBefore + 10, loanRepository.count());
+        assertEquals(Money.ZERO, customerRepository.findById(customerIds.get(0)).orElseThrow().getUsedCreditLimit());
+        assertEquals(Money.of(1200), customerRepository.findById(customerIds.get(LoanBatchService.CHUNK_SIZE))
+                .orElseThrow().getUsedCreditLimit());
+    }
+
+    private Long saveCustomer(Money creditLimit) {
+        Customer customer = new Customer();
+        customer.setName("John");
+        customer.setSurname("Doe");
+        customer.setCreditLimit(creditLimit);
+        customer.setUsedCreditLimit(Money.ZERO);
+        return customerRepository.save(customer).getId();
+    }
+}
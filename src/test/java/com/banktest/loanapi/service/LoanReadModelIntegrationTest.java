@@ -0,0 +1,143 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.dto.LoanPageDTO;
+import com.banktest.loanapi.dto.LoanRequestDTO;
+import com.banktest.loanapi.dto.LoanSearchCriteria;
+import com.banktest.loanapi.dto.LoanVersion;
+import com.banktest.loanapi.dto.ReadModelVerificationDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import com.banktest.loanapi.repository.LoanRepository;
+import com.banktest.loanapi.repository.LoanSpecifications;
+import com.banktest.loanapi.support.SqlStatementCapture;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        SqlStatementCapture.PROPERTY,
+        "spring.datasource.url=jdbc:h2:mem:loan-read-model-it",
+        "read-model.enabled=true",
+        "read-model.load-chunk-size=2",
+        "read-model.load-workers=3"
+})
+class LoanReadModelIntegrationTest {
+
+    @Autowired
+    private LoanReadModel loanReadModel;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private LoanBatchService loanBatchService;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testReadModel_FollowsLoansAndPaymentsWithoutQueries() {
+        Long customerId = newCustomer();
+        LoanDTO first = loanService.createLoan(customerId, Money.of(1000), 0.2, 12);
+        loanService.createLoan(customerId, Money.of(500), 0.2, 6);
+        loanBatchService.createLoans(List.of(
+                new LoanRequestDTO(customerId, Money.of(2000), 0.1, 24),
+                new LoanRequestDTO(customerId, Money.of(300), 0.1, 9)));
+        loanService.payInstallments(first.getId(), Money.of(250));
+
+        assertTrue(loanReadModel.isReady());
+        assertTrue(loanReadModel.verify().isConsistent());
+
+        // Pages and schedules come from memory alone
+        SqlStatementCapture.reset();
+        LoanPageDTO page = loanService.listLoans(customerId, new LoanSearchCriteria(), null, 3, false);
+        LoanPageDTO next = loanService.listLoans(customerId, new LoanSearchCriteria(), page.getNextCursor(), 3, false);
+        List<LoanInstallmentDTO> installments = loanService.listInstallments(first.getId());
+        Long owner = loanService.getLoanCustomerId(first.getId());
+        LoanVersion version = loanService.getLoanVersion(first.getId());
+        assertEquals(List.of(), SqlStatementCapture.statements());
+
+        assertEquals(3, page.getContent().size());
+        assertEquals(1, next.getContent().size());
+        assertNull(next.getNextCursor());
+        assertEquals(customerId, owner);
+        // The payment's commit bumped the version in the model as in the table
+        assertEquals(new LoanVersion(customerId, 1L), version);
+        assertEquals(12, installments.size());
+        assertEquals(2, installments.stream().filter(LoanInstallmentDTO::getIsPaid).count());
+        assertEquals(LocalDate.now(), installments.get(0).getPaymentDate());
+
+        LoanDTO paid = page.getContent().get(0);
+        assertEquals(first.getId(), paid.getId());
+        assertEquals(2, paid.getPaidInstallmentCount());
+        assertEquals(Money.of(1000), paid.getOutstandingAmount());
+        assertEquals(12, paid.getInstallments().size());
+    }
+
+    @Test
+    void testFindLoans_FiltersLikeTheSpecificationQuery() {
+        Long customerId = newCustomer();
+        for (int installments : new int[]{6, 9, 12, 24}) {
+            loanService.createLoan(customerId, Money.of(installments * 100L), 0.2, installments);
+        }
+        LoanDTO partlyPaid = loanService.createLoan(customerId, Money.of(100), 0.2, 6);
+        loanService.payInstallments(partlyPaid.getId(), Money.of(1000));
+
+        LoanSearchCriteria open = new LoanSearchCriteria();
+        open.setIsPaid(false);
+        LoanSearchCriteria twelve = new LoanSearchCriteria();
+        twelve.setNumberOfInstallments(12);
+        LoanSearchCriteria amounts = new LoanSearchCriteria();
+        amounts.setMinAmount(Money.of(1000));
+        amounts.setMaxAmount(Money.of(1500));
+        amounts.setCreatedFrom(LocalDate.now());
+        amounts.setCreatedTo(LocalDate.now());
+
+        for (LoanSearchCriteria criteria : List.of(new LoanSearchCriteria(), open, twelve, amounts)) {
+            List<LoanDTO> expected = loanRepository.findLoanDTOs(LoanSpecifications.forCustomer(customerId, criteria, null), 10);
+            assertEquals(expected, loanReadModel.findLoans(customerId, criteria, null, 10, false));
+        }
+    }
+
+    @Test
+    void testVerify_ReportsWritesTheModelMissedUntilReloaded() {
+        Long customerId = newCustomer();
+        LoanDTO loan = loanService.createLoan(customerId, Money.of(1000), 0.2, 6);
+
+        // Changed behind the application's back
+        jdbcTemplate.update("update loan set outstanding_amount = outstanding_amount - 100 where id = ?", loan.getId());
+        ReadModelVerificationDTO stale = loanReadModel.verify();
+        assertFalse(stale.isConsistent());
+        assertEquals(List.of(loan.getId()), stale.getMismatchedLoanIds());
+
+        loanReadModel.load();
+        ReadModelVerificationDTO reloaded = loanReadModel.verify();
+        assertTrue(reloaded.isConsistent());
+        assertEquals(0, reloaded.getMissingLoans());
+        assertTrue(reloaded.getInstallmentsChecked() >= 6);
+    }
+
+    private Long newCustomer() {
+        Customer customer = new Customer();
+        customer.setName("John");
+        customer.setSurname("Doe");
+        customer.setCreditLimit(Money.of(1_000_000));
+        customer.setUsedCreditLimit(Money.ZERO);
+        return customerRepository.save(customer).getId();
+    }
+}
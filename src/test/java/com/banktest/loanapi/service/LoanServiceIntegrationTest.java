@@ -0,0 +1,297 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.dto.LoanPageDTO;
+import com.banktest.loanapi.dto.LoanSearchCriteria;
+import com.banktest.loanapi.dto.LoanVersion;
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import com.banktest.loanapi.support.SqlStatementCapture;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        SqlStatementCapture.PROPERTY,
+        "spring.datasource.url=jdbc:h2:mem:loan-service-it"
+})
+class LoanServiceIntegrationTest {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PaymentEngine paymentEngine;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        customer = new Customer();
+        customer.setName("John");
+        customer.setSurname("Doe");
+        customer.setCreditLimit(Money.of(1_000_000));
+        customer.setUsedCreditLimit(Money.ZERO);
+        customer = customerRepository.save(customer);
+    }
+
+    @Test
+    void testCreateLoan_StatementCountIndependentOfInstallments() {
+        // Warm up the sequence pools so the measured calls only see the steady state
+        loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 6);
+
+        SqlStatementCapture.reset();
+        loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 6);
+        List<String> sixInstallments = SqlStatementCapture.statements();
+
+        SqlStatementCapture.reset();
+        LoanDTO loan = loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 24);
+        List<String> twentyFourInstallments = SqlStatementCapture.statements();
+
+        // The whole schedule goes out as a single batched insert
+        assertEquals(1, SqlStatementCapture.count("insert into loan_installment"));
+        assertEquals(1, sixInstallments.stream().filter(sql -> sql.startsWith("insert into loan_installment")).count());
+
+        // customer select + update, portfolio merge, loan insert, installment batch and at most two sequence refills
+        assertTrue(sixInstallments.size() <= 7, () -> "Statements: " + sixInstallments);
+        assertTrue(twentyFourInstallments.size() <= 7, () -> "Statements: " + twentyFourInstallments);
+
+        // ...and every row is linked to its loan
+        assertEquals(24, loanService.listInstallments(loan.getId()).size());
+    }
+
+    @Test
+    void testPayInstallments_StatementCountIndependentOfInstallmentsPaid() {
+        LoanDTO first = loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 24);
+        LoanDTO second = loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 24);
+
+        // One installment on the first loan, every payable one on the second
+        SqlStatementCapture.reset();
+        PaymentResultResponseDTO single = loanService.payInstallments(first.getId(), Money.of(50));
+        List<String> singleStatements = SqlStatementCapture.statements();
+
+        SqlStatementCapture.reset();
+        PaymentResultResponseDTO several = loanService.payInstallments(second.getId(), Money.of(1000));
+        List<String> severalStatements = SqlStatementCapture.statements();
+
+        assertEquals(1, single.getInstallmentsPaid());
+        assertTrue(several.getInstallmentsPaid() > 1);
+
+        // loan lock, payable select, bulk update, loan counters, credit release, portfolio update
+        assertEquals(6, singleStatements.size(), () -> "Statements: " + singleStatements);
+        assertEquals(6, severalStatements.size(), () -> "Statements: " + severalStatements);
+
+        // The running counters match the table
+        long unpaid = loanService.listInstallments(second.getId()).stream()
+                .filter(installment -> !installment.getIsPaid())
+                .count();
+        assertEquals(24 - several.getInstallmentsPaid(), unpaid);
+    }
+
+    @Test
+    void testCreateAndPayLoan_AmountsAddUpToTheCent() {
+        // 1200.00 over 9 installments does not divide evenly
+        LoanDTO loan = loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 9);
+        List<LoanInstallmentDTO> installments = loanService.listInstallments(loan.getId());
+
+        Money scheduled = installments.stream().map(LoanInstallmentDTO::getAmount).reduce(Money.ZERO, Money::plus);
+        assertEquals(Money.of(1200), scheduled);
+        assertEquals(Money.valueOf("133.33"), installments.get(0).getAmount());
+        assertEquals(Money.valueOf("133.36"), installments.get(8).getAmount());
+
+        // Paying back releases exactly what was reserved
+        PaymentResultResponseDTO result = loanService.payInstallments(loan.getId(), Money.valueOf("133.33"));
+        assertEquals(Money.valueOf("133.33"), result.getTotalAmountSpent());
+        Customer updated = customerRepository.findById(customer.getId()).orElseThrow();
+        assertEquals(Money.valueOf("1066.67"), updated.getUsedCreditLimit());
+    }
+
+    @Test
+    void testCreateLoan_ConcurrentReservationsNeverOverdrawCreditLimit() throws Exception {
+        // Room for exactly 50 loans of 1200, hammered by far more concurrent requests
+        Customer limited = new Customer();
+        limited.setName("Jane");
+        limited.setSurname("Doe");
+        limited.setCreditLimit(Money.of(60_000));
+        limited.setUsedCreditLimit(Money.ZERO);
+        Long customerId = customerRepository.save(limited).getId();
+
+        int attempts = 400;
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger created = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < attempts; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    loanService.createLoan(customerId, Money.of(1000), 0.2, 6);
+                    created.incrementAndGet();
+                } catch (RuntimeException rejected) {
+                    // Rejected for lack of credit limit
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        Customer result = customerRepository.findById(customerId).orElseThrow();
+        assertTrue(result.getUsedCreditLimit().compareTo(result.getCreditLimit()) <= 0);
+        assertEquals(50, created.get());
+        assertEquals(Money.of(1200).times(created.get()), result.getUsedCreditLimit());
+    }
+
+    @Test
+    void testListLoans_WalksFilteredPagesWithCursor() {
+        // 30 loans alternating between 6 and 12 installments
+        List<Long> sixInstallmentIds = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            LoanDTO loan = loanService.createLoan(customer.getId(), Money.of(1000), 0.2, i % 2 == 0 ? 6 : 12);
+            if (loan.getNumberOfInstallments() == 6) {
+                sixInstallmentIds.add(loan.getId());
+            }
+        }
+        LoanSearchCriteria criteria = new LoanSearchCriteria();
+        criteria.setNumberOfInstallments(6);
+        criteria.setIsPaid(false);
+        criteria.setMinAmount(Money.of(1000));
+
+        // Follow the cursor until the last page
+        List<Long> seen = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            LoanPageDTO page = loanService.listLoans(customer.getId(), criteria, cursor, 4, false);
+            page.getContent().forEach(loan -> seen.add(loan.getId()));
+            pageSizes.add(page.getContent().size());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(sixInstallmentIds, seen);
+        assertEquals(List.of(4, 4, 4, 3), pageSizes);
+
+        // Nothing matches outside the amount range
+        criteria.setMaxAmount(Money.of(1100));
+        assertTrue(loanService.listLoans(customer.getId(), criteria, null, 4, true).getContent().isEmpty());
+    }
+
+    @Test
+    void testListLoans_AtMostTwoStatementsPerPage() {
+        for (int i = 0; i < 10; i++) {
+            loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 24);
+        }
+
+        // Loans through one projection query, every installment of the page through one IN query
+        SqlStatementCapture.reset();
+        LoanPageDTO page = loanService.listLoans(customer.getId(), new LoanSearchCriteria(), null, 20, false);
+        List<String> statements = SqlStatementCapture.statements();
+
+        assertEquals(10, page.getContent().size());
+        page.getContent().forEach(loan -> assertEquals(24, loan.getInstallments().size()));
+        assertTrue(statements.size() <= 2, () -> "Statements: " + statements);
+
+        // Summary mode never touches loan_installment
+        SqlStatementCapture.reset();
+        loanService.listLoans(customer.getId(), new LoanSearchCriteria(), null, 20, true);
+        List<String> summaryStatements = SqlStatementCapture.statements();
+        assertEquals(1, summaryStatements.size(), () -> "Statements: " + summaryStatements);
+        assertFalse(summaryStatements.get(0).contains("loan_installment"));
+    }
+
+    @Test
+    void testPayInstallments_CountedInMetricsOnlyOnceCommitted() {
+        LoanDTO loan = loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 12);
+        Counter installmentsPaid = meterRegistry.get("loan.installments.paid").counter();
+        double before = installmentsPaid.count();
+
+        // A settlement that rolls back, as a failed batch does before it is retried payment by payment
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            paymentEngine.pay(loan.getId(), Money.of(200));
+            status.setRollbackOnly();
+        });
+        assertEquals(before, installmentsPaid.count());
+
+        loanService.payInstallments(loan.getId(), Money.of(200));
+        assertEquals(before + 2, installmentsPaid.count());
+    }
+
+    @Test
+    void testGetLoanVersion_MovesWithEveryPaymentThatChangesTheLoan() {
+        LoanDTO loan = loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 12);
+        assertEquals(0L, loan.getVersion());
+
+        loanService.payInstallments(loan.getId(), Money.of(250));
+        SqlStatementCapture.reset();
+        LoanVersion paid = loanService.getLoanVersion(loan.getId());
+        // A single primary key lookup; the installments are not read
+        assertEquals(1, SqlStatementCapture.statements().size());
+        assertFalse(SqlStatementCapture.statements().get(0).contains("loan_installment"));
+        assertEquals(new LoanVersion(customer.getId(), 1L), paid);
+
+        // A payment too small for any installment leaves the loan, and so its version, as it was
+        loanService.payInstallments(loan.getId(), Money.of(1));
+        assertEquals(1L, loanService.getLoanVersion(loan.getId()).version());
+        assertEquals(1L, loanService.getLoan(loan.getId()).getVersion());
+
+        loanService.payInstallments(loan.getId(), Money.of(100));
+        assertEquals(2L, loanService.getLoanVersion(loan.getId()).version());
+    }
+
+    @Test
+    void testListLoans_RejectsCursorOfAnotherCustomer() {
+        for (int i = 0; i < 3; i++) {
+            loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 6);
+        }
+        String cursor = loanService.listLoans(customer.getId(), new LoanSearchCriteria(), null, 1, true).getNextCursor();
+        assertNotNull(cursor);
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> loanService.listLoans(customer.getId() + 1, new LoanSearchCriteria(), cursor, 1, true));
+        assertEquals("Invalid cursor", exception.getMessage());
+    }
+
+    @Test
+    void testLoanTable_HasListingIndexes() {
+        List<String> indexes = jdbcTemplate.queryForList(
+                "select index_name from information_schema.indexes where table_name = 'LOAN'", String.class);
+        assertTrue(indexes.contains("IDX_LOAN_CUSTOMER_ID_ID"), () -> "Indexes: " + indexes);
+        assertTrue(indexes.contains("IDX_LOAN_CUSTOMER_PAID_INSTALLMENTS"), () -> "Indexes: " + indexes);
+    }
+}
@@ -2,6 +2,7 @@ package com.banktest.loanapi.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 import java.time.LocalDate;
@@ -11,6 +12,8 @@ import java.util.Optional;
 
 import com.banktest.loanapi.dto.LoanDTO;
 import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.dto.LoanPageDTO;
+import com.banktest.loanapi.dto.LoanSearchCriteria;
 import com.banktest.loanapi.dto.PaymentResultResponseDTO;
 import com.banktest.loanapi.mapper.CustomerMapper;
 import com.banktest.loanapi.mapper.LoanInstallmentMapper;
@@ -18,6 +21,7 @@ import com.banktest.loanapi.mapper.LoanMapper;
 import com.banktest.loanapi.model.Customer;
 import com.banktest.loanapi.model.Loan;
 import com.banktest.loanapi.model.LoanInstallment;
+import com.banktest.loanapi.model.Money;
 import com.banktest.loanapi.repository.CustomerRepository;
 import com.banktest.loanapi.repository.LoanInstallmentRepository;
 import com.banktest.loanapi.repository.LoanRepository;
@@ -26,7 +30,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 
 @ExtendWith(MockitoExtension.class)
 public class LoanServiceTest {
@@ -49,6 +58,32 @@ public class LoanServiceTest {
     @Mock
     private LoanInstallmentMapper loanInstallmentMapper;
 
+    @Mock
+    private CreditReservationService creditReservationService;
+
+    @Mock
+    private PaymentEngine paymentEngine;
+
+    @Mock
+    private PaymentJournalService paymentJournalService;
+
+    @Mock
+    private CustomerPortfolioService customerPortfolioService;
+
+    @Mock
+    private LoanReadModel loanReadModel;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private LoanFactory loanFactory = new LoanFactory(new AmortizationEngine());
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private ApplicationMetrics metrics = new ApplicationMetrics(meterRegistry);
+
     @InjectMocks
     private LoanService loanService;
 
@@ -62,13 +97,13 @@ public class LoanServiceTest {
         customer.setId(1L);
         customer.setName("John");
         customer.setSurname("Doe");
-        customer.setCreditLimit(10000.0);
-        customer.setUsedCreditLimit(0.0);
+        customer.setCreditLimit(Money.of(10000));
+        customer.setUsedCreditLimit(Money.ZERO);
 
         loan = new Loan();
         loan.setId(1L);
         loan.setCustomerId(1L);
-        loan.setLoanAmount(1200.0);
+        loan.setLoanAmount(Money.of(1200));
         loan.setNumberOfInstallments(12);
         loan.setCreateDate(LocalDate.now());
         loan.setIsPaid(false);
@@ -76,7 +111,7 @@ public class LoanServiceTest {
         loanDTO = new LoanDTO();
         loanDTO.setId(1L);
         loanDTO.setCustomerId(1L);
-        loanDTO.setLoanAmount(1200.0);
+        loanDTO.setLoanAmount(Money.of(1200));
         loanDTO.setNumberOfInstallments(12);
         loanDTO.setCreateDate(LocalDate.now());
         loanDTO.setIsPaid(false);
@@ -84,124 +119,135 @@ public class LoanServiceTest {
 
     @Test
     void testCreateLoan_Success() {
-        // Mock customer repository
-        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        // Mock credit reservation
+        when(creditReservationService.reserve(eq(1L), any(Money.class))).thenReturn(true);
         when(loanRepository.save(any(Loan.class))).thenReturn(loan);
         when(loanMapper.toLoanDTO(any(Loan.class))).thenReturn(loanDTO);
 
         // Call the service method
-        LoanDTO result = loanService.createLoan(1L, 1000.0, 0.2, 12);
+        LoanDTO result = loanService.createLoan(1L, Money.of(1000), 0.2, 12);
 
         // Verify the result
         assertNotNull(result);
         assertEquals(1L, result.getCustomerId());
-        assertEquals(1200.0, result.getLoanAmount());
+        assertEquals(Money.of(1200), result.getLoanAmount());
         assertEquals(12, result.getNumberOfInstallments());
 
         // Verify interactions
-        verify(customerRepository, times(1)).findById(1L);
+        verify(creditReservationService, times(1)).reserve(1L, Money.of(1200));
+        verify(customerPortfolioService, times(1)).loansCreated(eq(1L), eq(Money.of(1200)), eq(1), any(LocalDate.class));
         verify(loanRepository, times(1)).save(any(Loan.class));
         verify(loanMapper, times(1)).toLoanDTO(any(Loan.class));
+
+        // Verify the call was timed
+        assertEquals(1, meterRegistry.get("loan.operation").tag("operation", "create").timer().count());
     }
 
     @Test
     void testCreateLoan_CustomerNotFound() {
-        // Mock customer repository to return empty
-        when(customerRepository.findById(1L)).thenReturn(Optional.empty());
+        // Mock a reservation that fails because the customer does not exist
+        when(creditReservationService.reserve(eq(1L), any(Money.class))).thenReturn(false);
+        when(customerRepository.existsById(1L)).thenReturn(false);
 
         // Verify exception is thrown
-        assertThrows(RuntimeException.class, () -> {
-            loanService.createLoan(1L, 1000.0, 0.2, 12);
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            loanService.createLoan(1L, Money.of(1000), 0.2, 12);
         });
+        assertEquals("Customer not found", exception.getMessage());
 
         // Verify interactions
-        verify(customerRepository, times(1)).findById(1L);
+        verify(customerRepository, times(1)).existsById(1L);
         verify(loanRepository, never()).save(any(Loan.class));
     }
 
     @Test
     void testCreateLoan_InsufficientCreditLimit() {
-        // Mock customer with insufficient credit limit
-        customer.setUsedCreditLimit(9000.0);
-        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        // Mock a reservation rejected for insufficient credit limit
+        when(creditReservationService.reserve(eq(1L), any(Money.class))).thenReturn(false);
+        when(customerRepository.existsById(1L)).thenReturn(true);
 
         // Verify exception is thrown
-        assertThrows(RuntimeException.class, () -> {
-            loanService.createLoan(1L, 1000.0, 0.2, 12);
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            loanService.createLoan(1L, Money.of(1000), 0.2, 12);
         });
+        assertEquals("Customer does not have enough credit limit", exception.getMessage());
 
         // Verify interactions
-        verify(customerRepository, times(1)).findById(1L);
+        verify(creditReservationService, times(1)).reserve(eq(1L), any(Money.class));
         verify(loanRepository, never()).save(any(Loan.class));
+
+        // Verify the rejection was counted, and the failed call still timed
+        assertEquals(1, meterRegistry.get("loan.credit.rejections").counter().count());
+        assertEquals(1, meterRegistry.get("loan.operation").tag("operation", "create").timer().count());
     }
 
     @Test
-    void testListLoans_WithFilters() {
-        // Mock data
-        Loan loan1 = new Loan();
-        loan1.setId(1L);
-        loan1.setCustomerId(1L);
-        loan1.setLoanAmount(1200.0);
-        loan1.setNumberOfInstallments(12);
-        loan1.setIsPaid(false);
-
-        Loan loan2 = new Loan();
-        loan2.setId(2L);
-        loan2.setCustomerId(1L);
-        loan2.setLoanAmount(1500.0);
-        loan2.setNumberOfInstallments(6);
-        loan2.setIsPaid(true);
-
-        LoanDTO loanDTO1 = new LoanDTO();
-        loanDTO1.setId(1L);
-        loanDTO1.setLoanAmount(1200.0);
+    void testListLoans_ReturnsPageWithCursorAndInstallments() {
+        // Mock data: one row more than the page size
+        LoanDTO loanDTO1 = new LoanDTO(1L, 1L, Money.of(1200), 12, LocalDate.now(), false, 0, Money.of(1200), 0L);
+        LoanDTO loanDTO2 = new LoanDTO(2L, 1L, Money.of(600), 6, LocalDate.now(), false, 0, Money.of(600), 0L);
+        LoanDTO loanDTO3 = new LoanDTO(3L, 1L, Money.of(900), 9, LocalDate.now(), false, 0, Money.of(900), 0L);
+
+        LoanInstallmentDTO installmentDTO1 = new LoanInstallmentDTO();
+        installmentDTO1.setId(10L);
+        installmentDTO1.setLoanId(1L);
+        LoanInstallmentDTO installmentDTO2 = new LoanInstallmentDTO();
+        installmentDTO2.setId(11L);
+        installmentDTO2.setLoanId(1L);
 
         // Mock repository responses
-        when(loanRepository.findByCustomerIdAndNumberOfInstallmentsAndIsPaid(1L, 12, false))
-                .thenReturn(Arrays.asList(loan1));
-        when(loanMapper.toLoanDTO(loan1)).thenReturn(loanDTO1);
+        when(loanRepository.findLoanDTOs(any(Specification.class), eq(3)))
+                .thenReturn(Arrays.asList(loanDTO1, loanDTO2, loanDTO3));
+        when(loanInstallmentRepository.findDTOsByLoanIdIn(List.of(1L, 2L)))
+                .thenReturn(Arrays.asList(installmentDTO1, installmentDTO2));
+
         // Call the service method
-        List<LoanDTO> result = loanService.listLoans(1L, 12, false);
+        LoanPageDTO result = loanService.listLoans(1L, new LoanSearchCriteria(), null, 2, false);
 
         // Verify the result
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals(1L, result.get(0).getId());
-        assertEquals(1200.0, result.get(0).getLoanAmount());
-
-        // Verify interactions
-        verify(loanRepository, times(1)).findByCustomerIdAndNumberOfInstallmentsAndIsPaid(1L, 12, false);
+        assertEquals(2, result.getContent().size());
+        assertEquals(2, result.getContent().get(0).getInstallments().size());
+        assertTrue(result.getContent().get(1).getInstallments().isEmpty());
+        assertNotNull(result.getNextCursor());
+
+        // Verify interactions: no entity mapping, one batched installment fetch for the page only
+        verify(loanInstallmentRepository, times(1)).findDTOsByLoanIdIn(List.of(1L, 2L));
+        verifyNoInteractions(loanMapper);
+        // Both queries share one read-only transaction
+        verify(transactionManager, times(1)).getTransaction(argThat(TransactionDefinition::isReadOnly));
+        verify(transactionManager, times(1)).commit(any());
     }
 
     @Test
-    void testListLoans_WithoutFilters() {
+    void testListLoans_SummaryLeavesInstallmentsOut() {
         // Mock data
-        Loan loan1 = new Loan();
-        loan1.setId(1L);
-        loan1.setCustomerId(1L);
-        loan1.setLoanAmount(1200.0);
-        loan1.setNumberOfInstallments(12);
-        loan1.setIsPaid(false);
-
-        Loan loan2 = new Loan();
-        loan2.setId(2L);
-        loan2.setCustomerId(1L);
-        loan2.setLoanAmount(1500.0);
-        loan2.setNumberOfInstallments(6);
-        loan2.setIsPaid(true);
+        LoanDTO loanDTO1 = new LoanDTO(1L, 1L, Money.of(1200), 12, LocalDate.now(), false, 0, Money.of(1200), 0L);
 
         // Mock repository response
-        when(loanRepository.findByCustomerId(1L)).thenReturn(Arrays.asList(loan1, loan2));
+        when(loanRepository.findLoanDTOs(any(Specification.class), eq(3))).thenReturn(List.of(loanDTO1));
 
         // Call the service method
-        List<LoanDTO> result = loanService.listLoans(1L, null, null);
+        LoanPageDTO result = loanService.listLoans(1L, new LoanSearchCriteria(), null, 2, true);
 
         // Verify the result
-        assertNotNull(result);
-        assertEquals(2, result.size());
+        assertEquals(1, result.getContent().size());
+        assertNull(result.getContent().get(0).getInstallments());
+        assertNull(result.getNextCursor());
 
         // Verify interactions
-        verify(loanRepository, times(1)).findByCustomerId(1L);
+        verifyNoInteractions(loanInstallmentRepository);
+    }
+
+    @Test
+    void testListLoans_InvalidCursor() {
+        // Verify exception is thrown for a malformed cursor
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            loanService.listLoans(1L, new LoanSearchCriteria(), "not a cursor", 20, false);
+        });
+        assertEquals("Invalid cursor", exception.getMessage());
+
+        // Verify interactions
+        verify(loanRepository, never()).findLoanDTOs(any(Specification.class), anyInt());
     }
 
     @Test
@@ -210,8 +256,8 @@ public class LoanServiceTest {
         LoanInstallment installment1 = new LoanInstallment();
         installment1.setId(1L);
         installment1.setLoanId(1L);
-        installment1.setAmount(100.0);
-        installment1.setPaidAmount(0.0);
+        installment1.setAmount(Money.of(100));
+        installment1.setPaidAmount(Money.ZERO);
         installment1.setDueDate(LocalDate.now().plusMonths(1));
         installment1.setPaymentDate(null);
         installment1.setIsPaid(false);
@@ -219,8 +265,8 @@ public class LoanServiceTest {
         LoanInstallment installment2 = new LoanInstallment();
         installment2.setId(2L);
         installment2.setLoanId(1L);
-        installment2.setAmount(100.0);
-        installment2.setPaidAmount(0.0);
+        installment2.setAmount(Money.of(100));
+        installment2.setPaidAmount(Money.ZERO);
         installment2.setDueDate(LocalDate.now().plusMonths(2));
         installment2.setPaymentDate(null);
         installment2.setIsPaid(false);
@@ -228,12 +274,12 @@ public class LoanServiceTest {
         // Mock DTOs
         LoanInstallmentDTO installmentDTO1 = new LoanInstallmentDTO();
         installmentDTO1.setId(1L);
-        installmentDTO1.setAmount(100.0);
+        installmentDTO1.setAmount(Money.of(100));
         installmentDTO1.setIsPaid(false);
 
         LoanInstallmentDTO installmentDTO2 = new LoanInstallmentDTO();
         installmentDTO2.setId(2L);
-        installmentDTO2.setAmount(100.0);
+        installmentDTO2.setAmount(Money.of(100));
         installmentDTO2.setIsPaid(false);
 
         // Mock repository response
@@ -260,61 +306,19 @@ public class LoanServiceTest {
     }
 
     @Test
-    void testPayInstallments_Success() {
-        // Mock loan
-        Loan loan = new Loan();
-        loan.setId(1L);
-        loan.setCustomerId(1L);
-        loan.setLoanAmount(1200.0);
-        loan.setNumberOfInstallments(12);
-        loan.setIsPaid(false);
-
-        // Mock customer
-        Customer customer = new Customer();
-        customer.setId(1L);
-        customer.setUsedCreditLimit(500.0); // Example initial credit usage
-
-        // Mock loan installments
-        LoanInstallment installment1 = new LoanInstallment();
-        installment1.setId(1L);
-        installment1.setLoanId(1L);
-        installment1.setAmount(100.0);
-        installment1.setPaidAmount(0.0);
-        installment1.setDueDate(LocalDate.now().plusMonths(1));
-        installment1.setPaymentDate(null);
-        installment1.setIsPaid(false);
-
-        LoanInstallment installment2 = new LoanInstallment();
-        installment2.setId(2L);
-        installment2.setLoanId(1L);
-        installment2.setAmount(100.0);
-        installment2.setPaidAmount(0.0);
-        installment2.setDueDate(LocalDate.now().plusMonths(2));
-        installment2.setPaymentDate(null);
-        installment2.setIsPaid(false);
-
-        // Mock repository responses
-        when(loanRepository.findById(1L)).thenReturn(Optional.of(loan));
-        when(loanInstallmentRepository.findByLoanIdAndIsPaidFalseAndDueDateBetween(eq(1L), any(LocalDate.class), any(LocalDate.class)))
-                .thenReturn(Arrays.asList(installment1, installment2));
-        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
-        when(loanInstallmentRepository.findByLoanIdAndIsPaidFalse(1L)).thenReturn(Arrays.asList(installment2)); // Loan is not fully paid
+    void testPayInstallments_DelegatesToPaymentEngine() {
+        // Mock payment engine response
+        PaymentResultResponseDTO paymentResult = new PaymentResultResponseDTO(1, Money.of(100), false);
+        when(paymentEngine.pay(1L, Money.of(150))).thenReturn(paymentResult);
 
         // Call the service method
-        PaymentResultResponseDTO result = loanService.payInstallments(1L, 150.0);
+        PaymentResultResponseDTO result = loanService.payInstallments(1L, Money.of(150));
 
         // Verify the result
-        assertNotNull(result);
-        assertEquals(1, result.getInstallmentsPaid());
-        assertEquals(100.0, result.getTotalAmountSpent());
-        assertFalse(result.isLoanPaid());
+        assertSame(paymentResult, result);
 
         // Verify interactions
-        verify(loanRepository, times(1)).findById(1L);
-        verify(loanInstallmentRepository, times(1)).findByLoanIdAndIsPaidFalseAndDueDateBetween(eq(1L), any(LocalDate.class), any(LocalDate.class));
-        verify(loanInstallmentRepository, times(1)).save(any(LoanInstallment.class));
-        verify(customerRepository, times(1)).findById(1L);
-        verify(customerRepository, times(1)).save(any(Customer.class));
+        verify(paymentEngine, times(1)).pay(1L, Money.of(150));
     }
 
     @Test
@@ -323,7 +327,7 @@ public class LoanServiceTest {
         Loan loan = new Loan();
         loan.setId(1L);
         loan.setCustomerId(1L);
-        loan.setLoanAmount(1200.0);
+        loan.setLoanAmount(Money.of(1200));
         loan.setNumberOfInstallments(12);
         loan.setIsPaid(false);
 
@@ -337,7 +341,7 @@ public class LoanServiceTest {
         assertNotNull(result);
         assertEquals(1L, result.getId());
         assertEquals(1L, result.getCustomerId());
-        assertEquals(1200.0, result.getLoanAmount());
+        assertEquals(Money.of(1200), result.getLoanAmount());
 
         // Verify interactions
         verify(loanRepository, times(1)).findById(1L);
@@ -0,0 +1,186 @@
+package com.banktest.loanapi.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.model.Loan;
+import com.banktest.loanapi.model.LoanInstallment;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.LoanInstallmentRepository;
+import com.banktest.loanapi.repository.LoanRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentEngineTest {
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private LoanInstallmentRepository loanInstallmentRepository;
+
+    @Mock
+    private CreditReservationService creditReservationService;
+
+    @Mock
+    private CustomerPortfolioService customerPortfolioService;
+
+    @Mock
+    private LoanReadModel loanReadModel;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private ApplicationMetrics metrics = new ApplicationMetrics(meterRegistry);
+
+    @InjectMocks
+    private PaymentEngine paymentEngine;
+
+    private Loan loan;
+
+    @BeforeEach
+    void setUp() {
+        loan = new Loan();
+        loan.setId(1L);
+        loan.setCustomerId(1L);
+        loan.setLoanAmount(Money.of(1200));
+        loan.setNumberOfInstallments(12);
+        loan.setIsPaid(false);
+        loan.setPaidInstallmentCount(0);
+        loan.setOutstandingAmount(Money.of(1200));
+    }
+
+    @Test
+    void testPay_PaysWhatTheAmountCovers() {
+        // Mock loan installments, returned out of order
+        LoanInstallment installment1 = installment(1L, LocalDate.now().plusMonths(1));
+        LoanInstallment installment2 = installment(2L, LocalDate.now().plusMonths(2));
+
+        // Mock repository responses
+        when(loanRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(loan));
+        when(loanInstallmentRepository.findByLoanIdAndIsPaidFalseAndDueDateBetween(eq(1L), any(LocalDate.class), any(LocalDate.class)))
+                .thenReturn(new ArrayList<>(Arrays.asList(installment2, installment1)));
+
+        // Call the engine
+        PaymentResultResponseDTO result = paymentEngine.pay(1L, Money.of(150));
+
+        // Verify the result
+        assertEquals(1, result.getInstallmentsPaid());
+        assertEquals(Money.of(100), result.getTotalAmountSpent());
+        assertFalse(result.isLoanPaid());
+        assertEquals(1, loan.getPaidInstallmentCount());
+        assertEquals(Money.of(1100), loan.getOutstandingAmount());
+
+        // Earliest installment first, marked paid in one bulk update
+        verify(loanInstallmentRepository, times(1)).markPaid(eq(List.of(1L)), any(LocalDate.class));
+        verify(loanInstallmentRepository, never()).save(any(LoanInstallment.class));
+        verify(loanInstallmentRepository, never()).findByLoanIdAndIsPaidFalse(any());
+        verify(creditReservationService, times(1)).release(1L, Money.of(100));
+        verify(customerPortfolioService, times(1)).paymentsApplied(eq(1L), eq(Money.of(100)), eq(0), any(LocalDate.class));
+
+        // Paid early: 0.1% per day before the due date is counted as discount
+        long daysEarly = ChronoUnit.DAYS.between(LocalDate.now(), installment1.getDueDate());
+        assertEquals(daysEarly / 10.0, meterRegistry.get("loan.payment.adjustment").tag("type", "discount").counter().count(), 0.001);
+        assertEquals(0, meterRegistry.get("loan.payment.adjustment").tag("type", "penalty").counter().count());
+    }
+
+    @Test
+    void testPay_LastInstallmentClosesLoan() {
+        // Mock a loan with a single installment left
+        loan.setPaidInstallmentCount(11);
+        loan.setOutstandingAmount(Money.of(100));
+        LoanInstallment installment = installment(12L, LocalDate.now().plusMonths(1));
+
+        when(loanRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(loan));
+        when(loanInstallmentRepository.findByLoanIdAndIsPaidFalseAndDueDateBetween(eq(1L), any(LocalDate.class), any(LocalDate.class)))
+                .thenReturn(new ArrayList<>(List.of(installment)));
+
+        // Call the engine
+        PaymentResultResponseDTO result = paymentEngine.pay(1L, Money.of(500));
+
+        // Verify the loan is closed from the running counters
+        assertEquals(1, result.getInstallmentsPaid());
+        assertTrue(result.isLoanPaid());
+        assertTrue(loan.getIsPaid());
+        assertEquals(Money.ZERO, loan.getOutstandingAmount());
+
+        // Verify the outcome was counted
+        assertEquals(1, meterRegistry.get("loan.installments.paid").counter().count());
+        assertEquals(1, meterRegistry.get("loan.closed").counter().count());
+    }
+
+    @Test
+    void testPay_NothingPayable() {
+        when(loanRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(loan));
+        when(loanInstallmentRepository.findByLoanIdAndIsPaidFalseAndDueDateBetween(eq(1L), any(LocalDate.class), any(LocalDate.class)))
+                .thenReturn(new ArrayList<>());
+
+        // Call the engine
+        PaymentResultResponseDTO result = paymentEngine.pay(1L, Money.of(50));
+
+        // Verify nothing is written
+        assertEquals(0, result.getInstallmentsPaid());
+        verify(loanInstallmentRepository, never()).markPaid(anyList(), any(LocalDate.class));
+        verify(creditReservationService, never()).release(any(), any(Money.class));
+    }
+
+    @Test
+    void testSettle_AppliesPaymentsInOrderWithOneUpdate() {
+        LoanInstallment installment1 = installment(1L, LocalDate.now().plusMonths(1));
+        LoanInstallment installment2 = installment(2L, LocalDate.now().plusMonths(2));
+        LoanInstallment installment3 = installment(3L, LocalDate.now().plusMonths(3));
+        when(loanInstallmentRepository.findByLoanIdAndIsPaidFalseAndDueDateBetween(eq(1L), any(LocalDate.class), any(LocalDate.class)))
+                .thenReturn(new ArrayList<>(Arrays.asList(installment3, installment1, installment2)));
+
+        // Each payment behaves as a separate call to pay would
+        List<PaymentResultResponseDTO> results = paymentEngine.settle(loan,
+                List.of(Money.of(50), Money.of(250), Money.of(100)), LocalDate.now());
+
+        assertEquals(0, results.get(0).getInstallmentsPaid());
+        assertEquals(2, results.get(1).getInstallmentsPaid());
+        assertEquals(Money.of(200), results.get(1).getTotalAmountSpent());
+        assertEquals(1, results.get(2).getInstallmentsPaid());
+        assertEquals(3, loan.getPaidInstallmentCount());
+        assertEquals(Money.of(900), loan.getOutstandingAmount());
+
+        // One schedule read, one bulk update, and the credit release is left to the caller
+        verify(loanInstallmentRepository, times(1)).markPaid(eq(List.of(1L, 2L, 3L)), any(LocalDate.class));
+        verify(creditReservationService, never()).release(any(), any(Money.class));
+    }
+
+    @Test
+    void testPay_LoanNotFound() {
+        when(loanRepository.findByIdForUpdate(1L)).thenReturn(Optional.empty());
+
+        // Verify exception is thrown
+        assertThrows(RuntimeException.class, () -> paymentEngine.pay(1L, Money.of(100)));
+    }
+
+    private LoanInstallment installment(Long id, LocalDate dueDate) {
+        LoanInstallment installment = new LoanInstallment();
+        installment.setId(id);
+        installment.setLoanId(1L);
+        installment.setAmount(Money.of(100));
+        installment.setPaidAmount(Money.ZERO);
+        installment.setDueDate(dueDate);
+        installment.setIsPaid(false);
+        return installment;
+    }
+}
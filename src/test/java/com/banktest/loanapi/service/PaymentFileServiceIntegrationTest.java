@@ -0,0 +1,158 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.LoanBatchItemResultDTO;
+import com.banktest.loanapi.dto.LoanBatchResultDTO;
+import com.banktest.loanapi.dto.LoanRequestDTO;
+import com.banktest.loanapi.dto.PaymentFileResultDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.Loan;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import com.banktest.loanapi.repository.LoanRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:payment-file-it")
+class PaymentFileServiceIntegrationTest {
+
+    private static final int ROWS = 1_000_000;
+
+    private static final int CUSTOMERS = 10;
+
+    private static final int LOANS_PER_CUSTOMER = 50;
+
+    private static final String[] AMOUNTS = {"0.50", "50", "100.00", "150", "200.00", "250.5", "1000"};
+
+    private static final int[] INSTALLMENTS = {6, 9, 12, 24};
+
+    @Autowired
+    private PaymentFileService paymentFileService;
+
+    @Autowired
+    private LoanBatchService loanBatchService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testIngest_MillionRowFileGivesTheSameResultsWhateverTheParallelism() throws IOException {
+        // Two identical books of loans, one ingested by a single worker and one by eight
+        List<Long> sequentialCustomers = new ArrayList<>();
+        List<Long> parallelCustomers = new ArrayList<>();
+        List<Long> sequentialLoans = createBook(sequentialCustomers);
+        List<Long> parallelLoans = createBook(parallelCustomers);
+
+        // The same synthetic rows against each book
+        Path sequentialInput = writeFile("sequential.csv", sequentialLoans);
+        Path parallelInput = writeFile("parallel.csv", parallelLoans);
+        Path sequentialOutput = directory.resolve("sequential-results.csv");
+        Path parallelOutput = directory.resolve("parallel-results.csv");
+
+        PaymentFileResultDTO sequential = paymentFileService.ingest(sequentialInput, sequentialOutput, 1);
+        PaymentFileResultDTO parallel = paymentFileService.ingest(parallelInput, parallelOutput, 8);
+
+        // Invalid rows and unknown loans fail on their own, everything else goes through
+        assertEquals(ROWS, sequential.getRows());
+        assertEquals(ROWS / 10_000, sequential.getFailed());
+        assertTrue(sequential.getInstallmentsPaid() > 0);
+        assertEquals(sequential, parallel);
+
+        // Row for row the same outcome, in file order; only the loan ids differ between the books
+        List<String> sequentialLines = Files.readAllLines(sequentialOutput);
+        List<String> parallelLines = Files.readAllLines(parallelOutput);
+        assertEquals(ROWS + 1, sequentialLines.size());
+        assertEquals(sequentialLines.get(0), parallelLines.get(0));
+        for (int i = 1; i < sequentialLines.size(); i++) {
+            String[] expected = sequentialLines.get(i).split(",", 3);
+            String[] actual = parallelLines.get(i).split(",", 3);
+            assertEquals(String.valueOf(i + 1), expected[0]);
+            assertEquals(expected[0], actual[0]);
+            assertEquals(expected[2], actual[2], "line " + expected[0]);
+        }
+        assertEquals("FAILED,0,0.00,false,\"Invalid amount\"", sequentialLines.get(10_000).split(",", 4)[3]);
+        assertEquals("FAILED,0,0.00,false,\"Loan not found\"", sequentialLines.get(50_000).split(",", 4)[3]);
+
+        // The loans and the customers' credit end up in the same state
+        for (int i = 0; i < sequentialLoans.size(); i++) {
+            Loan expected = loanRepository.findById(sequentialLoans.get(i)).orElseThrow();
+            Loan actual = loanRepository.findById(parallelLoans.get(i)).orElseThrow();
+            assertEquals(expected.getPaidInstallmentCount(), actual.getPaidInstallmentCount());
+            assertEquals(expected.getOutstandingAmount(), actual.getOutstandingAmount());
+            assertEquals(expected.getIsPaid(), actual.getIsPaid());
+        }
+        Money released = Money.ZERO;
+        for (int i = 0; i < CUSTOMERS; i++) {
+            Customer expected = customerRepository.findById(sequentialCustomers.get(i)).orElseThrow();
+            Customer actual = customerRepository.findById(parallelCustomers.get(i)).orElseThrow();
+            assertEquals(expected.getUsedCreditLimit(), actual.getUsedCreditLimit());
+            released = released.plus(actual.getCreditLimit()).minus(actual.getUsedCreditLimit());
+        }
+        assertEquals(parallel.getTotalAmountSpent(), released);
+    }
+
+    private List<Long> createBook(List<Long> customerIds) {
+        List<LoanRequestDTO> requests = new ArrayList<>();
+        for (int c = 0; c < CUSTOMERS; c++) {
+            Customer customer = new Customer();
+            customer.setName("John");
+            customer.setSurname("Doe");
+            customer.setCreditLimit(Money.of(LOANS_PER_CUSTOMER * 1_500L));
+            customer.setUsedCreditLimit(Money.ZERO);
+            Long customerId = customerRepository.save(customer).getId();
+            customerIds.add(customerId);
+            for (int l = 0; l < LOANS_PER_CUSTOMER; l++) {
+                requests.add(new LoanRequestDTO(customerId, Money.of(1000), 0.2, INSTALLMENTS[l % INSTALLMENTS.length]));
+            }
+        }
+        LoanBatchResultDTO result = loanBatchService.createLoans(requests);
+        assertEquals(requests.size(), result.getCreated());
+
+        // Everything the loans reserved counts as used, so releases can be checked against the limit
+        List<Long> loanIds = result.getResults().stream().map(LoanBatchItemResultDTO::getLoanId).toList();
+        for (Long customerId : customerIds) {
+            Customer customer = customerRepository.findById(customerId).orElseThrow();
+            customer.setCreditLimit(customer.getUsedCreditLimit());
+            customerRepository.save(customer);
+        }
+        return loanIds;
+    }
+
+    // Deterministic rows: every 10,000th has a bad amount and every 50,000th an unknown loan
+    private Path writeFile(String name, List<Long> loanIds) throws IOException {
+        Path file = directory.resolve(name);
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("loanId,amount\n");
+            for (int row = 1; row <= ROWS; row++) {
+                long loanId = loanIds.get(random.nextInt(loanIds.size()));
+                String amount = AMOUNTS[random.nextInt(AMOUNTS.length)];
+                if (row % 50_000 == 0) {
+                    writer.write("999999999," + amount + "\n");
+                } else if (row % 10_000 == 0) {
+                    writer.write(loanId + ",12.345\n");
+                } else {
+                    writer.write(loanId + "," + amount + "\n");
+                }
+            }
+        }
+        return file;
+    }
+}
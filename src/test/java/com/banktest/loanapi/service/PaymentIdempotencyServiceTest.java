@@ -0,0 +1,144 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.model.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentIdempotencyServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private PaymentIdempotencyService idempotencyService;
+
+    private final AtomicInteger payments = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new PaymentIdempotencyService(100, Duration.ofMinutes(10), new ApplicationMetrics(meterRegistry));
+    }
+
+    @Test
+    void testPay_RetryReturnsStoredResult() {
+        PaymentResultResponseDTO first = idempotencyService.pay(1L, "key-1", 10L, Money.of(100), this::payment);
+        PaymentResultResponseDTO retry = idempotencyService.pay(1L, "key-1", 10L, Money.of(100), this::payment);
+
+        // The payment ran once; the retry got the very same result
+        assertEquals(1, payments.get());
+        assertSame(first, retry);
+        assertEquals(1, meterRegistry.get("loan.payment.idempotent.replays").counter().count());
+    }
+
+    @Test
+    void testPay_ConcurrentDuplicatesWaitForTheInFlightPayment() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<PaymentResultResponseDTO>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // The first request holds the key while its payment runs
+            futures.add(executor.submit(() -> idempotencyService.pay(1L, "key-1", 10L, Money.of(100), () -> {
+                running.countDown();
+                await(release);
+                return payment();
+            })));
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 20; i++) {
+                futures.add(executor.submit(() -> idempotencyService.pay(1L, "key-1", 10L, Money.of(100), this::payment)));
+            }
+            release.countDown();
+        }
+
+        // Everyone got the one result
+        assertEquals(1, payments.get());
+        PaymentResultResponseDTO result = futures.get(0).get();
+        for (Future<PaymentResultResponseDTO> future : futures) {
+            assertSame(result, future.get());
+        }
+    }
+
+    @Test
+    void testPay_RunningPaymentIsFoundWhileTheStoreIsFull() throws Exception {
+        idempotencyService = new PaymentIdempotencyService(1, Duration.ofMinutes(10), new ApplicationMetrics(meterRegistry));
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<PaymentResultResponseDTO> first = executor.submit(() -> idempotencyService.pay(1L, "key-1", 10L, Money.of(100), () -> {
+                running.countDown();
+                await(release);
+                return payment();
+            }));
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+
+            // A storm of fresh keys overflows the store while the first payment runs
+            for (int i = 0; i < 50; i++) {
+                idempotencyService.pay(1L, "fresh-" + i, 10L, Money.of(100), this::payment);
+            }
+            Future<PaymentResultResponseDTO> duplicate = executor.submit(
+                    () -> idempotencyService.pay(1L, "key-1", 10L, Money.of(100), this::payment));
+            release.countDown();
+
+            assertSame(first.get(), duplicate.get());
+        }
+        assertEquals(51, payments.get());
+    }
+
+    @Test
+    void testPay_FailedPaymentIsNotStored() {
+        assertThrows(RuntimeException.class, () -> idempotencyService.pay(1L, "key-1", 10L, Money.of(100), () -> {
+            throw new RuntimeException("Loan not found");
+        }));
+
+        // The retry runs the payment again
+        idempotencyService.pay(1L, "key-1", 10L, Money.of(100), this::payment);
+        assertEquals(1, payments.get());
+    }
+
+    @Test
+    void testPay_KeyReusedForAnotherPaymentIsRejected() {
+        idempotencyService.pay(1L, "key-1", 10L, Money.of(100), this::payment);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> idempotencyService.pay(1L, "key-1", 10L, Money.of(200), this::payment));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, exception.getStatusCode());
+        assertEquals(1, payments.get());
+    }
+
+    @Test
+    void testPay_KeysAreScopedToTheUser() {
+        idempotencyService.pay(1L, "key-1", 10L, Money.of(100), this::payment);
+        idempotencyService.pay(2L, "key-1", 10L, Money.of(100), this::payment);
+
+        assertEquals(2, payments.get());
+    }
+
+    private PaymentResultResponseDTO payment() {
+        payments.incrementAndGet();
+        return new PaymentResultResponseDTO(1, Money.of(100), false);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.dto.PaymentJournalVerificationDTO;
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.Loan;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import com.banktest.loanapi.repository.LoanRepository;
+import com.banktest.loanapi.repository.PaymentJournalCheckpointRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:payment-journal-it",
+        "payment-journal.enabled=true",
+        "payment-journal.segment-records=256"
+})
+class PaymentJournalServiceIntegrationTest {
+
+    private static Path directory;
+
+    @DynamicPropertySource
+    static void journalDirectory(DynamicPropertyRegistry registry) throws IOException {
+        directory = Files.createTempDirectory("payment-journal-");
+        registry.add("payment-journal.directory", directory::toString);
+    }
+
+    @Autowired
+    private PaymentJournalService paymentJournalService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private PaymentIdempotencyService paymentIdempotencyService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @SpyBean
+    private PaymentJournalCheckpointRepository checkpointRepository;
+
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        customer = new Customer();
+        customer.setName("John");
+        customer.setSurname("Doe");
+        customer.setCreditLimit(Money.of(1_000_000));
+        customer.setUsedCreditLimit(Money.ZERO);
+        customer = customerRepository.save(customer);
+    }
+
+    @Test
+    void testPay_ConcurrentPaymentsShareFsyncsAndMatchTheInstallmentTable() throws Exception {
+        List<Long> loanIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            loanIds.add(loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 12).getId());
+        }
+        long forcesBefore = paymentJournalService.forces();
+
+        // 400 payments of one installment each from 32 threads; only three installments per loan are due
+        int payments = 400;
+        List<Future<PaymentResultResponseDTO>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(32)) {
+            for (int i = 0; i < payments; i++) {
+                Long loanId = loanIds.get(i % loanIds.size());
+                results.add(executor.submit(() -> loanService.payInstallments(loanId, Money.of(100))));
+            }
+        }
+
+        Map<Long, Integer> paidByLoan = new HashMap<>();
+        for (int i = 0; i < payments; i++) {
+            paidByLoan.merge(loanIds.get(i % loanIds.size()), results.get(i).get().getInstallmentsPaid(), Integer::sum);
+        }
+        for (Long loanId : loanIds) {
+            assertEquals(3, paidByLoan.get(loanId));
+            assertEquals(3, loanRepository.findById(loanId).orElseThrow().getPaidInstallmentCount());
+        }
+        assertEquals(Money.of(20 * 1200 - 20 * 300), customerRepository.findById(customer.getId()).orElseThrow().getUsedCreditLimit());
+
+        // Group commit: far fewer fsyncs than payments
+        assertTrue(paymentJournalService.forces() - forcesBefore < payments,
+                "forces: " + (paymentJournalService.forces() - forcesBefore));
+
+        // Outcome records ride along with a later fsync; stopping writes the last of them
+        paymentJournalService.stop();
+        PaymentJournalVerificationDTO verification = paymentJournalService.verify();
+        paymentJournalService.start();
+        assertTrue(verification.isConsistent(), verification.toString());
+        assertEquals(0, verification.getPendingPayments());
+        assertEquals(verification.getPayments(), verification.getAppliedPayments() + verification.getRejectedPayments());
+    }
+
+    @Test
+    void testPay_UnknownLoanIsRejected() {
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> loanService.payInstallments(999_999L, Money.of(100)));
+        assertEquals("Loan not found", exception.getMessage());
+    }
+
+    @Test
+    void testPay_ApplyFailureStopsTheJournalUntilTheNextStartReplaysIt() throws Exception {
+        LoanDTO loan = loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 6);
+
+        // The database refuses every checkpoint, so even the payment's rejection cannot be recorded
+        doThrow(new RuntimeException("Database is down")).when(checkpointRepository).save(any());
+        try {
+            RuntimeException exception = assertThrows(PaymentAcceptedException.class,
+                    () -> loanService.payInstallments(loan.getId(), Money.of(200)));
+            assertEquals("Payment is journaled and will be applied when the journal restarts", exception.getMessage());
+            exception = assertThrows(RuntimeException.class,
+                    () -> loanService.payInstallments(loan.getId(), Money.of(200)));
+            assertEquals("Payment journal is not running", exception.getMessage());
+        } finally {
+            reset(checkpointRepository);
+        }
+        assertEquals(0, loanRepository.findById(loan.getId()).orElseThrow().getPaidInstallmentCount());
+
+        // The checkpoint never moved past the failed payment, so the restart applies it
+        paymentJournalService.stop();
+        paymentJournalService.start();
+        assertEquals(1, loanRepository.findById(loan.getId()).orElseThrow().getPaidInstallmentCount());
+
+        paymentJournalService.stop();
+        PaymentJournalVerificationDTO verification = paymentJournalService.verify();
+        paymentJournalService.start();
+        assertTrue(verification.isConsistent(), verification.toString());
+        assertEquals(0, verification.getPendingPayments());
+        assertEquals(0, verification.getPaymentsWithoutOutcome());
+    }
+
+    @Test
+    void testPay_IdempotentRetryOfAnAcceptedPaymentGetsItsReplayedResult() throws Exception {
+        LoanDTO loan = loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 6);
+        Supplier<PaymentResultResponseDTO> pay = () -> paymentIdempotencyService.pay(1L, "accepted-key", loan.getId(),
+                Money.of(200), () -> loanService.payInstallments(loan.getId(), Money.of(200)));
+
+        doThrow(new RuntimeException("Database is down")).when(checkpointRepository).save(any());
+        try {
+            assertThrows(PaymentAcceptedException.class, pay::get);
+        } finally {
+            reset(checkpointRepository);
+        }
+        // Still only accepted: the retry neither pays again nor finds the stopped journal
+        assertThrows(PaymentAcceptedException.class, pay::get);
+
+        paymentJournalService.stop();
+        paymentJournalService.start();
+
+        // The retry is answered with what the restart's replay did, and nothing is paid twice
+        PaymentResultResponseDTO retry = pay.get();
+        assertEquals(1, retry.getInstallmentsPaid());
+        assertEquals(Money.of(200), retry.getTotalAmountSpent());
+        assertEquals(1, loanRepository.findById(loan.getId()).orElseThrow().getPaidInstallmentCount());
+    }
+
+    @Test
+    void testStart_ReplaysJournaledPaymentsThatWereNeverApplied() throws Exception {
+        LoanDTO loan = loanService.createLoan(customer.getId(), Money.of(1000), 0.2, 6);
+
+        // Payments that reached the journal but not the database, as after a crash
+        paymentJournalService.stop();
+        try (PaymentJournal journal = PaymentJournal.open(directory, 256)) {
+            journal.appendPayment(loan.getId(), Money.of(200).minorUnits(), System.currentTimeMillis());
+            journal.appendPayment(loan.getId(), Money.of(200).minorUnits(), System.currentTimeMillis());
+        }
+        paymentJournalService.start();
+
+        Loan replayed = loanRepository.findById(loan.getId()).orElseThrow();
+        assertEquals(2, replayed.getPaidInstallmentCount());
+        assertEquals(Money.of(800), replayed.getOutstandingAmount());
+
+        // Replayed once only: a second restart finds nothing after the checkpoint
+        paymentJournalService.stop();
+        paymentJournalService.start();
+        assertEquals(2, loanRepository.findById(loan.getId()).orElseThrow().getPaidInstallmentCount());
+
+        PaymentJournalVerificationDTO verification = paymentJournalService.verify();
+        assertTrue(verification.isConsistent(), verification.toString());
+        assertEquals(0, verification.getPendingPayments());
+        assertEquals(0, verification.getPaymentsWithoutOutcome());
+    }
+}
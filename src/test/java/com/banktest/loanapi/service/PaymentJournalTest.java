@@ -0,0 +1,108 @@
+package com.banktest.loanapi.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testAppend_RecordsSurviveReopenAndSequencesContinue() throws IOException {
+        try (PaymentJournal journal = PaymentJournal.open(directory, 100)) {
+            assertEquals(1, journal.appendPayment(7, 15_000, 1_000));
+            assertEquals(2, journal.appendPayment(8, 20_000, 2_000));
+            journal.appendOutcome(PaymentJournal.APPLIED, 1, 7, 1, 15_000);
+            journal.force();
+            assertEquals(1, journal.forces());
+        }
+
+        try (PaymentJournal journal = PaymentJournal.open(directory, 100)) {
+            assertEquals(2, journal.lastSequence());
+            assertEquals(3, journal.appendPayment(9, 100, 3_000));
+        }
+
+        List<String> records = records();
+        assertEquals(List.of("1:1:7:15000:1000", "1:2:8:20000:2000", "2:1:7:1:15000", "1:3:9:100:3000"), records);
+    }
+
+    @Test
+    void testAppend_FullSegmentRollsOverToANewFile() throws IOException {
+        try (PaymentJournal journal = PaymentJournal.open(directory, 2)) {
+            for (int i = 1; i <= 5; i++) {
+                journal.appendPayment(i, i * 100, i);
+            }
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of("payments-0000000000000000001.journal", "payments-0000000000000000002.journal",
+                            "payments-0000000000000000003.journal"),
+                    files.map(file -> file.getFileName().toString()).sorted().toList());
+        }
+        assertEquals(5, records().size());
+        try (PaymentJournal journal = PaymentJournal.open(directory, 2)) {
+            assertEquals(5, journal.lastSequence());
+        }
+    }
+
+    @Test
+    void testAppend_OutcomesAloneRollOverWithoutOverwritingASegment() throws IOException {
+        try (PaymentJournal journal = PaymentJournal.open(directory, 2)) {
+            journal.appendPayment(7, 15_000, 1_000);
+            // Five outcomes and no payment fill two more segments after the first
+            for (int i = 0; i < 5; i++) {
+                journal.appendOutcome(PaymentJournal.APPLIED, 1, 7, i, 0);
+            }
+        }
+        // Reopened, the journal carries on in the newest segment and then rolls over past it
+        try (PaymentJournal journal = PaymentJournal.open(directory, 2)) {
+            journal.appendOutcome(PaymentJournal.APPLIED, 1, 7, 5, 0);
+            journal.appendOutcome(PaymentJournal.APPLIED, 1, 7, 6, 0);
+        }
+
+        assertEquals(List.of("1:1:7:15000:1000", "2:1:7:0:0", "2:1:7:1:0", "2:1:7:2:0", "2:1:7:3:0", "2:1:7:4:0",
+                "2:1:7:5:0", "2:1:7:6:0"), records());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(4, files.count());
+        }
+    }
+
+    @Test
+    void testOpen_TornRecordEndsTheJournalAndIsOverwritten() throws IOException {
+        try (PaymentJournal journal = PaymentJournal.open(directory, 100)) {
+            journal.appendPayment(7, 15_000, 1_000);
+            journal.appendPayment(8, 20_000, 2_000);
+        }
+
+        // Corrupt the body of the second record, as a crash halfway through writing it would
+        Path segment = directory.resolve("payments-0000000000000000001.journal");
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(16 + PaymentJournal.RECORD_SIZE + 20);
+            file.writeInt(12345);
+        }
+
+        try (PaymentJournal journal = PaymentJournal.open(directory, 100)) {
+            assertEquals(1, journal.lastSequence());
+            assertEquals(2, journal.appendPayment(9, 100, 3_000));
+        }
+        assertEquals(List.of("1:1:7:15000:1000", "1:2:9:100:3000"), records());
+    }
+
+    private List<String> records() throws IOException {
+        List<String> records = new ArrayList<>();
+        PaymentJournal.read(directory, (type, sequence, loanId, first, second) ->
+                records.add(type + ":" + sequence + ":" + loanId + ":" + first + ":" + second));
+        return records;
+    }
+}
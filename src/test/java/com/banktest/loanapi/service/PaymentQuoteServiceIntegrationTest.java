@@ -0,0 +1,98 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.InstallmentQuoteDTO;
+import com.banktest.loanapi.dto.LoanDTO;
+import com.banktest.loanapi.dto.LoanQuoteDTO;
+import com.banktest.loanapi.dto.PaymentCandidateDTO;
+import com.banktest.loanapi.dto.PaymentQuoteDTO;
+import com.banktest.loanapi.dto.PaymentResultResponseDTO;
+import com.banktest.loanapi.model.Customer;
+import com.banktest.loanapi.model.Money;
+import com.banktest.loanapi.repository.CustomerRepository;
+import com.banktest.loanapi.support.SqlStatementCapture;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        SqlStatementCapture.PROPERTY,
+        "spring.datasource.url=jdbc:h2:mem:payment-quote-it"
+})
+class PaymentQuoteServiceIntegrationTest {
+
+    @Autowired
+    private PaymentQuoteService paymentQuoteService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Test
+    void testQuote_MatchesThePaymentItPredicts() {
+        LoanDTO loan = loanService.createLoan(newCustomer(), Money.of(1000), 0.2, 12);
+        LocalDate today = LocalDate.now();
+
+        SqlStatementCapture.reset();
+        List<PaymentQuoteDTO> quotes = paymentQuoteService.quote(loan.getId(), List.of(
+                new PaymentCandidateDTO(Money.of(50), null),
+                new PaymentCandidateDTO(Money.of(250), null),
+                new PaymentCandidateDTO(Money.of(5000), today.withDayOfMonth(1).plusMonths(10))), today);
+        LoanQuoteDTO payoff = paymentQuoteService.quote(loan.getId(), today);
+
+        // One read per call, nothing written
+        assertEquals(2, SqlStatementCapture.statements().size());
+        assertTrue(SqlStatementCapture.statements().stream().allMatch(sql -> sql.startsWith("select")));
+
+        assertEquals(0, quotes.get(0).getInstallmentsPaid());
+        assertEquals(today, quotes.get(0).getDate());
+        assertEquals(2, quotes.get(1).getInstallmentsPaid());
+        assertTrue(quotes.get(1).getDiscount().minorUnits() > 0);
+        // On the tenth due date only the last three are within reach; the nine before it are overdue and stay unpaid
+        assertEquals(3, quotes.get(2).getInstallmentsPaid());
+        assertEquals(Money.of(300), quotes.get(2).getTotalAmountSpent());
+        assertFalse(quotes.get(2).isLoanPaid());
+
+        assertEquals(Money.of(1200), payoff.getOutstandingAmount());
+        assertFalse(payoff.isLoanPaid());
+        assertEquals(Money.of(100).times(payoff.getInstallments().size()), payoff.getPayoffAmount());
+        Money discounts = payoff.getInstallments().stream().map(InstallmentQuoteDTO::getDiscount).reduce(Money.ZERO, Money::plus);
+        assertEquals(payoff.getPayoffAmount().minus(discounts), payoff.getAdjustedPayoffAmount());
+
+        // Paying the quoted amount does what the quote said
+        PaymentResultResponseDTO paid = loanService.payInstallments(loan.getId(), Money.of(250));
+        assertEquals(quotes.get(1).getInstallmentsPaid(), paid.getInstallmentsPaid());
+        assertEquals(quotes.get(1).getTotalAmountSpent(), paid.getTotalAmountSpent());
+
+        // Paid installments drop out of the next quote
+        LoanQuoteDTO afterPayment = paymentQuoteService.quote(loan.getId(), today);
+        assertEquals(Money.of(1000), afterPayment.getOutstandingAmount());
+        assertEquals(payoff.getInstallments().get(2), afterPayment.getInstallments().get(0));
+    }
+
+    @Test
+    void testQuote_RejectsTooManyCandidates() {
+        LoanDTO loan = loanService.createLoan(newCustomer(), Money.of(1000), 0.2, 12);
+        List<PaymentCandidateDTO> candidates = Collections.nCopies(PaymentQuoteService.MAX_CANDIDATES + 1,
+                new PaymentCandidateDTO(Money.of(100), null));
+
+        assertThrows(ResponseStatusException.class, () -> paymentQuoteService.quote(loan.getId(), candidates, LocalDate.now()));
+    }
+
+    private Long newCustomer() {
+        Customer customer = new Customer();
+        customer.setName("John");
+        customer.setSurname("Doe");
+        customer.setCreditLimit(Money.of(1_000_000));
+        customer.setUsedCreditLimit(Money.ZERO);
+        return customerRepository.save(customer).getId();
+    }
+}
@@ -0,0 +1,68 @@
+package com.banktest.loanapi.service;
+
+import com.banktest.loanapi.dto.LoanInstallmentDTO;
+import com.banktest.loanapi.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentScheduleTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 21);
+
+    @Test
+    void testPay_WholeInstallmentsEarliestFirstWithinThreeMonths() {
+        // Handed over out of order; the one due in 2027-02 is out of reach today
+        List<LoanInstallmentDTO> unpaid = List.of(
+                installment(3, "2027-01-01"), installment(1, "2026-11-01"),
+                installment(4, "2027-02-01"), installment(2, "2026-12-01"));
+        PaymentSchedule schedule = PaymentSchedule.ofDTOs(unpaid, TODAY);
+
+        assertEquals(3, schedule.size());
+        assertEquals(List.of(1L, 2L, 3L), List.of(schedule.id(0), schedule.id(1), schedule.id(2)));
+
+        // 250.00 covers two 100.00 installments; the rest is not spent
+        PaymentSchedule.Payment first = schedule.pay(Money.of(250).minorUnits());
+        assertEquals(0, first.first());
+        assertEquals(2, first.installmentsPaid());
+        assertEquals(Money.of(200), first.totalAmountSpent());
+
+        // The next payment starts where the last one stopped and cannot go past the window
+        PaymentSchedule.Payment second = schedule.pay(Money.of(1000).minorUnits());
+        assertEquals(2, second.first());
+        assertEquals(1, second.installmentsPaid());
+        assertEquals(0, schedule.pay(Money.of(1000).minorUnits()).installmentsPaid());
+    }
+
+    @Test
+    void testAdjustment_DiscountPerDayEarly() {
+        PaymentSchedule schedule = PaymentSchedule.ofDTOs(List.of(installment(1, "2026-10-31"), installment(2, "2026-10-21")), TODAY);
+
+        // 0.1% of 100.00 for each of the 10 days early, nothing on the due date itself
+        assertEquals(0, schedule.adjustment(0));
+        assertEquals(-Money.of(1).minorUnits(), schedule.adjustment(1));
+
+        PaymentSchedule.Payment payment = schedule.pay(Money.of(200).minorUnits());
+        assertEquals(Money.of(1).minorUnits(), payment.discount());
+        assertEquals(0, payment.penalty());
+    }
+
+    @Test
+    void testPay_NothingReachableOrTooLittle() {
+        assertEquals(0, PaymentSchedule.ofDTOs(new ArrayList<>(), TODAY).pay(Money.of(100).minorUnits()).installmentsPaid());
+        // Overdue installments are not payable
+        assertEquals(0, PaymentSchedule.ofDTOs(List.of(installment(1, "2026-10-01")), TODAY).size());
+        PaymentSchedule.Payment tooLittle = PaymentSchedule.ofDTOs(List.of(installment(1, "2026-11-01")), TODAY)
+                .pay(Money.valueOf("99.99").minorUnits());
+        assertEquals(0, tooLittle.installmentsPaid());
+        assertEquals(Money.ZERO, tooLittle.totalAmountSpent());
+    }
+
+    private static LoanInstallmentDTO installment(long id, String dueDate) {
+        return new LoanInstallmentDTO(id, 1L, Money.of(100), Money.ZERO, LocalDate.parse(dueDate), null, false);
+    }
+}